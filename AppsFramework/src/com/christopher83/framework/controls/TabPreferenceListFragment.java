@@ -15,13 +15,26 @@
  */
 package com.christopher83.framework.controls;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.christopher83.framework.properties.FileProperty;
+import com.christopher83.framework.properties.PropertyExecutor;
 import com.christopher83.framework.properties.PropertyHashTable;
+import com.christopher83.framework.properties.interfaces.IIntProperty;
+import com.christopher83.framework.properties.interfaces.ILongProperty;
 import com.christopher83.framework.properties.interfaces.IProperty;
+import com.christopher83.framework.properties.interfaces.IPropertyCallback;
+import com.christopher83.framework.properties.interfaces.IPropertyListener;
+import com.christopher83.framework.sampling.HandlerClock;
+import com.christopher83.framework.sampling.PollScheduler;
 
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.Preference;
-import android.preference.Preference.OnPreferenceClickListener;
+import android.preference.TwoStatePreference;
 
 /**
  * Base class for a tab fragment of preferences
@@ -31,9 +44,57 @@ public class TabPreferenceListFragment
 	extends PreferenceListFragment
 	implements SharedPreferences.OnSharedPreferenceChangeListener {
 
+	// Min interval (in ms) between two polls of a live property, a 60 fps frame as the notifications of its changes
+	private static final long LIVE_MIN_INTERVAL = 16;
+
+	// Max interval (in ms) between two polls of a live property, reached while its value doesn't change
+	private static final long LIVE_MAX_INTERVAL = 2000;
+
 	protected int _titleID;                  // The resource ID for the title of the tab
 	protected PropertyHashTable _properties; // The properties related to the preferences
 
+	private final HashMap<String, SummaryBinding<?>> _summaryBindings = new HashMap<String, SummaryBinding<?>>(); // The summaries kept updated, by property ID
+	private final ArrayList<FileProperty<?>> _liveProperties = new ArrayList<FileProperty<?>>(); // The properties polled while the tab is visible
+	private PollScheduler _liveScheduler;   // The scheduler polling the live properties, created on the first request
+	private boolean _livePolling;           // Flag indicating if the live properties are being polled
+	private boolean _resumed;               // Flag indicating if the tab is resumed, cleared as soon as the pause starts
+
+	/**
+	 * Class for the binding of a preference summary to the changes of a property
+	 * @param <T> The type of the property value
+	 */
+	private static class SummaryBinding<T> implements IPropertyListener<T> {
+
+		private final Preference _preference;   // The preference to update
+		private final IProperty<T> _property;   // The observed property
+
+		/**
+		 * Class constructor, registering the binding as listener of the property
+		 * @param preference The preference to update
+		 * @param property The property to observe
+		 */
+		public SummaryBinding(Preference preference, IProperty<T> property) {
+			_preference = preference;
+			_property = property;
+			_property.addListener(this);
+		}
+
+		/**
+		 * Updates the summary text with the changed value
+		 */
+		public void onPropertyChanged(IProperty<T> property, T value) {
+			if (value != null) _preference.setSummary(value.toString());
+		}
+
+		/**
+		 * Unregisters the binding from the property
+		 */
+		public void unbind() {
+			_property.removeListener(this);
+		}
+
+	}
+
 	/**
 	 * Class constructor
 	 */
@@ -68,26 +129,79 @@ public class TabPreferenceListFragment
 		// Initialize the properties related to the preferences
 		_properties = initProperties();
 
-		// If the properties hash table is not null, then check for each shared preference 
-		// if the value is changed and is different from the current value of the file property,
-		// if so the preference will be updated
-		if (_properties != null)
-			_properties.checkAndUpdatePreferences();
-
 		// Invoke the base class creation method
 		super.onCreate(b);
 
 		// Register the event listener to manage the changes of shared preference values
 		this.getPreferenceScreen().getSharedPreferences().registerOnSharedPreferenceChangeListener(this);
+
+		// If the properties hash table is not null, then check on the I/O thread for each shared preference
+		// if the value is changed and is different from the current value of the file property,
+		// if so the preference will be updated and then refreshed on the main thread
+		if (_properties != null) {
+			_properties.checkAndUpdatePreferencesAsync(new IPropertyCallback<List<String>>() {
+				/**
+				 * Refreshes the updated preferences
+				 */
+				public void onCompleted(List<String> updatedIDs) {
+					if (updatedIDs != null)
+						refreshPreferences(updatedIDs);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Refreshes the controls of the specified preferences with the stored preference values
+	 * @param ids The IDs of the preferences to refresh
+	 */
+	protected void refreshPreferences(List<String> ids) {
+		// If the preferences have been already released, then exit
+		if (this.getPreferenceScreen() == null)
+			return;
+
+		// Get the shared preferences
+		SharedPreferences prefs = this.getPreferenceScreen().getSharedPreferences();
+
+		// For each preference, set the stored value inside the related control
+		for (String id:ids) {
+			Preference preference = findPreference(id);
+			if (preference instanceof TwoStatePreference) {
+				TwoStatePreference twoStatePreference = (TwoStatePreference)preference;
+				twoStatePreference.setChecked(prefs.getBoolean(id, twoStatePreference.isChecked()));
+			} else if (preference instanceof SeekBarPreference) {
+				SeekBarPreference seekBarPreference = (SeekBarPreference)preference;
+				seekBarPreference.setValue(prefs.getInt(id, seekBarPreference.getValue()));
+			}
+		}
 	}
 
 	/**
 	 * Manages the changes of shared preference values
 	 */
 	public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-		// If the changed preference is related to this tab, then store the new value
+		// If the changed preference is related to this tab, then store the new value on the I/O thread
 		if (_properties != null && _properties.containsKey(key))
-			_properties.set(key, sharedPreferences.getAll().get(key));
+			_properties.restoreAsync(sharedPreferences, key, null);
+	}
+
+	/**
+	 * Manages the tab destruction
+	 */
+	@Override
+	public void onDestroy() {
+		// Stop observing the properties of the preference summaries
+		for (SummaryBinding<?> binding:_summaryBindings.values())
+			binding.unbind();
+		_summaryBindings.clear();
+
+		// Stop polling the live properties, releasing them
+		if (_liveScheduler != null)
+			_liveScheduler.clear();
+		_livePolling = false;
+
+		// Invoke the base class method
+		super.onDestroy();
 	}
 
 	/**
@@ -100,6 +214,10 @@ public class TabPreferenceListFragment
 
 		// Unregister the event listener to manage the shared preference changes
 		this.getPreferenceScreen().getSharedPreferences().unregisterOnSharedPreferenceChangeListener(this);
+
+		// Stop polling the live properties (the fragment is still reported as resumed till the pause ends)
+		_resumed = false;
+		updateLivePolling();
 	}
 
 	/**
@@ -112,45 +230,77 @@ public class TabPreferenceListFragment
 
 		// Register the event listener to manage the shared preference changes
 		this.getPreferenceScreen().getSharedPreferences().registerOnSharedPreferenceChangeListener(this);
+
+		// Start polling the live properties, if the tab is visible
+		_resumed = true;
+		updateLivePolling();
+	}
+
+	/**
+	 * Manages the visibility changes of the tab inside the pager
+	 */
+	@Override
+	public void setUserVisibleHint(boolean isVisibleToUser) {
+		// Invoke the base class method
+		super.setUserVisibleHint(isVisibleToUser);
+
+		// Poll the live properties only while the tab is visible
+		updateLivePolling();
 	}
 
 	/**
-	 * Sets a preference to update its summary with the current value of the related property when clicked
+	 * Sets a preference to update its summary with the current value of the related property while the tab is visible
 	 * @param resourceID The resource ID of the property related to the preference to update
 	 */
-	protected void initUpdateablePropertyPreference(int resID) {
-		initUpdateablePropertyPreference(_properties.get(resID));
+	protected void initLivePropertyPreference(int resID) {
+		initLivePropertyPreference(_properties.get(resID));
 	}
 
 	/**
-	 * Sets a preference to update its summary with the current value of the related property when clicked
+	 * Sets a preference to update its summary with the current value of the related property while the tab is visible
 	 * @param id The ID of the property related to the preference to update
 	 */
-	protected void initUpdateablePropertyPreference(String id) {
-		initUpdateablePropertyPreference(_properties.get(id));
+	protected void initLivePropertyPreference(String id) {
+		initLivePropertyPreference(_properties.get(id));
 	}
 
 	/**
-	 * Sets a preference to update its summary with the current value of the related property when clicked
+	 * Sets a preference to update its summary with the current value of the related property while the tab is visible.
+	 * The property is polled with adaptive intervals, and the summary is updated only when the value changes,
+	 * at most once per frame
 	 * @param property The property related to the preference to update
 	 */
-	protected void initUpdateablePropertyPreference(final IProperty<?> property) {
-		// Get the preference related to the specified property
-		Preference preference = (Preference)findPreference(property.getID());
+	protected void initLivePropertyPreference(final IProperty<?> property) {
+		// Initialize the text of the summary, that is then kept updated with the changes of the property value
+		setPropertyPreferenceSummary(property);
 
-		// Set the listener for the click event
-		preference.setOnPreferenceClickListener(new OnPreferenceClickListener() {
-			/**
-			 * Manage the preference click by updating the summary content
-			 */
-			public boolean onPreferenceClick(Preference preference) {
-				setPropertyPreferenceSummary(preference, property);
-				return true;
-			}
-		});
+		// Poll the property while the tab is visible, if it's a file property
+		if (property instanceof FileProperty && !_liveProperties.contains(property)) {
+			_liveProperties.add((FileProperty<?>)property);
+			if (_livePolling)
+				_liveScheduler.add((FileProperty<?>)property, LIVE_MIN_INTERVAL, LIVE_MAX_INTERVAL);
+			else
+				updateLivePolling();
+		}
+	}
 
-		// Initialize the text of the summary with the current value of the property
-		setPropertyPreferenceSummary(preference, property);
+	/**
+	 * Starts or stops polling the live properties, according to the visibility of the tab
+	 */
+	private void updateLivePolling() {
+		boolean active = _resumed && getUserVisibleHint() && !_liveProperties.isEmpty();
+		if (active == _livePolling)
+			return;
+		_livePolling = active;
+
+		// Start polling the live properties on the polling thread, or stop polling them
+		if (active) {
+			if (_liveScheduler == null)
+				_liveScheduler = new PollScheduler(new HandlerClock(PropertyExecutor.getPollLooper()));
+			for (FileProperty<?> property:_liveProperties)
+				_liveScheduler.add(property, LIVE_MIN_INTERVAL, LIVE_MAX_INTERVAL);
+		} else
+			_liveScheduler.clear();
 	}
 
 	/**
@@ -182,16 +332,64 @@ public class TabPreferenceListFragment
 	}
 
 	/**
-	 * Sets the preference summary text with the property value
+	 * Sets the preference summary text with the property value, read on the I/O thread.
+	 * The summary is then kept updated with the changes of the property value
 	 * @param preference The preference to set the summary
 	 * @param property The property related to the preference
 	 */
-	protected void setPropertyPreferenceSummary(Preference preference, final IProperty<?> property) {
-		// Get the current value of the property
-		Object value = property.getValue();
+	protected void setPropertyPreferenceSummary(final Preference preference, final IProperty<?> property) {
+		// Observe the changes of the property value, if not already done
+		if (!_summaryBindings.containsKey(property.getID()))
+			_summaryBindings.put(property.getID(), bindPropertySummary(preference, property));
+
+		// Read the current value
+		PropertyExecutor.submit(new Callable<String>() {
+			/**
+			 * Gets the summary text
+			 */
+			@Override
+			public String call() {
+				return getPropertySummary(property);
+			}
+		}, new IPropertyCallback<String>() {
+			/**
+			 * Sets the summary text, if available
+			 */
+			public void onCompleted(String summary) {
+				if (summary != null) preference.setSummary(summary);
+			}
+		});
+	}
+
+	/**
+	 * Binds the preference summary text to the changes of the property value
+	 * @param preference The preference to update
+	 * @param property The property to observe
+	 * @return The new binding
+	 */
+	private static <T> SummaryBinding<T> bindPropertySummary(Preference preference, IProperty<T> property) {
+		return new SummaryBinding<T>(preference, property);
+	}
 
-		// If not null, set the text of the summary with the string representation of the current value
-		if (value != null) preference.setSummary(value.toString());
+	/**
+	 * Gets the string representation of the property value, used as preference summary text
+	 * @param property The property
+	 * @return The string representation of the current value, or null if not available
+	 */
+	protected String getPropertySummary(IProperty<?> property) {
+		// If the property supports the primitive accessors, read the value without boxing
+		// (the min value is never exposed by the properties)
+		if (property instanceof IIntProperty) {
+			int value = ((IIntProperty)property).getInt(Integer.MIN_VALUE);
+			return (value != Integer.MIN_VALUE) ? Integer.toString(value) : null;
+		} else if (property instanceof ILongProperty) {
+			long value = ((ILongProperty)property).getLong(Long.MIN_VALUE);
+			return (value != Long.MIN_VALUE) ? Long.toString(value) : null;
+		}
+
+		// Get the current value of the property and return its string representation, if not null
+		Object value = property.getValue();
+		return (value != null) ? value.toString() : null;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,436 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.christopher83.framework.input.interfaces.IInputEventVisitor;
+
+import android.util.Log;
+
+/**
+ * Class for the streaming parser of the captured input event traces, reading the file through memory mapped
+ * windows and decoding the events straight from the bytes, without creating any object for each event or line.
+ * <p>
+ * The binary traces are dumps of /dev/input/event*, made of little endian input_event records
+ * (24 bytes on 64-bit kernels, 16 bytes on 32-bit kernels). The text traces are made of the lines printed
+ * by getevent -t or getevent -lt, like "[   63.546040] /dev/input/event2: EV_KEY KEY_BACK DOWN";
+ * the lines without a timestamp are skipped
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class InputEventParser {
+
+	// Types of the events
+	public static final int EV_SYN = 0x00;
+	public static final int EV_KEY = 0x01;
+	public static final int EV_REL = 0x02;
+	public static final int EV_ABS = 0x03;
+	public static final int EV_MSC = 0x04;
+	public static final int EV_SW = 0x05;
+
+	// Code of the miscellaneous events carrying the scan code, reported by the key drivers when the interrupt is handled
+	public static final int MSC_SCAN = 0x04;
+
+	// Codes of the keys handled by the filter
+	public static final int KEY_HOME = 102;
+	public static final int KEY_MENU = 139;
+	public static final int KEY_BACK = 158;
+	public static final int KEY_HOMEPAGE = 172;
+
+	// Values of the key events
+	public static final int KEY_UP = 0;
+	public static final int KEY_DOWN = 1;
+	public static final int KEY_REPEAT = 2;
+
+	// Code of the events with an unknown label
+	public static final int UNKNOWN_CODE = -1;
+
+	// Size (in bytes) of the mapped windows
+	private static final long WINDOW_SIZE = 32L * 1024 * 1024;
+
+	// Size (in bytes) of the chunks copied from the mapped windows of the text traces, also the max length of a line
+	private static final int CHUNK_SIZE = 256 * 1024;
+
+	// Size (in bytes) of the input_event records
+	private static final int RECORD_SIZE_64 = 24;
+	private static final int RECORD_SIZE_32 = 16;
+
+	// Number of bytes and records checked to detect the format
+	private static final int DETECT_BYTES = 256;
+	private static final int DETECT_RECORDS = 16;
+
+	// Max type of a valid event
+	private static final int EV_MAX = 0x1F;
+
+	private static final long US_PER_SECOND = 1000000;
+
+	// Value returned for an unparsable field
+	private static final long INVALID_FIELD = Long.MIN_VALUE;
+
+	// Labels printed by getevent -l for the types, the codes and the values of interest, with their numeric values
+	private static final byte[][] LABELS = ascii(
+		"EV_SYN", "EV_KEY", "EV_REL", "EV_ABS", "EV_MSC", "EV_SW", "SYN_REPORT", "MSC_SCAN",
+		"KEY_HOME", "KEY_MENU", "KEY_BACK", "KEY_HOMEPAGE", "UP", "DOWN", "REPEAT");
+	private static final int[] LABEL_VALUES = {
+		EV_SYN, EV_KEY, EV_REL, EV_ABS, EV_MSC, EV_SW, 0, MSC_SCAN,
+		KEY_HOME, KEY_MENU, KEY_BACK, KEY_HOMEPAGE, KEY_UP, KEY_DOWN, KEY_REPEAT };
+
+	private final IInputEventVisitor _visitor; // The visitor of the decoded events
+	private long _events;                      // The number of decoded events
+	private long _skipped;                     // The number of skipped lines or records
+
+	/**
+	 * Class constructor
+	 * @param visitor The visitor of the decoded events
+	 */
+	public InputEventParser(IInputEventVisitor visitor) {
+		_visitor = visitor;
+	}
+
+	/**
+	 * Gets the number of decoded events
+	 * @return The number of events passed to the visitor
+	 */
+	public long getEvents() {
+		return _events;
+	}
+
+	/**
+	 * Gets the number of skipped lines or records
+	 * @return The number of lines without an event, or of incomplete records
+	 */
+	public long getSkipped() {
+		return _skipped;
+	}
+
+	/**
+	 * Parses a trace, detecting its format
+	 * @param file The trace file
+	 * @return The number of events decoded from the file
+	 * @throws IOException If the file can't be read
+	 */
+	public long parse(File file) throws IOException {
+		return parse(file, detect(file));
+	}
+
+	/**
+	 * Parses a trace
+	 * @param file The trace file
+	 * @param format The format of the trace
+	 * @return The number of events decoded from the file
+	 * @throws IOException If the file can't be read
+	 */
+	public long parse(File file, InputTraceFormat format) throws IOException {
+		long events = _events;
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = input.getChannel();
+			switch (format) {
+				case BINARY_64:
+					parseRecords(channel, RECORD_SIZE_64);
+					break;
+				case BINARY_32:
+					parseRecords(channel, RECORD_SIZE_32);
+					break;
+				default:
+					parseText(channel);
+					break;
+			}
+		} finally {
+			closeQuietly(input);
+		}
+		return _events - events;
+	}
+
+	/**
+	 * Detects the format of a trace, from its first bytes
+	 * @param file The trace file
+	 * @return The detected format
+	 * @throws IOException If the file can't be read
+	 */
+	public static InputTraceFormat detect(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			// Read the first bytes
+			byte[] head = new byte[(int)Math.min(input.length(), DETECT_RECORDS * RECORD_SIZE_64)];
+			input.readFully(head);
+
+			// Printable bytes mean a text trace
+			boolean text = true;
+			for (int i = 0; i < Math.min(head.length, DETECT_BYTES) && text; i++)
+				text = (head[i] >= 0x20 && head[i] < 0x7F) || head[i] == '\n' || head[i] == '\r' || head[i] == '\t';
+			if (text)
+				return InputTraceFormat.TEXT;
+
+			// Records with valid microseconds and types at the 64-bit offsets mean a 64-bit trace
+			ByteBuffer buffer = ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN);
+			boolean valid = head.length >= RECORD_SIZE_64;
+			for (int i = 0; valid && i + RECORD_SIZE_64 <= head.length; i += RECORD_SIZE_64) {
+				long usec = buffer.getLong(i + 8);
+				int type = buffer.getShort(i + 16) & 0xFFFF;
+				valid = usec >= 0 && usec < US_PER_SECOND && type <= EV_MAX;
+			}
+			return valid ? InputTraceFormat.BINARY_64 : InputTraceFormat.BINARY_32;
+		} finally {
+			closeQuietly(input);
+		}
+	}
+
+	/**
+	 * Parses the input_event records of a binary trace
+	 * @param channel The channel of the trace file
+	 * @param recordSize The size (in bytes) of each record
+	 * @throws IOException If the file can't be read
+	 */
+	private void parseRecords(FileChannel channel, int recordSize) throws IOException {
+		long length = channel.size();
+		long window = WINDOW_SIZE - WINDOW_SIZE % recordSize;
+		long end = length - length % recordSize;
+		if (end != length)
+			_skipped++;
+
+		// Map a window at a time, each one made of whole records
+		for (long position = 0; position < end; position += window) {
+			int size = (int)Math.min(window, end - position);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (recordSize == RECORD_SIZE_64) {
+				for (int i = 0; i < size; i += RECORD_SIZE_64) {
+					long time = buffer.getLong(i) * US_PER_SECOND + buffer.getLong(i + 8);
+					_visitor.onEvent(time, buffer.getShort(i + 16) & 0xFFFF, buffer.getShort(i + 18) & 0xFFFF, buffer.getInt(i + 20));
+				}
+			} else {
+				for (int i = 0; i < size; i += RECORD_SIZE_32) {
+					long time = (buffer.getInt(i) & 0xFFFFFFFFL) * US_PER_SECOND + (buffer.getInt(i + 4) & 0xFFFFFFFFL);
+					_visitor.onEvent(time, buffer.getShort(i + 8) & 0xFFFF, buffer.getShort(i + 10) & 0xFFFF, buffer.getInt(i + 12));
+				}
+			}
+			_events += size / recordSize;
+		}
+	}
+
+	/**
+	 * Parses the lines of a text trace
+	 * @param channel The channel of the trace file
+	 * @throws IOException If the file can't be read
+	 */
+	private void parseText(FileChannel channel) throws IOException {
+		long length = channel.size();
+		byte[] chunk = new byte[CHUNK_SIZE];
+		int carried = 0;
+		for (long position = 0; position < length; position += WINDOW_SIZE) {
+			int size = (int)Math.min(WINDOW_SIZE, length - position);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+
+			// Copy a chunk at a time after the incomplete line of the previous chunk, then parse its whole lines
+			while (buffer.hasRemaining()) {
+				int count = Math.min(buffer.remaining(), CHUNK_SIZE - carried);
+				buffer.get(chunk, carried, count);
+				int end = carried + count;
+				int start = 0;
+				for (int i = carried; i < end; i++) {
+					if (chunk[i] == '\n') {
+						parseLine(chunk, start, i);
+						start = i + 1;
+					}
+				}
+
+				// Carry the incomplete line, skipping a line longer than a chunk
+				carried = end - start;
+				if (carried == CHUNK_SIZE) {
+					_skipped++;
+					carried = 0;
+				} else
+					System.arraycopy(chunk, start, chunk, 0, carried);
+			}
+		}
+
+		// Parse the last line, without the line feed
+		if (carried > 0)
+			parseLine(chunk, 0, carried);
+	}
+
+	/**
+	 * Parses a text line
+	 * @param line The bytes holding the line
+	 * @param from The index of the first byte of the line
+	 * @param to The index after the last byte of the line
+	 */
+	private void parseLine(byte[] line, int from, int to) {
+		// Parse the timestamp, in seconds with the fractional part
+		int i = skipSpaces(line, from, to);
+		if (i == to || line[i] != '[') {
+			_skipped++;
+			return;
+		}
+		i = skipSpaces(line, i + 1, to);
+		long seconds = 0;
+		for (; i < to && isDigit(line[i]); i++)
+			seconds = seconds * 10 + (line[i] - '0');
+		long micros = 0;
+		long scale = US_PER_SECOND;
+		if (i < to && line[i] == '.') {
+			for (i++; i < to && isDigit(line[i]); i++) {
+				if (scale > 1) {
+					scale /= 10;
+					micros += (line[i] - '0') * scale;
+				}
+			}
+		}
+		if (i == to || line[i] != ']') {
+			_skipped++;
+			return;
+		}
+		long time = seconds * US_PER_SECOND + micros;
+
+		// Get the fields, skipping the device path printed when many devices are captured
+		int typeStart = skipSpaces(line, i + 1, to);
+		int typeEnd = tokenEnd(line, typeStart, to);
+		if (typeEnd > typeStart && line[typeEnd - 1] == ':') {
+			typeStart = skipSpaces(line, typeEnd, to);
+			typeEnd = tokenEnd(line, typeStart, to);
+		}
+		int codeStart = skipSpaces(line, typeEnd, to);
+		int codeEnd = tokenEnd(line, codeStart, to);
+		int valueStart = skipSpaces(line, codeEnd, to);
+		int valueEnd = tokenEnd(line, valueStart, to);
+		long type = parseField(line, typeStart, typeEnd);
+		long code = parseField(line, codeStart, codeEnd);
+		long value = parseField(line, valueStart, valueEnd);
+		if (type == INVALID_FIELD || value == INVALID_FIELD || codeStart == codeEnd) {
+			_skipped++;
+			return;
+		}
+		_visitor.onEvent(time, (int)type, (code != INVALID_FIELD) ? (int)code : UNKNOWN_CODE, (int)value);
+		_events++;
+	}
+
+	/**
+	 * Parses a field, printed as hexadecimal number or as label
+	 * @param line The bytes holding the field
+	 * @param from The index of the first byte of the field
+	 * @param to The index after the last byte of the field
+	 * @return The value of the field, or {@link #INVALID_FIELD} if empty or with an unknown label
+	 */
+	private static long parseField(byte[] line, int from, int to) {
+		if (from == to)
+			return INVALID_FIELD;
+
+		// Parse the hexadecimal number
+		long value = 0;
+		int i = from;
+		for (; i < to; i++) {
+			int digit = Character.digit(line[i], 16);
+			if (digit < 0)
+				break;
+			value = (value << 4) | digit;
+		}
+		if (i == to)
+			return (int)value;
+
+		// Look for the label
+		int length = to - from;
+		for (int label = 0; label < LABELS.length; label++) {
+			byte[] bytes = LABELS[label];
+			if (bytes.length != length)
+				continue;
+			int j = 0;
+			while (j < length && bytes[j] == line[from + j])
+				j++;
+			if (j == length)
+				return LABEL_VALUES[label];
+		}
+		return INVALID_FIELD;
+	}
+
+	/**
+	 * Skips the spaces
+	 * @param line The bytes holding the line
+	 * @param from The index where to start
+	 * @param to The index after the last byte of the line
+	 * @return The index of the first byte not being a space
+	 */
+	private static int skipSpaces(byte[] line, int from, int to) {
+		while (from < to && isSpace(line[from]))
+			from++;
+		return from;
+	}
+
+	/**
+	 * Finds the end of a token
+	 * @param line The bytes holding the line
+	 * @param from The index of the first byte of the token
+	 * @param to The index after the last byte of the line
+	 * @return The index after the last byte of the token
+	 */
+	private static int tokenEnd(byte[] line, int from, int to) {
+		while (from < to && !isSpace(line[from]))
+			from++;
+		return from;
+	}
+
+	/**
+	 * Checks if a byte is a space
+	 * @param b The byte
+	 * @return True if a space, a tab or a carriage return
+	 */
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	/**
+	 * Checks if a byte is a decimal digit
+	 * @param b The byte
+	 * @return True if a digit
+	 */
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	/**
+	 * Encodes some strings as ASCII bytes
+	 * @param strings The strings to encode
+	 * @return The encoded strings
+	 */
+	private static byte[][] ascii(String... strings) {
+		byte[][] bytes = new byte[strings.length][];
+		for (int i = 0; i < strings.length; i++) {
+			bytes[i] = new byte[strings[i].length()];
+			for (int j = 0; j < bytes[i].length; j++)
+				bytes[i][j] = (byte)strings[i].charAt(j);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Closes a file, ignoring any error
+	 * @param file The file to close
+	 */
+	private static void closeQuietly(RandomAccessFile file) {
+		try {
+			file.close();
+		} catch (IOException ex) {
+			Log.w(InputEventParser.class.getName(), "Error during file closing", ex);
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.input;
+
+/**
+ * Formats of the captured input event traces
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public enum InputTraceFormat {
+
+	/**
+	 * Text lines printed by getevent -t or getevent -lt, with the timestamp and the numeric or labeled fields
+	 */
+	TEXT,
+
+	/**
+	 * Raw input_event records of a 64-bit kernel, 24 bytes each
+	 */
+	BINARY_64,
+
+	/**
+	 * Raw input_event records of a 32-bit kernel, 16 bytes each
+	 */
+	BINARY_32
+
+}
@@ -0,0 +1,210 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.input;
+
+import java.util.Arrays;
+
+/**
+ * Class for the histogram of the intervals between events, with buckets of fixed width
+ * and a bucket counting the intervals beyond the last one
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class IntervalHistogram {
+
+	// Value returned when the histogram has not enough intervals
+	public static final long NO_VALUE = Long.MIN_VALUE;
+
+	private final long _bucketWidth; // The width (in us) of each bucket
+	private final long[] _buckets;   // The number of intervals inside each bucket
+	private long _overflow;          // The number of intervals beyond the last bucket
+	private long _count;             // The number of intervals
+
+	/**
+	 * Class constructor
+	 * @param bucketWidth The width (in us) of each bucket
+	 * @param bucketCount The number of buckets
+	 */
+	public IntervalHistogram(long bucketWidth, int bucketCount) {
+		_bucketWidth = Math.max(1, bucketWidth);
+		_buckets = new long[Math.max(1, bucketCount)];
+	}
+
+	/**
+	 * Adds an interval
+	 * @param interval The interval (in us), the negative ones are ignored
+	 */
+	public void add(long interval) {
+		if (interval < 0)
+			return;
+		long bucket = interval / _bucketWidth;
+		if (bucket < _buckets.length)
+			_buckets[(int)bucket]++;
+		else
+			_overflow++;
+		_count++;
+	}
+
+	/**
+	 * Adds some intervals to a bucket, used to restore a stored histogram
+	 * @param bucket The index of the bucket, the indexes beyond the last bucket count as overflow
+	 * @param count The number of intervals to add
+	 */
+	public void addBucket(int bucket, long count) {
+		if (bucket < 0 || count <= 0)
+			return;
+		if (bucket < _buckets.length)
+			_buckets[bucket] += count;
+		else
+			_overflow += count;
+		_count += count;
+	}
+
+	/**
+	 * Adds all the intervals of another histogram, with the same bucket width
+	 * @param histogram The histogram to add
+	 * @throws IllegalArgumentException If the bucket widths are different
+	 */
+	public void add(IntervalHistogram histogram) {
+		if (histogram._bucketWidth != _bucketWidth)
+			throw new IllegalArgumentException(String.format("Bucket width %d us instead of %d us", histogram._bucketWidth, _bucketWidth));
+		for (int i = 0; i < histogram._buckets.length; i++)
+			addBucket(i, histogram._buckets[i]);
+		addBucket(_buckets.length, histogram._overflow);
+	}
+
+	/**
+	 * Removes all the intervals
+	 */
+	public void clear() {
+		Arrays.fill(_buckets, 0);
+		_overflow = 0;
+		_count = 0;
+	}
+
+	/**
+	 * Gets the number of intervals
+	 * @return The number of intervals, also the ones beyond the last bucket
+	 */
+	public long getCount() {
+		return _count;
+	}
+
+	/**
+	 * Gets the width of each bucket
+	 * @return The width (in us)
+	 */
+	public long getBucketWidth() {
+		return _bucketWidth;
+	}
+
+	/**
+	 * Gets the number of buckets
+	 * @return The number of buckets
+	 */
+	public int getBucketCount() {
+		return _buckets.length;
+	}
+
+	/**
+	 * Gets the number of intervals inside a bucket
+	 * @param bucket The index of the bucket
+	 * @return The number of intervals from bucket * width (included) to (bucket + 1) * width (excluded)
+	 */
+	public long getBucket(int bucket) {
+		return _buckets[bucket];
+	}
+
+	/**
+	 * Gets the number of intervals beyond the last bucket
+	 * @return The number of intervals not lower than bucket count * width
+	 */
+	public long getOverflow() {
+		return _overflow;
+	}
+
+	/**
+	 * Gets a percentile of the intervals
+	 * @param fraction The fraction of the intervals, from 0 to 1
+	 * @return The upper bound (in us) of the bucket reaching the fraction, {@link Long#MAX_VALUE}
+	 * if reached beyond the last bucket, or {@link #NO_VALUE} if there are no intervals
+	 */
+	public long getPercentile(double fraction) {
+		if (_count == 0)
+			return NO_VALUE;
+		long target = (long)Math.ceil(Math.max(0, Math.min(1, fraction)) * _count);
+		long cumulated = 0;
+		for (int i = 0; i < _buckets.length; i++) {
+			cumulated += _buckets[i];
+			if (cumulated >= target && cumulated > 0)
+				return (i + 1) * _bucketWidth;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Gets the threshold splitting the intervals in two groups, the short and the long ones, computed with the
+	 * Otsu method on the logarithm of the intervals, so the groups can be far apart on different scales
+	 * @return The upper bound (in us) of the last bucket of the short intervals,
+	 * or {@link #NO_VALUE} if the intervals are not spread over at least two buckets
+	 */
+	public long getSplitThreshold() {
+		// Get the totals over the buckets, on the logarithmic scale
+		long total = 0;
+		double totalSum = 0;
+		int used = 0;
+		for (int i = 0; i < _buckets.length; i++) {
+			if (_buckets[i] == 0)
+				continue;
+			total += _buckets[i];
+			totalSum += _buckets[i] * logCenter(i);
+			used++;
+		}
+		if (used < 2)
+			return NO_VALUE;
+
+		// Find the split maximizing the variance between the two groups
+		long count = 0;
+		double sum = 0;
+		double bestVariance = -1;
+		int best = -1;
+		for (int i = 0; i < _buckets.length - 1; i++) {
+			count += _buckets[i];
+			sum += _buckets[i] * logCenter(i);
+			if (count == 0 || _buckets[i] == 0)
+				continue;
+			if (count == total)
+				break;
+			double shortMean = sum / count;
+			double longMean = (totalSum - sum) / (total - count);
+			double variance = (double)count * (total - count) * (shortMean - longMean) * (shortMean - longMean);
+			if (variance > bestVariance) {
+				bestVariance = variance;
+				best = i;
+			}
+		}
+		return (best >= 0) ? (best + 1) * _bucketWidth : NO_VALUE;
+	}
+
+	/**
+	 * Gets the logarithm of the center of a bucket
+	 * @param bucket The index of the bucket
+	 * @return The natural logarithm of the center (in us)
+	 */
+	private double logCenter(int bucket) {
+		return Math.log((bucket + 0.5) * _bucketWidth);
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.input;
+
+import java.util.Arrays;
+
+import com.christopher83.framework.input.interfaces.IInputEventVisitor;
+
+/**
+ * Class for the recorder of the key presses of some keys, keeping their times and codes inside primitive arrays
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class KeyPressRecorder implements IInputEventVisitor {
+
+	// Initial capacity of the arrays
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final int[] _keys; // The codes of the recorded keys
+	private long[] _times;     // The times (in us) of the presses
+	private int[] _codes;      // The codes of the pressed keys
+	private int _size;         // The number of presses
+
+	/**
+	 * Class constructor
+	 * @param keys The codes of the keys to record
+	 */
+	public KeyPressRecorder(int... keys) {
+		_keys = keys.clone();
+		_times = new long[INITIAL_CAPACITY];
+		_codes = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Records the press of one of the keys
+	 */
+	@Override
+	public void onEvent(long time, int type, int code, int value) {
+		if (type != InputEventParser.EV_KEY || value != InputEventParser.KEY_DOWN || !contains(_keys, code))
+			return;
+
+		// Grow the arrays when full
+		if (_size == _times.length) {
+			_times = Arrays.copyOf(_times, _size * 2);
+			_codes = Arrays.copyOf(_codes, _size * 2);
+		}
+		_times[_size] = time;
+		_codes[_size] = code;
+		_size++;
+	}
+
+	/**
+	 * Gets the number of presses
+	 * @return The number of presses
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Gets the time of a press
+	 * @param index The index of the press
+	 * @return The time (in us)
+	 */
+	public long getTime(int index) {
+		return _times[index];
+	}
+
+	/**
+	 * Gets the code of a pressed key
+	 * @param index The index of the press
+	 * @return The code of the key
+	 */
+	public int getCode(int index) {
+		return _codes[index];
+	}
+
+	/**
+	 * Adds the intervals between the consecutive presses of some keys to a histogram
+	 * @param histogram The histogram where to add the intervals
+	 * @param keys The codes of the keys, their presses are considered as a single sequence
+	 * @return The number of added intervals
+	 */
+	public int addIntervals(IntervalHistogram histogram, int... keys) {
+		int added = 0;
+		long previous = Long.MIN_VALUE;
+		for (int i = 0; i < _size; i++) {
+			if (!contains(keys, _codes[i]))
+				continue;
+			if (previous != Long.MIN_VALUE) {
+				histogram.add(_times[i] - previous);
+				added++;
+			}
+			previous = _times[i];
+		}
+		return added;
+	}
+
+	/**
+	 * Checks if a code is inside a set of codes
+	 * @param codes The set of codes
+	 * @param code The code to look for
+	 * @return True if found
+	 */
+	private static boolean contains(int[] codes, int code) {
+		for (int i = 0; i < codes.length; i++) {
+			if (codes[i] == code)
+				return true;
+		}
+		return false;
+	}
+
+}
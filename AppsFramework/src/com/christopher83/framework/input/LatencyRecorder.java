@@ -0,0 +1,255 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.input;
+
+import com.christopher83.framework.input.interfaces.IInputEventVisitor;
+
+/**
+ * Class for the recorder of the latency added between the raw interrupts and the delivered key presses.
+ * The raw interrupts are recorded by marker events (by default the MSC_SCAN events, reported by the key
+ * drivers when the interrupt is handled), queued by their value, the scan code of the key. Each delivered
+ * press is paired with the oldest pending marker of a scan code of its own group of keys, and the delay
+ * between them is added to the histogram of the group. The scan codes of a group are set by the caller or
+ * learned when a press finds the pending markers of a single unknown scan code. The markers not followed
+ * by a delivered press within the pairing window are counted as suppressed
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class LatencyRecorder implements IInputEventVisitor {
+
+	// Max number of pending markers of a scan code, the oldest ones are dropped beyond it
+	private static final int MAX_PENDING = 256;
+
+	// Max number of distinct scan codes, the markers of the other ones are counted as suppressed
+	private static final int MAX_SCAN_CODES = 32;
+
+	// Group of the scan codes not associated yet
+	private static final int NO_GROUP = -1;
+
+	private final int _markerType;                 // The type of the marker events
+	private final int _markerCode;                 // The code of the marker events
+	private final long _window;                    // The pairing window (in us)
+	private final int[][] _groups;                 // The codes of the keys of each group
+	private final IntervalHistogram[] _latencies;  // The added latencies of each group
+	private final long[] _unmatched;               // The presses of each group without a pending marker
+	private final int[] _scanCodes;                // The scan codes, by slot
+	private final int[] _scanGroups;               // The groups of the scan codes, by slot
+	private final long[][] _pending;               // The times (in us) of the pending markers of each slot, as rings
+	private final int[] _heads;                    // The indexes of the oldest pending marker of each slot
+	private final int[] _sizes;                    // The numbers of pending markers of each slot
+	private int _slots;                            // The number of used slots
+	private long _suppressed;                      // The markers not followed by a delivered press
+
+	/**
+	 * Class constructor, using the MSC_SCAN events as markers
+	 * @param window The pairing window (in us), the max latency of a delivered press
+	 * @param bucketWidth The width (in us) of the buckets of the latency histograms
+	 * @param bucketCount The number of buckets of the latency histograms
+	 * @param groups The codes of the keys of each group, with a histogram for each group
+	 */
+	public LatencyRecorder(long window, long bucketWidth, int bucketCount, int[]... groups) {
+		this(InputEventParser.EV_MSC, InputEventParser.MSC_SCAN, window, bucketWidth, bucketCount, groups);
+	}
+
+	/**
+	 * Class constructor
+	 * @param markerType The type of the marker events
+	 * @param markerCode The code of the marker events
+	 * @param window The pairing window (in us), the max latency of a delivered press
+	 * @param bucketWidth The width (in us) of the buckets of the latency histograms
+	 * @param bucketCount The number of buckets of the latency histograms
+	 * @param groups The codes of the keys of each group, with a histogram for each group
+	 */
+	public LatencyRecorder(int markerType, int markerCode, long window, long bucketWidth, int bucketCount, int[]... groups) {
+		_markerType = markerType;
+		_markerCode = markerCode;
+		_window = window;
+		_groups = groups.clone();
+		_latencies = new IntervalHistogram[groups.length];
+		for (int i = 0; i < groups.length; i++)
+			_latencies[i] = new IntervalHistogram(bucketWidth, bucketCount);
+		_unmatched = new long[groups.length];
+		_scanCodes = new int[MAX_SCAN_CODES];
+		_scanGroups = new int[MAX_SCAN_CODES];
+		_pending = new long[MAX_SCAN_CODES][];
+		_heads = new int[MAX_SCAN_CODES];
+		_sizes = new int[MAX_SCAN_CODES];
+	}
+
+	/**
+	 * Associates a scan code to a group of keys, so its markers are paired only with the presses of the group
+	 * @param scanCode The scan code, value of the marker events
+	 * @param group The index of the group
+	 */
+	public void setScanCode(int scanCode, int group) {
+		int slot = slotOf(scanCode);
+		if (slot >= 0)
+			_scanGroups[slot] = group;
+	}
+
+	/**
+	 * Records a marker or pairs a delivered press
+	 */
+	@Override
+	public void onEvent(long time, int type, int code, int value) {
+		if (type == _markerType && code == _markerCode) {
+			// Queue the marker with the ones of its scan code, dropping the oldest one when full
+			expire(time);
+			int slot = slotOf(value);
+			if (slot < 0) {
+				_suppressed++;
+				return;
+			}
+			long[] pending = _pending[slot];
+			if (_sizes[slot] == pending.length) {
+				_heads[slot] = (_heads[slot] + 1) % pending.length;
+				_sizes[slot]--;
+				_suppressed++;
+			}
+			pending[(_heads[slot] + _sizes[slot]) % pending.length] = time;
+			_sizes[slot]++;
+			return;
+		}
+		if (type != InputEventParser.EV_KEY || value != InputEventParser.KEY_DOWN)
+			return;
+
+		// Pair the press of a key of a group with the oldest pending marker of the group
+		int group = groupOf(code);
+		if (group < 0)
+			return;
+		expire(time);
+		int slot = findPending(group);
+		if (slot < 0) {
+			_unmatched[group]++;
+			return;
+		}
+		_latencies[group].add(time - _pending[slot][_heads[slot]]);
+		_heads[slot] = (_heads[slot] + 1) % _pending[slot].length;
+		_sizes[slot]--;
+	}
+
+	/**
+	 * Ends the recording, counting the pending markers as suppressed
+	 */
+	public void finish() {
+		for (int slot = 0; slot < _slots; slot++) {
+			_suppressed += _sizes[slot];
+			_sizes[slot] = 0;
+		}
+	}
+
+	/**
+	 * Gets the histogram of the added latencies of a group
+	 * @param group The index of the group
+	 * @return The histogram of the latencies (in us)
+	 */
+	public IntervalHistogram getLatencies(int group) {
+		return _latencies[group];
+	}
+
+	/**
+	 * Gets the number of presses of a group without a pending marker
+	 * @param group The index of the group
+	 * @return The number of unmatched presses
+	 */
+	public long getUnmatched(int group) {
+		return _unmatched[group];
+	}
+
+	/**
+	 * Gets the number of markers not followed by a delivered press
+	 * @return The number of suppressed markers, of all the groups
+	 */
+	public long getSuppressed() {
+		return _suppressed;
+	}
+
+	/**
+	 * Drops the pending markers older than the pairing window
+	 * @param time The current time (in us)
+	 */
+	private void expire(long time) {
+		for (int slot = 0; slot < _slots; slot++) {
+			long[] pending = _pending[slot];
+			while (_sizes[slot] > 0 && time - pending[_heads[slot]] > _window) {
+				_heads[slot] = (_heads[slot] + 1) % pending.length;
+				_sizes[slot]--;
+				_suppressed++;
+			}
+		}
+	}
+
+	/**
+	 * Finds the slot holding the oldest pending marker of a group. Without pending markers of the group,
+	 * the only unknown scan code with pending markers, if any, is associated to the group
+	 * @param group The index of the group
+	 * @return The slot, or -1 if the group has no pending marker
+	 */
+	private int findPending(int group) {
+		int oldest = -1;
+		int unknown = -1;
+		int unknowns = 0;
+		for (int slot = 0; slot < _slots; slot++) {
+			if (_sizes[slot] == 0)
+				continue;
+			if (_scanGroups[slot] == group) {
+				if (oldest < 0 || _pending[slot][_heads[slot]] < _pending[oldest][_heads[oldest]])
+					oldest = slot;
+			} else if (_scanGroups[slot] == NO_GROUP) {
+				unknown = slot;
+				unknowns++;
+			}
+		}
+		if (oldest < 0 && unknowns == 1) {
+			_scanGroups[unknown] = group;
+			oldest = unknown;
+		}
+		return oldest;
+	}
+
+	/**
+	 * Gets the slot of a scan code, adding it if not present
+	 * @param scanCode The scan code
+	 * @return The slot, or -1 if there are no free slots
+	 */
+	private int slotOf(int scanCode) {
+		for (int slot = 0; slot < _slots; slot++) {
+			if (_scanCodes[slot] == scanCode)
+				return slot;
+		}
+		if (_slots == MAX_SCAN_CODES)
+			return -1;
+		_scanCodes[_slots] = scanCode;
+		_scanGroups[_slots] = NO_GROUP;
+		_pending[_slots] = new long[MAX_PENDING];
+		return _slots++;
+	}
+
+	/**
+	 * Gets the group of a key
+	 * @param code The code of the key
+	 * @return The index of the group, or -1 if the key is not in any group
+	 */
+	private int groupOf(int code) {
+		for (int group = 0; group < _groups.length; group++) {
+			for (int i = 0; i < _groups[group].length; i++) {
+				if (_groups[group][i] == code)
+					return group;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,33 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.input.interfaces;
+
+/**
+ * Interface for a visitor of the input events decoded by a parser
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public interface IInputEventVisitor {
+
+	/**
+	 * Called for each decoded event, in file order
+	 * @param time The time of the event (in us)
+	 * @param type The type of the event (EV_*)
+	 * @param code The code of the event (KEY_*, ...), or -1 if its label is unknown
+	 * @param value The value of the event (for the keys: 0 up, 1 down, 2 repeat)
+	 */
+	public abstract void onEvent(long time, int type, int code, int value);
+
+}
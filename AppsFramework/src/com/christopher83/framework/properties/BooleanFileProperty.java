@@ -15,11 +15,16 @@
  */
 package com.christopher83.framework.properties;
 
+import java.nio.ByteBuffer;
+
+import com.christopher83.framework.properties.interfaces.IBooleanProperty;
+import com.christopher83.framework.utilities.AsciiCodec;
+
 /**
  * Class for a boolean property read/stored from a file
  * @author Cristoforo Cataldo (Christopher83)
  */
-public class BooleanFileProperty extends FileProperty<Boolean> {
+public class BooleanFileProperty extends FileProperty<Boolean> implements IBooleanProperty {
 
 	/**
 	 * Class constructor
@@ -68,25 +73,47 @@ public class BooleanFileProperty extends FileProperty<Boolean> {
 	}
 
 	/**
-	 * Gets the boolean value of the property
-	 * @return The boolean value of the property
+	 * Decodes the boolean value of the property from the raw bytes of the file
+	 * @param buffer The buffer positioned on the raw bytes, can be null
+	 * @return The boolean value of the property, or null if not available
+	 */
+	@Override
+	protected Boolean decodeValue(ByteBuffer buffer) {
+		// Decode the value directly from the raw bytes
+		int value = AsciiCodec.decodeBoolean(buffer);
+		return (value != AsciiCodec.INVALID_BOOLEAN) ? Boolean.valueOf(value == AsciiCodec.BOOLEAN_TRUE) : null;
+	}
+
+	/**
+	 * Gets the boolean value of the property without boxing
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The boolean value of the property, or the specified default value if not available
 	 */
 	@Override
-	public Boolean getValue() {
-		String value = super.readRawValue();
-		if (value != null && !value.isEmpty())
-			return value.equals("1") ? true : (value.equals("0") ? false : null);
-		else
-			return null;
+	public boolean getBoolean(boolean defaultValue) {
+		// Decode the value directly from the raw bytes of the file
+		int value = AsciiCodec.decodeBoolean(readRawBytes());
+		return (value != AsciiCodec.INVALID_BOOLEAN) ? (value == AsciiCodec.BOOLEAN_TRUE) : defaultValue;
 	}
 
 	/**
 	 * Sets the current value of the property
 	 * @param value The current value to set
+	 * @return True if the value has been stored
+	 */
+	@Override
+	public boolean setValue(Object value) {
+		return setBoolean(value != null && value.equals(Boolean.TRUE));
+	}
+
+	/**
+	 * Sets the current boolean value of the property without boxing
+	 * @param value The current value to set
+	 * @return True if the value has been stored
 	 */
 	@Override
-	public void setValue(Object value) {
-		storeRawValue((value != null && value.equals(Boolean.TRUE)) ? "1" : "0");
+	public boolean setBoolean(boolean value) {
+		return storeRawBytes(AsciiCodec.encodeBoolean(value));
 	}
 
 }
@@ -0,0 +1,41 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+/**
+ * Policies for caching the value read from the file of a property
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public enum CachePolicy {
+
+	/**
+	 * The file is read every time, used for volatile values like counters
+	 */
+	ALWAYS_READ,
+
+	/**
+	 * The value read is kept till the next write performed through the property,
+	 * used for values changed only by this application
+	 */
+	UNTIL_WRITE,
+
+	/**
+	 * The value read is kept for a limited time, or till the next write
+	 * performed through the property
+	 */
+	TIME_BOUNDED
+
+}
@@ -15,9 +15,23 @@
  */
 package com.christopher83.framework.properties;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
 import com.christopher83.framework.properties.interfaces.IFileProperty;
+import com.christopher83.framework.properties.interfaces.IPropertyCallback;
+import com.christopher83.framework.properties.interfaces.IPropertyListener;
+import com.christopher83.framework.utilities.AsciiCodec;
+import com.christopher83.framework.utilities.FileDescriptorPool;
 import com.christopher83.framework.utilities.IOUtilities;
 
+import android.os.SystemClock;
+import android.util.Log;
+
 /**
  * Base class for a property read/stored from a file
  * @author Cristoforo Cataldo (Christopher83)
@@ -30,6 +44,34 @@ public class FileProperty<T> implements IFileProperty<T> {
 	private boolean _readOnly; // Flag indicating if the property is readonly
 	private T _defaultValue;   // The default value
 
+	private CachePolicy _cachePolicy = CachePolicy.ALWAYS_READ; // The policy for caching the value read from the file
+	private long _cacheTimeout;  // The validity time (in ms) of the cached value, for the time bounded policy
+	private byte[] _cache;       // The raw content of the file cached by the last read
+	private int _cacheLength;    // The length of the cached content
+	private boolean _cacheValid; // Flag indicating if the cached content can be used
+	private long _cacheTime;     // The time (in ms) of the read that filled the cache
+	private int _cacheVersion;   // Incremented at each invalidation, to discard reads overtaken by a write
+	private long _cacheHits;     // The number of reads served by the cache
+	private long _cacheMisses;   // The number of reads served by the file
+
+	private boolean _writeIfChanged = true; // Flag indicating if the writes of the current value must be skipped
+	private long _skippedWrites;            // The number of writes skipped since the value was already stored
+
+	private long _min = PropertyDescriptor.NO_VALUE;  // The minimum value allowed
+	private long _max = PropertyDescriptor.NO_VALUE;  // The maximum value allowed
+	private long _step = PropertyDescriptor.NO_VALUE; // The step between the allowed values, starting from the minimum
+	private RangePolicy _rangePolicy = RangePolicy.REJECT; // The policy for the values outside the range
+	private long _rejectedWrites;           // The number of writes rejected since the value was outside the range
+	private long _clampedWrites;            // The number of writes of values brought inside the range
+
+	private final CopyOnWriteArrayList<IPropertyListener<T>> _listeners = new CopyOnWriteArrayList<IPropertyListener<T>>(); // The listeners of the value changes
+	private byte[] _observed;        // The raw content of the file last seen by a read or a write, tracked only with listeners
+	private int _observedLength;     // The length of the observed content
+	private boolean _observedValid;  // Flag indicating if the observed content is known
+	private ByteBuffer _observedView; // The buffer wrapping the observed content, used for the comparisons
+	private boolean _polled;         // Flag indicating if the property is polled, so its content is always tracked
+	private boolean _changedSincePoll; // Flag indicating if the observed content has changed since the last poll
+
 	/**
 	 * Class constructor
 	 */
@@ -113,6 +155,7 @@ public class FileProperty<T> implements IFileProperty<T> {
 	@Override
 	public void setPath(String path) {
 		_path = path;
+		invalidateCache();
 	}
 
 	/**
@@ -161,12 +204,222 @@ public class FileProperty<T> implements IFileProperty<T> {
 		_defaultValue = value;
 	}
 
+	/**
+	 * Gets the policy for caching the value read from the file
+	 * @return The cache policy
+	 */
+	public CachePolicy getCachePolicy() {
+		return _cachePolicy;
+	}
+
+	/**
+	 * Sets the policy for caching the value read from the file
+	 * @param policy The cache policy to set
+	 */
+	public void setCachePolicy(CachePolicy policy) {
+		setCachePolicy(policy, 0);
+	}
+
+	/**
+	 * Sets the policy for caching the value read from the file
+	 * @param policy The cache policy to set
+	 * @param timeout The validity time (in ms) of the cached value, used by the time bounded policy
+	 */
+	public synchronized void setCachePolicy(CachePolicy policy, long timeout) {
+		_cachePolicy = policy;
+		_cacheTimeout = timeout;
+		invalidateCache();
+	}
+
+	/**
+	 * Discards the cached value, so the next read will be served by the file
+	 */
+	public synchronized void invalidateCache() {
+		_cacheValid = false;
+		_cacheVersion++;
+	}
+
+	/**
+	 * Gets the number of reads served by the cache
+	 * @return The number of cache hits
+	 */
+	public synchronized long getCacheHits() {
+		return _cacheHits;
+	}
+
+	/**
+	 * Gets the number of reads served by the file
+	 * @return The number of cache misses
+	 */
+	public synchronized long getCacheMisses() {
+		return _cacheMisses;
+	}
+
+	/**
+	 * Checks if the writes are skipped when the file already contains the value to store
+	 * @return True if the unchanged values are not written
+	 */
+	public boolean isWriteIfChanged() {
+		return _writeIfChanged;
+	}
+
+	/**
+	 * Sets if the writes must be skipped when the file already contains the value to store
+	 * @param writeIfChanged True to skip the writes of unchanged values
+	 */
+	public void setWriteIfChanged(boolean writeIfChanged) {
+		_writeIfChanged = writeIfChanged;
+	}
+
+	/**
+	 * Gets the number of writes skipped since the file already contained the value to store
+	 * @return The number of skipped writes
+	 */
+	public synchronized long getSkippedWrites() {
+		return _skippedWrites;
+	}
+
+	/**
+	 * Sets the range of the values allowed, checked before each write of a numeric value
+	 * @param min The minimum value allowed, or {@link PropertyDescriptor#NO_VALUE} if not bounded
+	 * @param max The maximum value allowed, or {@link PropertyDescriptor#NO_VALUE} if not bounded
+	 * @param step The step between the allowed values, starting from the minimum, or {@link PropertyDescriptor#NO_VALUE}
+	 * @param policy The policy for the values outside the range or not aligned to the step
+	 */
+	public synchronized void setRange(long min, long max, long step, RangePolicy policy) {
+		_min = min;
+		_max = max;
+		_step = (step > 0) ? step : PropertyDescriptor.NO_VALUE;
+		_rangePolicy = policy;
+	}
+
+	/**
+	 * Checks if the values of the property are constrained
+	 * @return True if a minimum, a maximum or a step has been set
+	 */
+	public synchronized boolean hasRange() {
+		return _min != PropertyDescriptor.NO_VALUE || _max != PropertyDescriptor.NO_VALUE || _step != PropertyDescriptor.NO_VALUE;
+	}
+
+	/**
+	 * Gets the minimum value allowed
+	 * @return The minimum value, or {@link PropertyDescriptor#NO_VALUE} if not bounded
+	 */
+	public synchronized long getMin() {
+		return _min;
+	}
+
+	/**
+	 * Gets the maximum value allowed
+	 * @return The maximum value, or {@link PropertyDescriptor#NO_VALUE} if not bounded
+	 */
+	public synchronized long getMax() {
+		return _max;
+	}
+
+	/**
+	 * Gets the step between the allowed values
+	 * @return The step, or {@link PropertyDescriptor#NO_VALUE} if any value is allowed
+	 */
+	public synchronized long getStep() {
+		return _step;
+	}
+
+	/**
+	 * Gets the policy for the values outside the range
+	 * @return The range policy
+	 */
+	public synchronized RangePolicy getRangePolicy() {
+		return _rangePolicy;
+	}
+
+	/**
+	 * Gets the number of writes rejected since the value was outside the range or not aligned to the step
+	 * @return The number of rejected writes
+	 */
+	public synchronized long getRejectedWrites() {
+		return _rejectedWrites;
+	}
+
+	/**
+	 * Gets the number of writes of values brought inside the range or aligned to the step
+	 * @return The number of clamped writes
+	 */
+	public synchronized long getClampedWrites() {
+		return _clampedWrites;
+	}
+
+	/**
+	 * Adds a listener notified on the main thread when the value of the property changes,
+	 * because of a write or of a read finding a different value.
+	 * The first read after the registration notifies the current value
+	 * @param listener The listener to add
+	 */
+	@Override
+	public synchronized void addListener(IPropertyListener<T> listener) {
+		// Forget the observed content when the first listener is added, since it hasn't been tracked till now
+		if (_listeners.isEmpty() && !_polled)
+			_observedValid = false;
+		_listeners.addIfAbsent(listener);
+	}
+
+	/**
+	 * Removes a listener of the value changes
+	 * @param listener The listener to remove
+	 */
+	@Override
+	public void removeListener(IPropertyListener<T> listener) {
+		_listeners.remove(listener);
+	}
+
+	/**
+	 * Reads the file bypassing the cache, to check if the value has changed since the previous poll.
+	 * A change is notified to the listeners too
+	 * @return True if the value has changed since the previous poll, always true for the first poll
+	 */
+	public boolean poll() {
+		// Start tracking the content, then read it from the file
+		synchronized (this) {
+			_polled = true;
+		}
+		if (_cachePolicy != CachePolicy.ALWAYS_READ)
+			invalidateCache();
+		readRawBytes();
+
+		// Get and reset the change flag
+		synchronized (this) {
+			boolean changed = _changedSincePoll;
+			_changedSincePoll = false;
+			return changed;
+		}
+	}
+
+	/**
+	 * Stops tracking the content for the polls, invoked when the property is not polled anymore.
+	 * Without listeners, the writes stop comparing the content, and the next poll reports a change
+	 */
+	public synchronized void stopPolling() {
+		_polled = false;
+		_changedSincePoll = false;
+		if (_listeners.isEmpty())
+			_observedValid = false;
+	}
+
 	/**
 	 * Gets the current value of the property
 	 * @return The current value
 	 */
 	@Override
 	public T getValue() {
+		return decodeValue(readRawBytes());
+	}
+
+	/**
+	 * Decodes the value of the property from the raw bytes of the file
+	 * @param buffer The buffer positioned on the raw bytes, can be null
+	 * @return The decoded value, or null if not available
+	 */
+	protected T decodeValue(ByteBuffer buffer) {
 		// Must be implemented inside the extended class
 		throw new UnsupportedOperationException();
 	}
@@ -174,13 +427,51 @@ public class FileProperty<T> implements IFileProperty<T> {
 	/**
 	 * Sets the current value of the property
 	 * @param value The current value to set
+	 * @return True if the value has been stored
 	 */
 	@Override
-	public void setValue(Object value) {
+	public boolean setValue(Object value) {
 		// Must be implemented inside the extended class
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * Gets the current value of the property on the I/O thread
+	 * @param callback The callback to invoke on the main thread with the current value, can be null
+	 * @return The future current value
+	 */
+	@Override
+	public Future<T> getValueAsync(IPropertyCallback<T> callback) {
+		return PropertyExecutor.submit(new Callable<T>() {
+			/**
+			 * Gets the current value
+			 */
+			@Override
+			public T call() {
+				return getValue();
+			}
+		}, callback);
+	}
+
+	/**
+	 * Sets the current value of the property on the I/O thread
+	 * @param value The current value to set
+	 * @param callback The callback to invoke on the main thread with the result of the store, can be null
+	 * @return The future result of the store (true if the value has been stored)
+	 */
+	@Override
+	public Future<Boolean> setValueAsync(final Object value, IPropertyCallback<Boolean> callback) {
+		return PropertyExecutor.submit(new Callable<Boolean>() {
+			/**
+			 * Sets the current value
+			 */
+			@Override
+			public Boolean call() {
+				return setValue(value);
+			}
+		}, callback);
+	}
+
 	/**
 	 * Gets the raw content of the file
 	 * @return The current content of the file
@@ -188,18 +479,251 @@ public class FileProperty<T> implements IFileProperty<T> {
 	protected String readRawValue() {
 		// If the property is suppported, then return the file content,
 		// else return an empty string
-		return (isSupported()) ? IOUtilities.fileRead(_path) : "";
+		return IOUtilities.bytesToString(readRawBytes());
+	}
+
+	/**
+	 * Gets the raw bytes of the file, without allocating any intermediate object.
+	 * The returned buffer belongs to the calling thread and is reused by its next read
+	 * @return The buffer positioned on the current content of the file, or null if not available
+	 */
+	protected ByteBuffer readRawBytes() {
+		// If the cached content is still valid, then copy it inside the read buffer of the calling thread
+		int version;
+		synchronized (this) {
+			if (isCacheValid()) {
+				_cacheHits++;
+				ByteBuffer buffer = IOUtilities.getReadBuffer();
+				buffer.put(_cache, 0, _cacheLength);
+				buffer.flip();
+				return buffer;
+			}
+			_cacheMisses++;
+			version = _cacheVersion;
+		}
+
+		// Read the file content, null if the property is not supported
+		ByteBuffer buffer = readFileBytes();
+
+		// Cache the read content, if allowed by the policy
+		if (buffer != null && _cachePolicy != CachePolicy.ALWAYS_READ)
+			updateCache(buffer, version);
+
+		// Check if the content has been changed since the last time it was seen
+		if (buffer != null)
+			observe(buffer);
+
+		return buffer;
+	}
+
+	/**
+	 * Reads the file content through the descriptor kept open inside the pool, without checking its presence
+	 * before each read: a missing file (or an attribute removed with its module) fails the read, and means that
+	 * the property is not supported
+	 * @return The read buffer of the calling thread positioned on the content, or null if not available
+	 */
+	private ByteBuffer readFileBytes() {
+		ByteBuffer buffer = IOUtilities.getReadBuffer();
+		try {
+			FileDescriptorPool.getDefault().read(_path, buffer);
+			buffer.flip();
+			return buffer;
+		} catch (FileNotFoundException ex) {
+			return null;
+		} catch (IOException ex) {
+			Log.e(FileProperty.class.getName(), String.format("Error during file %s reading", _path));
+			return null;
+		}
 	}
 
 	/**
 	 * Sets the raw content of the file
 	 * @param value The value to store
+	 * @return True if the value has been stored, or was already stored
 	 */
-	protected void storeRawValue(String value) {
-		// If the property is suppported and is not readonly,
-		// then store the passed value
-		if (isSupported() && !isReadOnly())
-			IOUtilities.fileWrite(_path, value);
+	protected boolean storeRawValue(String value) {
+		// If the property is not suppported or is readonly, then the value can't be stored
+		if (!isSupported() || isReadOnly())
+			return false;
+
+		// Store the passed value, unless already stored. The current content is always read from the file,
+		// since the cache can't see the changes made outside this process (e.g. by a reload of the module)
+		if (_writeIfChanged && IOUtilities.bytesToString(readFileBytes()).equals(value != null ? value : "")) {
+			skipWrite();
+			return true;
+		}
+		boolean stored = IOUtilities.fileWrite(_path, value);
+		invalidateCache();
+		if (stored && value != null && (!_listeners.isEmpty() || _polled))
+			observe(ByteBuffer.wrap(value.getBytes()));
+		return stored;
+	}
+
+	/**
+	 * Sets the raw bytes of the file
+	 * @param value The buffer positioned on the bytes to store
+	 * @return True if the bytes have been stored, or were already stored
+	 */
+	protected boolean storeRawBytes(ByteBuffer value) {
+		// If the property is not suppported or is readonly, then the bytes can't be stored
+		if (!isSupported() || isReadOnly())
+			return false;
+
+		// Store the passed bytes, unless already stored. The current content is always read from the file,
+		// since the cache can't see the changes made outside this process (e.g. by a reload of the module)
+		if (_writeIfChanged && AsciiCodec.contentEquals(readFileBytes(), value)) {
+			skipWrite();
+			return true;
+		}
+		// The write consumes a duplicate of the buffer, so the bytes can still be observed after it
+		boolean stored = IOUtilities.fileWrite(_path, value.duplicate());
+		invalidateCache();
+		if (stored && (!_listeners.isEmpty() || _polled))
+			observe(value);
+		return stored;
+	}
+
+	/**
+	 * Checks a numeric value against the range of the property before writing it
+	 * @param value The value to write
+	 * @return The value to write, clamped if required by the range policy,
+	 * or {@link PropertyDescriptor#NO_VALUE} if the value has been rejected
+	 */
+	protected synchronized long constrain(long value) {
+		// Bring the value inside the range
+		long constrained = value;
+		if (_min != PropertyDescriptor.NO_VALUE && constrained < _min)
+			constrained = _min;
+		if (_max != PropertyDescriptor.NO_VALUE && constrained > _max)
+			constrained = _max;
+
+		// Align the value to the nearest step, starting from the minimum, without exceeding the maximum
+		if (_step != PropertyDescriptor.NO_VALUE) {
+			long base = (_min != PropertyDescriptor.NO_VALUE) ? _min : 0;
+			long offset = constrained - base;
+			long remainder = offset % _step;
+			if (remainder != 0) {
+				long aligned = constrained - remainder;
+				if (Math.abs(remainder) * 2 >= _step)
+					aligned += (remainder > 0) ? _step : -_step;
+				if (_max != PropertyDescriptor.NO_VALUE && aligned > _max)
+					aligned -= _step;
+				if (_min != PropertyDescriptor.NO_VALUE && aligned < _min)
+					aligned += _step;
+				constrained = aligned;
+			}
+		}
+
+		// The value is allowed
+		if (constrained == value)
+			return value;
+
+		// The value is not allowed, so reject it or write the clamped one
+		if (_rangePolicy == RangePolicy.REJECT) {
+			_rejectedWrites++;
+			Log.w(FileProperty.class.getName(), String.format("Value %d rejected for property %s, allowed range is [%d, %d] with step %d", value, _id, _min, _max, _step));
+			return PropertyDescriptor.NO_VALUE;
+		}
+		_clampedWrites++;
+		return constrained;
+	}
+
+	/**
+	 * Compares the content read or written with the last observed one, scheduling
+	 * the notification of the listeners if changed. Nothing is done without listeners and polls
+	 * @param buffer The buffer positioned on the content, left unchanged
+	 */
+	private void observe(ByteBuffer buffer) {
+		if (_listeners.isEmpty() && !_polled)
+			return;
+
+		synchronized (this) {
+			// If the content is the same already observed, then there's nothing to notify
+			if (_observedValid && AsciiCodec.contentEquals(_observedView, buffer))
+				return;
+
+			// Copy the new content, growing the observed content only when it doesn't fit
+			int length = buffer.remaining();
+			if (_observed == null || _observed.length < length) {
+				_observed = new byte[length];
+				_observedView = ByteBuffer.wrap(_observed);
+			}
+			int start = buffer.position();
+			for (int i = 0; i < length; i++)
+				_observed[i] = buffer.get(start + i);
+			_observedLength = length;
+			_observedValid = true;
+			_observedView.limit(length);
+			_changedSincePoll = true;
+		}
+
+		// Notify the change at the next frame
+		if (!_listeners.isEmpty())
+			PropertyNotifier.schedule(this);
+	}
+
+	/**
+	 * Notifies the listeners with the latest observed value, invoked on the main thread
+	 */
+	void dispatchChange() {
+		// Decode the latest observed content
+		ByteBuffer buffer;
+		synchronized (this) {
+			if (!_observedValid)
+				return;
+			buffer = ByteBuffer.wrap(_observed, 0, _observedLength).slice();
+		}
+		T value = decodeValue(buffer);
+
+		// Notify each listener
+		for (IPropertyListener<T> listener:_listeners)
+			listener.onPropertyChanged(this, value);
+	}
+
+	/**
+	 * Counts a write skipped since the file already contained the value to store
+	 */
+	private synchronized void skipWrite() {
+		_skippedWrites++;
+	}
+
+	/**
+	 * Checks if the cached content can be used according to the cache policy
+	 * @return True if the cached content is valid
+	 */
+	private boolean isCacheValid() {
+		switch (_cachePolicy) {
+			case UNTIL_WRITE:
+				return _cacheValid;
+			case TIME_BOUNDED:
+				return _cacheValid && SystemClock.elapsedRealtime() - _cacheTime < _cacheTimeout;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Copies the read content inside the cache, unless the cache has been invalidated during the read
+	 * @param buffer The buffer positioned on the read content, left unchanged
+	 * @param version The cache version at the time the read started
+	 */
+	private synchronized void updateCache(ByteBuffer buffer, int version) {
+		// If a write happened during the read, the content could be already outdated
+		if (version != _cacheVersion)
+			return;
+
+		// Grow the cache only when the content doesn't fit
+		int length = buffer.remaining();
+		if (_cache == null || _cache.length < length)
+			_cache = new byte[length];
+
+		// Copy the content without moving the position of the buffer
+		int position = buffer.position();
+		for (int i = 0; i < length; i++)
+			_cache[i] = buffer.get(position + i);
+		_cacheLength = length;
+		_cacheTime = SystemClock.elapsedRealtime();
+		_cacheValid = true;
 	}
 
 }
@@ -15,11 +15,16 @@
  */
 package com.christopher83.framework.properties;
 
+import java.nio.ByteBuffer;
+
+import com.christopher83.framework.properties.interfaces.IIntProperty;
+import com.christopher83.framework.utilities.AsciiCodec;
+
 /**
  * Class for an integer property read/stored from a file
  * @author Cristoforo Cataldo (Christopher83)
  */
-public class IntegerFileProperty extends FileProperty<Integer> {
+public class IntegerFileProperty extends FileProperty<Integer> implements IIntProperty {
 
 	/**
 	 * Class constructor
@@ -68,25 +73,51 @@ public class IntegerFileProperty extends FileProperty<Integer> {
 	}
 
 	/**
-	 * Gets the integer value of the property
-	 * @return The integer value of the property
+	 * Decodes the integer value of the property from the raw bytes of the file
+	 * @param buffer The buffer positioned on the raw bytes, can be null
+	 * @return The integer value of the property, or null if not available
+	 */
+	@Override
+	protected Integer decodeValue(ByteBuffer buffer) {
+		// Decode the value directly from the raw bytes
+		long value = AsciiCodec.decodeInt(buffer);
+		return (value != AsciiCodec.INVALID_NUMBER) ? Integer.valueOf((int)value) : null;
+	}
+
+	/**
+	 * Gets the integer value of the property without boxing
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The integer value of the property, or the specified default value if not available
 	 */
 	@Override
-	public Integer getValue() {
-		try {
-			return Integer.valueOf(readRawValue());
-		} catch (Exception e) {
-			return null;
-		}
+	public int getInt(int defaultValue) {
+		// Decode the value directly from the raw bytes of the file
+		long value = AsciiCodec.decodeInt(readRawBytes());
+		return (value != AsciiCodec.INVALID_NUMBER) ? (int)value : defaultValue;
 	}
 
 	/**
 	 * Sets the current value of the property
 	 * @param value The current value to set
+	 * @return True if the value has been stored
+	 */
+	@Override
+	public boolean setValue(Object value) {
+		return setInt((Integer)value);
+	}
+
+	/**
+	 * Sets the current integer value of the property without boxing
+	 * @param value The current value to set
+	 * @return True if the value has been stored
 	 */
 	@Override
-	public void setValue(Object value) {
-		storeRawValue(Integer.toString((Integer)value));
+	public boolean setInt(int value) {
+		// Check the value against the range of the property, before reaching the file
+		long constrained = constrain(value);
+		if (constrained == PropertyDescriptor.NO_VALUE)
+			return false;
+		return storeRawBytes(AsciiCodec.encodeLong(constrained));
 	}
 
 }
@@ -15,11 +15,16 @@
  */
 package com.christopher83.framework.properties;
 
+import java.nio.ByteBuffer;
+
+import com.christopher83.framework.properties.interfaces.ILongProperty;
+import com.christopher83.framework.utilities.AsciiCodec;
+
 /**
  * Class for an long property read/stored from a file
  * @author Cristoforo Cataldo (Christopher83)
  */
-public class LongFileProperty extends FileProperty<Long> {
+public class LongFileProperty extends FileProperty<Long> implements ILongProperty {
 
 	/**
 	 * Class constructor
@@ -68,25 +73,51 @@ public class LongFileProperty extends FileProperty<Long> {
 	}
 
 	/**
-	 * Gets the long value of the property
-	 * @return The long value of the property
+	 * Decodes the long value of the property from the raw bytes of the file
+	 * @param buffer The buffer positioned on the raw bytes, can be null
+	 * @return The long value of the property, or null if not available
+	 */
+	@Override
+	protected Long decodeValue(ByteBuffer buffer) {
+		// Decode the value directly from the raw bytes
+		long value = AsciiCodec.decodeLong(buffer);
+		return (value != AsciiCodec.INVALID_NUMBER) ? Long.valueOf(value) : null;
+	}
+
+	/**
+	 * Gets the long value of the property without boxing
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The long value of the property, or the specified default value if not available
 	 */
 	@Override
-	public Long getValue() {
-		try {
-			return Long.valueOf(readRawValue());
-		} catch (Exception e) {
-			return null;
-		}
+	public long getLong(long defaultValue) {
+		// Decode the value directly from the raw bytes of the file
+		long value = AsciiCodec.decodeLong(readRawBytes());
+		return (value != AsciiCodec.INVALID_NUMBER) ? value : defaultValue;
 	}
 
 	/**
 	 * Sets the current value of the property
 	 * @param value The current value to set
+	 * @return True if the value has been stored
+	 */
+	@Override
+	public boolean setValue(Object value) {
+		return setLong((Long)value);
+	}
+
+	/**
+	 * Sets the current long value of the property without boxing
+	 * @param value The current value to set
+	 * @return True if the value has been stored
 	 */
 	@Override
-	public void setValue(Object value) {
-		storeRawValue(Long.toString((Long)value));
+	public boolean setLong(long value) {
+		// Check the value against the range of the property, before reaching the file
+		long constrained = constrain(value);
+		if (constrained == PropertyDescriptor.NO_VALUE)
+			return false;
+		return storeRawBytes(AsciiCodec.encodeLong(constrained));
 	}
 
 }
@@ -0,0 +1,167 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import com.christopher83.framework.properties.interfaces.IProperty;
+import com.christopher83.framework.properties.interfaces.IPropertyCallback;
+
+import android.util.Log;
+
+/**
+ * Class for a batch of property writes applied as a single transaction:
+ * the writes are performed in the order they have been added and, if one
+ * of them fails, the already written properties are rolled back to their prior values
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PropertyBatch {
+
+	private final PropertyHashTable _properties;     // The properties hash table
+	private final Map<IProperty<?>, Object> _writes; // The values to write, in insertion order
+	private boolean _committed;                      // Flag indicating if the batch has been committed
+
+	/**
+	 * Class constructor
+	 * @param properties The properties hash table containing the properties to write
+	 */
+	public PropertyBatch(PropertyHashTable properties) {
+		_properties = properties;
+		_writes = new LinkedHashMap<IProperty<?>, Object>();
+	}
+
+	/**
+	 * Adds the write of a property value to the batch. Setting again the same property
+	 * replaces the value but keeps the original write order
+	 * @param id The ID of the property
+	 * @param value The value to set
+	 * @return This batch
+	 */
+	public PropertyBatch set(String id, Object value) {
+		return set(_properties.get(id), id, value);
+	}
+
+	/**
+	 * Adds the write of a property value to the batch. Setting again the same property
+	 * replaces the value but keeps the original write order
+	 * @param resID The resource ID of the property
+	 * @param value The value to set
+	 * @return This batch
+	 */
+	public PropertyBatch set(int resID, Object value) {
+		return set(_properties.get(resID), Integer.toString(resID), value);
+	}
+
+	/**
+	 * Gets the number of writes contained inside the batch
+	 * @return The number of writes
+	 */
+	public synchronized int size() {
+		return _writes.size();
+	}
+
+	/**
+	 * Commits the batch on the calling thread, that shouldn't be the main thread
+	 * @return True if all the values have been stored, false if the batch has been rolled back
+	 */
+	public synchronized boolean commit() {
+		// A batch can be committed only once
+		if (_committed)
+			throw new IllegalStateException("The batch has been already committed");
+		_committed = true;
+
+		// Capture the prior values of all the properties, if any is not available
+		// the batch can't be rolled back, so nothing is written
+		List<IProperty<?>> targets = new ArrayList<IProperty<?>>(_writes.keySet());
+		List<Object> priorValues = new ArrayList<Object>(targets.size());
+		for (IProperty<?> property:targets) {
+			Object priorValue = property.getValue();
+			if (priorValue == null) {
+				Log.e(PropertyBatch.class.getName(), String.format("Batch aborted, the value of the property %s is not available", property.getID()));
+				return false;
+			}
+			priorValues.add(priorValue);
+		}
+
+		// Write the values in order, if a write fails roll back the already written properties
+		for (int i = 0; i < targets.size(); i++) {
+			if (!targets.get(i).setValue(_writes.get(targets.get(i)))) {
+				Log.e(PropertyBatch.class.getName(), String.format("Batch rolled back, the write of the property %s failed", targets.get(i).getID()));
+				rollback(targets, priorValues, i);
+				return false;
+			}
+		}
+
+		// All the values have been stored
+		return true;
+	}
+
+	/**
+	 * Commits the batch on the I/O thread, in a single pass
+	 * @param callback The callback to invoke on the main thread with the result of the commit, can be null
+	 * @return The future result of the commit (true if all the values have been stored)
+	 */
+	public Future<Boolean> commitAsync(IPropertyCallback<Boolean> callback) {
+		return PropertyExecutor.submit(new Callable<Boolean>() {
+			/**
+			 * Commits the batch
+			 */
+			@Override
+			public Boolean call() {
+				return commit();
+			}
+		}, callback);
+	}
+
+	/**
+	 * Adds the write of a property value to the batch
+	 * @param property The property, null if not found
+	 * @param key The key used to find the property, used for the error message
+	 * @param value The value to set
+	 * @return This batch
+	 */
+	private synchronized PropertyBatch set(IProperty<?> property, String key, Object value) {
+		// Only the existing writable properties can be part of the batch
+		if (property == null)
+			throw new IllegalArgumentException(String.format("The property %s doesn't exist", key));
+		if (property.isReadOnly())
+			throw new IllegalArgumentException(String.format("The property %s is readonly", property.getID()));
+		if (_committed)
+			throw new IllegalStateException("The batch has been already committed");
+
+		_writes.put(property, value);
+		return this;
+	}
+
+	/**
+	 * Restores the prior values of the written properties, in reverse order
+	 * @param targets The properties of the batch
+	 * @param priorValues The prior values of the properties
+	 * @param failedIndex The index of the property whose write failed
+	 */
+	private void rollback(List<IProperty<?>> targets, List<Object> priorValues, int failedIndex) {
+		for (int i = failedIndex - 1; i >= 0; i--) {
+			if (!targets.get(i).setValue(priorValues.get(i)))
+				Log.e(PropertyBatch.class.getName(), String.format("Rollback of the property %s failed", targets.get(i).getID()));
+		}
+	}
+
+}
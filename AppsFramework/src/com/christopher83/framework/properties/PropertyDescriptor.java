@@ -0,0 +1,197 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+/**
+ * Class for the immutable description of a file property, with its identifiers, its file,
+ * its type and its constraints. The descriptors are meant to be declared in static tables,
+ * so the properties can be created without any resource lookup
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public final class PropertyDescriptor {
+
+	// Value used for a missing default, minimum, maximum or step
+	public static final long NO_VALUE = Long.MIN_VALUE;
+
+	private final int _handle;                // The handle of the property (the resource ID of its ID)
+	private final String _id;                 // The ID of the property
+	private final String _path;               // The file path
+	private final String _group;              // The name of the group of the property
+	private final PropertyType _type;         // The type of the value
+	private final boolean _readOnly;          // Flag indicating if the property is readonly
+	private final long _defaultValue;         // The default value (booleans as 0 or 1)
+	private final long _min;                  // The minimum value allowed
+	private final long _max;                  // The maximum value allowed
+	private final long _step;                 // The step between the allowed values
+	private final CachePolicy _cachePolicy;   // The cache policy of the property
+
+	/**
+	 * Class constructor
+	 * @param handle The handle of the property (the resource ID of its ID)
+	 * @param id The ID of the property
+	 * @param path The file path
+	 * @param group The name of the group of the property
+	 * @param type The type of the value
+	 * @param readOnly Flag indicating if the property is readonly
+	 * @param defaultValue The default value (booleans as 0 or 1), or {@link #NO_VALUE}
+	 * @param min The minimum value allowed, or {@link #NO_VALUE}
+	 * @param max The maximum value allowed, or {@link #NO_VALUE}
+	 * @param step The step between the allowed values, or {@link #NO_VALUE}
+	 * @param cachePolicy The cache policy of the property
+	 */
+	public PropertyDescriptor(int handle, String id, String path, String group, PropertyType type, boolean readOnly,
+			long defaultValue, long min, long max, long step, CachePolicy cachePolicy) {
+		_handle = handle;
+		_id = id;
+		_path = path;
+		_group = group;
+		_type = type;
+		_readOnly = readOnly;
+		_defaultValue = defaultValue;
+		_min = min;
+		_max = max;
+		_step = step;
+		_cachePolicy = cachePolicy;
+	}
+
+	/**
+	 * Gets the handle of the property
+	 * @return The handle of the property (the resource ID of its ID)
+	 */
+	public int getHandle() {
+		return _handle;
+	}
+
+	/**
+	 * Gets the ID of the property
+	 * @return The ID of the property
+	 */
+	public String getID() {
+		return _id;
+	}
+
+	/**
+	 * Gets the file path
+	 * @return The file path
+	 */
+	public String getPath() {
+		return _path;
+	}
+
+	/**
+	 * Gets the name of the group of the property
+	 * @return The name of the group
+	 */
+	public String getGroup() {
+		return _group;
+	}
+
+	/**
+	 * Gets the type of the value
+	 * @return The type of the value
+	 */
+	public PropertyType getType() {
+		return _type;
+	}
+
+	/**
+	 * Checks if the property is readonly
+	 * @return True if the property is readonly
+	 */
+	public boolean isReadOnly() {
+		return _readOnly;
+	}
+
+	/**
+	 * Gets the default value
+	 * @return The default value (booleans as 0 or 1), or {@link #NO_VALUE} if not available
+	 */
+	public long getDefaultValue() {
+		return _defaultValue;
+	}
+
+	/**
+	 * Gets the minimum value allowed
+	 * @return The minimum value, or {@link #NO_VALUE} if not bounded
+	 */
+	public long getMin() {
+		return _min;
+	}
+
+	/**
+	 * Gets the maximum value allowed
+	 * @return The maximum value, or {@link #NO_VALUE} if not bounded
+	 */
+	public long getMax() {
+		return _max;
+	}
+
+	/**
+	 * Gets the step between the allowed values
+	 * @return The step, or {@link #NO_VALUE} if any value is allowed
+	 */
+	public long getStep() {
+		return _step;
+	}
+
+	/**
+	 * Gets the cache policy of the property
+	 * @return The cache policy
+	 */
+	public CachePolicy getCachePolicy() {
+		return _cachePolicy;
+	}
+
+	/**
+	 * Creates a new file property as described
+	 * @return The new file property
+	 */
+	public FileProperty<?> createProperty() {
+		// Create the property of the described type
+		FileProperty<?> property;
+		boolean hasDefault = (_defaultValue != NO_VALUE);
+		switch (_type) {
+			case BOOLEAN:
+				property = new BooleanFileProperty(_id, _path, _readOnly, hasDefault ? Boolean.valueOf(_defaultValue != 0) : null);
+				break;
+			case LONG:
+				property = new LongFileProperty(_id, _path, _readOnly, hasDefault ? Long.valueOf(_defaultValue) : null);
+				break;
+			case STRING:
+				property = new StringFileProperty(_id, _path, _readOnly, hasDefault ? String.valueOf(_defaultValue) : null);
+				break;
+			default:
+				property = new IntegerFileProperty(_id, _path, _readOnly, hasDefault ? Integer.valueOf((int)_defaultValue) : null);
+				break;
+		}
+
+		// Apply the cache policy and the range, clamping the values outside it
+		property.setCachePolicy(_cachePolicy);
+		if (_min != NO_VALUE || _max != NO_VALUE || _step != NO_VALUE)
+			property.setRange(_min, _max, _step, RangePolicy.CLAMP);
+		return property;
+	}
+
+	/**
+	 * Gets the string representation of the descriptor
+	 * @return The ID and the path of the property
+	 */
+	@Override
+	public String toString() {
+		return String.format("%s (%s)", _id, _path);
+	}
+
+}
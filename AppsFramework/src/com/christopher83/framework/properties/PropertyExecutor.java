@@ -0,0 +1,190 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.christopher83.framework.properties.interfaces.IPropertyCallback;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Class for the executor of the property I/O operations, performed on a dedicated
+ * background thread so that a slow file never blocks the main thread.
+ * The results are delivered to the callbacks on the main thread
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PropertyExecutor {
+
+	// Name of the I/O thread
+	private static final String THREAD_NAME = "PropertyIO";
+
+	// The single I/O thread executor, so the operations are performed in submission order
+	private static final ExecutorService _executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		/**
+		 * Creates the I/O thread
+		 */
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, THREAD_NAME);
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// Name prefix of the threads used for the parallel reads
+	private static final String READ_THREAD_NAME = "PropertyRead-";
+
+	// Max number of threads used for the parallel reads
+	private static final int MAX_READ_THREADS = 4;
+
+	// The bounded pool used for the parallel reads of the batched operations
+	private static final ExecutorService _readPool = Executors.newFixedThreadPool(
+		Math.max(1, Math.min(MAX_READ_THREADS, Runtime.getRuntime().availableProcessors())), new ThreadFactory() {
+			private final AtomicInteger _count = new AtomicInteger(); // The number of created threads
+
+			/**
+			 * Creates a read thread
+			 */
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, READ_THREAD_NAME + _count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+	// Name of the thread polling the properties
+	private static final String POLL_THREAD_NAME = "PropertyPoll";
+
+	private static Handler _mainHandler;      // The handler used to deliver the results on the main thread
+	private static HandlerThread _pollThread; // The thread polling the properties, started on the first request
+
+	/**
+	 * Class constructor
+	 */
+	private PropertyExecutor() {
+	}
+
+	/**
+	 * Submits an operation to the I/O thread
+	 * @param task The operation to perform
+	 * @param callback The callback to invoke on the main thread with the result, can be null
+	 * @return The future result of the operation
+	 */
+	public static <T> Future<T> submit(final Callable<T> task, final IPropertyCallback<T> callback) {
+		return _executor.submit(new Callable<T>() {
+			/**
+			 * Performs the operation and delivers its result
+			 */
+			@Override
+			public T call() throws Exception {
+				T result = null;
+				try {
+					result = task.call();
+					return result;
+				} catch (Exception ex) {
+					Log.e(PropertyExecutor.class.getName(), "Error during property operation", ex);
+					throw ex;
+				} finally {
+					deliver(callback, result);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Submits an operation without result to the I/O thread
+	 * @param task The operation to perform
+	 * @param callback The callback to invoke on the main thread when completed, can be null
+	 * @return The future completion of the operation
+	 */
+	public static Future<Void> submit(final Runnable task, final IPropertyCallback<Void> callback) {
+		return submit(new Callable<Void>() {
+			/**
+			 * Performs the operation
+			 */
+			@Override
+			public Void call() {
+				task.run();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Performs the specified reads in parallel on the bounded read pool, waiting for all of them
+	 * @param tasks The reads to perform
+	 * @return The futures of the reads, in the same order of the tasks, all completed
+	 * @throws InterruptedException If the calling thread is interrupted while waiting
+	 */
+	public static <T> List<Future<T>> invokeAll(List<Callable<T>> tasks) throws InterruptedException {
+		return _readPool.invokeAll(tasks);
+	}
+
+	/**
+	 * Delivers the result of an operation to the callback, on the main thread
+	 * @param callback The callback to invoke, can be null
+	 * @param result The result of the operation
+	 */
+	private static <T> void deliver(final IPropertyCallback<T> callback, final T result) {
+		if (callback == null)
+			return;
+
+		getMainHandler().post(new Runnable() {
+			/**
+			 * Invokes the callback
+			 */
+			@Override
+			public void run() {
+				callback.onCompleted(result);
+			}
+		});
+	}
+
+	/**
+	 * Gets the looper of the thread polling the properties, starting it on the first request
+	 * @return The looper of the polling thread
+	 */
+	public static synchronized Looper getPollLooper() {
+		if (_pollThread == null) {
+			_pollThread = new HandlerThread(POLL_THREAD_NAME);
+			_pollThread.setDaemon(true);
+			_pollThread.start();
+		}
+		return _pollThread.getLooper();
+	}
+
+	/**
+	 * Gets the handler used to deliver the results on the main thread
+	 * @return The main thread handler
+	 */
+	static synchronized Handler getMainHandler() {
+		if (_mainHandler == null)
+			_mainHandler = new Handler(Looper.getMainLooper());
+		return _mainHandler;
+	}
+
+}
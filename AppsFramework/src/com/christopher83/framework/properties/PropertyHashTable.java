@@ -15,10 +15,23 @@
  */
 package com.christopher83.framework.properties;
 
-import java.util.Hashtable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import com.christopher83.framework.properties.interfaces.IBooleanProperty;
+import com.christopher83.framework.properties.interfaces.IIntProperty;
+import com.christopher83.framework.properties.interfaces.ILongProperty;
 import com.christopher83.framework.properties.interfaces.IProperty;
+import com.christopher83.framework.properties.interfaces.IPropertyCallback;
 
 import android.content.Context;
 import android.content.SharedPreferences;
@@ -27,23 +40,30 @@ import android.preference.PreferenceManager;
 import android.util.Log;
 
 /**
- * Class for a hash table of properties
+ * Class for a hash table of properties, indexed by resource ID and by ID.
+ * The lookups never lock: the resource ID index is immutable and replaced at each change,
+ * while the ID index is a concurrent map.
+ * The hash table is not a {@link java.util.Map} anymore, only the methods used on the properties
+ * are provided: {@link #get(String)}, {@link #containsKey(String)}, {@link #put(IProperty)},
+ * {@link #values()}, {@link #size()} and {@link #isEmpty()}, with their resource ID variants
  * @author Cristoforo Cataldo (Christopher83)
  */
-public class PropertyHashTable extends Hashtable<String, IProperty<?>> {
+public class PropertyHashTable {
 
-	// Serial version ID of the hash table type
-	private static final long serialVersionUID = -5329554311716720160L;
-
-	protected Context _context; // The application context
+	protected Context _context;                                 // The application context
+	private final ConcurrentHashMap<String, IProperty<?>> _ids; // The properties by ID
+	private volatile ResourceIndex _resIDs;                     // The properties by resource ID
+	private volatile List<IProperty<?>> _values;                // The properties, in insertion order
 
 	/**
 	 * Class constructor
 	 * @param context The application context
 	 */
 	public PropertyHashTable(final Context context) {
-		super();
 		_context = context;
+		_ids = new ConcurrentHashMap<String, IProperty<?>>();
+		_resIDs = ResourceIndex.EMPTY;
+		_values = Collections.emptyList();
 	}
 
 	/**
@@ -52,34 +72,175 @@ public class PropertyHashTable extends Hashtable<String, IProperty<?>> {
 	 * @return The property, if found
 	 */
 	public IProperty<?> get(String id) {
-		return super.get(id);
+		return _ids.get(id);
 	}
 
 	/**
-	 * Gets the property by resource ID
+	 * Gets the property by resource ID. The first lookup of a resource ID not added
+	 * with {@link #put(int, IProperty)} resolves its string, then the property is indexed
+	 * by resource ID so the next lookups don't need any resource access
 	 * @param resID The resource ID of the property to get
 	 * @return The property, if found
 	 */
 	public IProperty<?> get(int resID) {
-		return super.get(_context.getString(resID));
+		// Look for the property inside the resource ID index
+		IProperty<?> property = _resIDs.get(resID);
+		if (property != null)
+			return property;
+
+		// Look for the property by the string of the resource ID, if found index it by resource ID
+		property = _ids.get(_context.getString(resID));
+		if (property != null)
+			index(resID, property);
+		return property;
 	}
 
 	/**
 	 * Sets the value of the property
 	 * @param id The ID of the property
 	 * @param value The value to set
+	 * @return True if the value has been stored
 	 */
-	public void set(String id, Object value) {
-		this.get(id).setValue(value);
+	public boolean set(String id, Object value) {
+		return this.get(id).setValue(value);
 	}
 
 	/**
 	 * Sets the value of the property
 	 * @param resID The resource ID of the property
 	 * @param value The value to set
+	 * @return True if the value has been stored
+	 */
+	public boolean set(int resID, Object value) {
+		return this.get(resID).setValue(value);
+	}
+
+	/**
+	 * Gets the integer value of the property without boxing
+	 * @param id The ID of the property
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The current value, or the specified default value if not available
 	 */
-	public void set(int resID, Object value) {
-		this.get(resID).setValue(value);
+	public int getInt(String id, int defaultValue) {
+		return ((IIntProperty)this.get(id)).getInt(defaultValue);
+	}
+
+	/**
+	 * Gets the integer value of the property without boxing
+	 * @param resID The resource ID of the property
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The current value, or the specified default value if not available
+	 */
+	public int getInt(int resID, int defaultValue) {
+		return ((IIntProperty)this.get(resID)).getInt(defaultValue);
+	}
+
+	/**
+	 * Sets the integer value of the property without boxing
+	 * @param id The ID of the property
+	 * @param value The value to set
+	 * @return True if the value has been stored
+	 */
+	public boolean setInt(String id, int value) {
+		return ((IIntProperty)this.get(id)).setInt(value);
+	}
+
+	/**
+	 * Sets the integer value of the property without boxing
+	 * @param resID The resource ID of the property
+	 * @param value The value to set
+	 * @return True if the value has been stored
+	 */
+	public boolean setInt(int resID, int value) {
+		return ((IIntProperty)this.get(resID)).setInt(value);
+	}
+
+	/**
+	 * Gets the long value of the property without boxing
+	 * @param id The ID of the property
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The current value, or the specified default value if not available
+	 */
+	public long getLong(String id, long defaultValue) {
+		return ((ILongProperty)this.get(id)).getLong(defaultValue);
+	}
+
+	/**
+	 * Gets the long value of the property without boxing
+	 * @param resID The resource ID of the property
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The current value, or the specified default value if not available
+	 */
+	public long getLong(int resID, long defaultValue) {
+		return ((ILongProperty)this.get(resID)).getLong(defaultValue);
+	}
+
+	/**
+	 * Sets the long value of the property without boxing
+	 * @param id The ID of the property
+	 * @param value The value to set
+	 * @return True if the value has been stored
+	 */
+	public boolean setLong(String id, long value) {
+		return ((ILongProperty)this.get(id)).setLong(value);
+	}
+
+	/**
+	 * Sets the long value of the property without boxing
+	 * @param resID The resource ID of the property
+	 * @param value The value to set
+	 * @return True if the value has been stored
+	 */
+	public boolean setLong(int resID, long value) {
+		return ((ILongProperty)this.get(resID)).setLong(value);
+	}
+
+	/**
+	 * Gets the boolean value of the property without boxing
+	 * @param id The ID of the property
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The current value, or the specified default value if not available
+	 */
+	public boolean getBoolean(String id, boolean defaultValue) {
+		return ((IBooleanProperty)this.get(id)).getBoolean(defaultValue);
+	}
+
+	/**
+	 * Gets the boolean value of the property without boxing
+	 * @param resID The resource ID of the property
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The current value, or the specified default value if not available
+	 */
+	public boolean getBoolean(int resID, boolean defaultValue) {
+		return ((IBooleanProperty)this.get(resID)).getBoolean(defaultValue);
+	}
+
+	/**
+	 * Sets the boolean value of the property without boxing
+	 * @param id The ID of the property
+	 * @param value The value to set
+	 * @return True if the value has been stored
+	 */
+	public boolean setBoolean(String id, boolean value) {
+		return ((IBooleanProperty)this.get(id)).setBoolean(value);
+	}
+
+	/**
+	 * Sets the boolean value of the property without boxing
+	 * @param resID The resource ID of the property
+	 * @param value The value to set
+	 * @return True if the value has been stored
+	 */
+	public boolean setBoolean(int resID, boolean value) {
+		return ((IBooleanProperty)this.get(resID)).setBoolean(value);
+	}
+
+	/**
+	 * Begins a batch of writes, applied as a single transaction when committed
+	 * @return The new batch
+	 */
+	public PropertyBatch beginBatch() {
+		return new PropertyBatch(this);
 	}
 
 	/**
@@ -88,7 +249,7 @@ public class PropertyHashTable extends Hashtable<String, IProperty<?>> {
 	 * @return True if the hash table contains the specified ID
 	 */
 	public boolean containsKey(String id) {
-		return super.containsKey(id);
+		return _ids.containsKey(id);
 	}
 
 	/**
@@ -97,70 +258,357 @@ public class PropertyHashTable extends Hashtable<String, IProperty<?>> {
 	 * @return True if the hash table contains the specified resource ID
 	 */
 	public boolean containsKey(int resID) {
-		return super.containsKey(_context.getString(resID));
+		return this.get(resID) != null;
 	}
 
 	/**
 	 * Adds a new property item inside the hash table
 	 * @param property The property to add
 	 */
-	public void put(IProperty<?> property) {
-		// Add the new property using the ID of the property as key
-		this.put(property.getID(), property);
+	public synchronized void put(IProperty<?> property) {
+		// Add the new property using the ID of the property as key, replacing the property with the same ID
+		IProperty<?> previous = _ids.put(property.getID(), property);
+
+		// Add the new property to the list of properties, copying the list so the readers never see it changing
+		List<IProperty<?>> values = new ArrayList<IProperty<?>>(_values);
+		if (previous != null) {
+			values.set(values.indexOf(previous), property);
+			_resIDs = _resIDs.replace(previous, property);
+		} else
+			values.add(property);
+		_values = Collections.unmodifiableList(values);
+	}
+
+	/**
+	 * Adds a new property item inside the hash table, indexing it also by resource ID
+	 * @param resID The resource ID of the property
+	 * @param property The property to add
+	 */
+	public synchronized void put(int resID, IProperty<?> property) {
+		put(property);
+		index(resID, property);
 	}
 
 	/**
-	 * Restores the values of the properties from the related shared preferences
+	 * Gets all the properties contained inside the hash table
+	 * @return The unmodifiable collection of the properties, in insertion order
 	 */
-	public void restore() {
-		try {
-			// Get the shared preferences values
-			Map<String, ?> prefsItems = PreferenceManager.getDefaultSharedPreferences(_context).getAll();
+	public Collection<IProperty<?>> values() {
+		return _values;
+	}
 
-			// For each property item
-			for (IProperty<?> property:this.values()) {
-				// If the property is not readonly
-				if (!property.isReadOnly()) {
-					// Get the preference value
-					Object value = prefsItems.get(property.getID());
-
-					// Set the property value with the preference value, if not null
-					if (value != null)
-						property.setValue(value);
+	/**
+	 * Gets the number of properties contained inside the hash table
+	 * @return The number of properties
+	 */
+	public int size() {
+		return _values.size();
+	}
+
+	/**
+	 * Checks if the hash table contains no properties
+	 * @return True if the hash table is empty
+	 */
+	public boolean isEmpty() {
+		return _values.isEmpty();
+	}
+
+	/**
+	 * Indexes a property by resource ID
+	 * @param resID The resource ID of the property
+	 * @param property The property to index
+	 */
+	private synchronized void index(int resID, IProperty<?> property) {
+		// Index the property only if it's still contained inside the hash table
+		if (_ids.get(property.getID()) == property)
+			_resIDs = _resIDs.with(resID, property);
+	}
+
+	/**
+	 * Reads the values of all the properties in a single pass, with parallel reads
+	 * @return The immutable snapshot of the values, with the errors of the failed reads
+	 */
+	public PropertySnapshot readAll() {
+		return readAll(this.values(), true);
+	}
+
+	/**
+	 * Reads the values of all the properties in a single pass
+	 * @param parallel True to perform the reads in parallel on the bounded read pool
+	 * @return The immutable snapshot of the values, with the errors of the failed reads
+	 */
+	public PropertySnapshot readAll(boolean parallel) {
+		return readAll(this.values(), parallel);
+	}
+
+	/**
+	 * Reads the values of all the properties in a single pass on the I/O thread, with parallel reads
+	 * @param callback The callback to invoke on the main thread with the snapshot, can be null
+	 * @return The future snapshot
+	 */
+	public Future<PropertySnapshot> readAllAsync(IPropertyCallback<PropertySnapshot> callback) {
+		return PropertyExecutor.submit(new Callable<PropertySnapshot>() {
+			/**
+			 * Reads the values of all the properties
+			 */
+			@Override
+			public PropertySnapshot call() {
+				return readAll();
+			}
+		}, callback);
+	}
+
+	/**
+	 * Reads the values of the specified properties in a single pass. A failed read
+	 * is reported inside the snapshot without aborting the other reads
+	 * @param properties The properties to read
+	 * @param parallel True to perform the reads in parallel on the bounded read pool
+	 * @return The immutable snapshot of the values, with the errors of the failed reads
+	 */
+	private PropertySnapshot readAll(Collection<IProperty<?>> properties, boolean parallel) {
+		Map<String, Object> values = new HashMap<String, Object>();
+		Map<String, Exception> errors = new HashMap<String, Exception>();
+		List<IProperty<?>> items = new ArrayList<IProperty<?>>(properties);
+
+		if (parallel && items.size() > 1) {
+			// Create a read task for each property
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(items.size());
+			for (final IProperty<?> property:items) {
+				tasks.add(new Callable<Object>() {
+					/**
+					 * Reads the property value
+					 */
+					@Override
+					public Object call() {
+						return property.getValue();
+					}
+				});
+			}
+
+			try {
+				// Perform all the reads in parallel, then collect their results
+				List<Future<Object>> futures = PropertyExecutor.invokeAll(tasks);
+				for (int i = 0; i < items.size(); i++) {
+					try {
+						collectValue(items.get(i), futures.get(i).get(), values, errors);
+					} catch (ExecutionException ex) {
+						Throwable cause = ex.getCause();
+						errors.put(items.get(i).getID(), (cause instanceof Exception) ? (Exception)cause : ex);
+					}
+				}
+			} catch (InterruptedException ex) {
+				// Report the interruption for all the properties not collected
+				Thread.currentThread().interrupt();
+				for (IProperty<?> property:items) {
+					if (!values.containsKey(property.getID()) && !errors.containsKey(property.getID()))
+						errors.put(property.getID(), ex);
 				}
 			}
+		} else {
+			// Perform all the reads on the calling thread
+			for (IProperty<?> property:items) {
+				try {
+					collectValue(property, property.getValue(), values, errors);
+				} catch (Exception ex) {
+					errors.put(property.getID(), ex);
+				}
+			}
+		}
+
+		// Return the immutable snapshot, timed with the wall clock since it can be stored and compared across reboots
+		return new PropertySnapshot(System.currentTimeMillis(), values, errors);
+	}
+
+	/**
+	 * Collects the value read for a property inside the snapshot maps
+	 * @param property The property
+	 * @param value The value read, null if not available
+	 * @param values The values read, by property ID
+	 * @param errors The errors of the failed reads, by property ID
+	 */
+	private void collectValue(IProperty<?> property, Object value, Map<String, Object> values, Map<String, Exception> errors) {
+		if (value != null)
+			values.put(property.getID(), value);
+		else
+			errors.put(property.getID(), new IOException(String.format("The value of the property %s is not available", property.getID())));
+	}
+
+	/**
+	 * Gets the number of writes skipped by the file properties, since the files already contained the values to store
+	 * @return The total number of skipped writes
+	 */
+	public long getSkippedWrites() {
+		long skippedWrites = 0;
+		for (IProperty<?> property:this.values()) {
+			if (property instanceof FileProperty)
+				skippedWrites += ((FileProperty<?>)property).getSkippedWrites();
+		}
+		return skippedWrites;
+	}
+
+	/**
+	 * Gets the number of writes rejected by all the properties since the values were outside their range
+	 * @return The number of rejected writes
+	 */
+	public long getRejectedWrites() {
+		long rejectedWrites = 0;
+		for (IProperty<?> property:this.values()) {
+			if (property instanceof FileProperty)
+				rejectedWrites += ((FileProperty<?>)property).getRejectedWrites();
+		}
+		return rejectedWrites;
+	}
+
+	/**
+	 * Gets the number of writes of values brought inside their range by all the properties
+	 * @return The number of clamped writes
+	 */
+	public long getClampedWrites() {
+		long clampedWrites = 0;
+		for (IProperty<?> property:this.values()) {
+			if (property instanceof FileProperty)
+				clampedWrites += ((FileProperty<?>)property).getClampedWrites();
+		}
+		return clampedWrites;
+	}
+
+	/**
+	 * Restores the values of the properties from the related shared preferences
+	 */
+	public void restore() {
+		try {
+			restoreValues();
 		} catch (Exception ex) {
 			Log.e(PropertyHashTable.class.getName(), "Error during preferences restore", ex);
 		}
 	}
 
+	/**
+	 * Restores the values of the properties from the related shared preferences on the I/O thread
+	 * @param callback The callback to invoke on the main thread when completed, can be null
+	 * @return The future completion of the operation, failed with the error stopping the restore if any
+	 */
+	public Future<Void> restoreAsync(IPropertyCallback<Void> callback) {
+		return PropertyExecutor.submit(new Callable<Void>() {
+			/**
+			 * Restores the values of the properties
+			 */
+			@Override
+			public Void call() {
+				restoreValues();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Restores the values of the properties from the related shared preferences, propagating the errors
+	 */
+	private void restoreValues() {
+		// Get the shared preferences
+		SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(_context);
+
+		// For each property item, set its value with the related preference value
+		for (IProperty<?> property:this.values())
+			restore(prefs, property);
+	}
+
+	/**
+	 * Restores the value of a property from the related shared preference
+	 * @param prefs The shared preferences
+	 * @param id The ID of the property to restore
+	 */
+	public void restore(SharedPreferences prefs, String id) {
+		// Get the property, if found restore its value
+		IProperty<?> property = this.get(id);
+		if (property != null)
+			restore(prefs, property);
+	}
+
+	/**
+	 * Restores the value of a property from the related shared preference on the I/O thread
+	 * @param prefs The shared preferences
+	 * @param id The ID of the property to restore
+	 * @param callback The callback to invoke on the main thread when completed, can be null
+	 * @return The future completion of the operation
+	 */
+	public Future<Void> restoreAsync(final SharedPreferences prefs, final String id, IPropertyCallback<Void> callback) {
+		return PropertyExecutor.submit(new Runnable() {
+			/**
+			 * Restores the value of the property
+			 */
+			@Override
+			public void run() {
+				restore(prefs, id);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Restores the value of a property from the related shared preference,
+	 * using the primitive accessors when supported by the property
+	 * @param prefs The shared preferences
+	 * @param property The property to restore
+	 */
+	private void restore(SharedPreferences prefs, IProperty<?> property) {
+		// If the property is readonly or the preference has never been stored, then exit
+		String id = property.getID();
+		if (property.isReadOnly() || !prefs.contains(id))
+			return;
+
+		// Set the property value with the preference value
+		if (property instanceof IIntProperty)
+			((IIntProperty)property).setInt(prefs.getInt(id, 0));
+		else if (property instanceof ILongProperty)
+			((ILongProperty)property).setLong(prefs.getLong(id, 0));
+		else if (property instanceof IBooleanProperty)
+			((IBooleanProperty)property).setBoolean(prefs.getBoolean(id, false));
+		else {
+			Object value = prefs.getAll().get(id);
+			if (value != null)
+				property.setValue(value);
+		}
+	}
+
 	/**
 	 * Checks for each shared preference if the value is changed and is different
 	 * from the current value of the property, if so the preference will be updated
+	 * @return The IDs of the updated preferences
 	 */
-	public void checkAndUpdatePreferences() {
+	public List<String> checkAndUpdatePreferences() {
+		// The IDs of the updated preferences
+		List<String> updatedIDs = new ArrayList<String>();
+
 		try {
 			// Get the shared preferences
 			SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(_context);
 
-			// Get the values of the shared preferences
-			Map<String, ?> prefsItems = prefs.getAll();
-
 			// Get the editor used to update the changed preferences
 			Editor prefsEditor = prefs.edit();
 
-			// For each property contained inside the hash table
+			// For each writable property supporting the primitive accessors and having a stored preference,
+			// compare the values without boxing, while the other ones are read together later
+			List<IProperty<?>> boxedProperties = new ArrayList<IProperty<?>>();
 			for (IProperty<?> property:this.values()) {
-				// If the property is not readonly
-				if (!property.isReadOnly()) {
-					// Get the current value of the property and of the shared preference
-					Object propertyValue = property.getValue();
-					Object preferenceValue = prefsItems.get(property.getID());
-
-					// If the values are different, then update and store the preference value
-					// with the current value of the property
-					if (propertyValue != null && !propertyValue.equals(preferenceValue))
-						updatePreference(prefsEditor, property.getID(), propertyValue);
+				if (property.isReadOnly())
+					continue;
+				if (isPrimitive(property) && prefs.contains(property.getID())) {
+					if (checkAndUpdatePreference(prefs, prefsEditor, property))
+						updatedIDs.add(property.getID());
+				} else
+					boxedProperties.add(property);
+			}
+
+			// Read in parallel the current values of the other writable properties, then for each value read,
+			// if different from the preference value, update and store the preference value with it
+			if (!boxedProperties.isEmpty()) {
+				PropertySnapshot snapshot = readAll(boxedProperties, true);
+				Map<String, ?> prefsItems = prefs.getAll();
+				for (Map.Entry<String, Object> item:snapshot.getValues().entrySet()) {
+					if (!item.getValue().equals(prefsItems.get(item.getKey()))) {
+						updatePreference(prefsEditor, item.getKey(), item.getValue());
+						updatedIDs.add(item.getKey());
+					}
 				}
 			}
 
@@ -169,6 +617,70 @@ public class PropertyHashTable extends Hashtable<String, IProperty<?>> {
 		} catch (Exception ex) {
 			Log.e(PropertyHashTable.class.getName(), "Error during preferences checking and update", ex);
 		}
+
+		// Return the IDs of the updated preferences
+		return updatedIDs;
+	}
+
+	/**
+	 * Checks if the property supports one of the primitive accessors
+	 * @param property The property to check
+	 * @return True if the property is an int, long or boolean property
+	 */
+	private static boolean isPrimitive(IProperty<?> property) {
+		return property instanceof IIntProperty || property instanceof ILongProperty || property instanceof IBooleanProperty;
+	}
+
+	/**
+	 * Checks if the value of the stored shared preference is different from the current primitive value
+	 * of the property, if so the preference will be updated. The current preference value is used
+	 * as default value, so a property that can't be read never changes its preference
+	 * @param prefs The shared preferences
+	 * @param prefsEditor The editor used to update the preferences
+	 * @param property The property to check, supporting one of the primitive accessors
+	 * @return True if the preference has been updated
+	 */
+	private boolean checkAndUpdatePreference(SharedPreferences prefs, Editor prefsEditor, IProperty<?> property) {
+		String id = property.getID();
+
+		if (property instanceof IIntProperty) {
+			int preferenceValue = prefs.getInt(id, 0);
+			int propertyValue = ((IIntProperty)property).getInt(preferenceValue);
+			if (propertyValue == preferenceValue)
+				return false;
+			prefsEditor.putInt(id, propertyValue);
+		} else if (property instanceof ILongProperty) {
+			long preferenceValue = prefs.getLong(id, 0);
+			long propertyValue = ((ILongProperty)property).getLong(preferenceValue);
+			if (propertyValue == preferenceValue)
+				return false;
+			prefsEditor.putLong(id, propertyValue);
+		} else {
+			boolean preferenceValue = prefs.getBoolean(id, false);
+			boolean propertyValue = ((IBooleanProperty)property).getBoolean(preferenceValue);
+			if (propertyValue == preferenceValue)
+				return false;
+			prefsEditor.putBoolean(id, propertyValue);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks for each shared preference if the value is changed and is different
+	 * from the current value of the property on the I/O thread, if so the preference will be updated
+	 * @param callback The callback to invoke on the main thread with the IDs of the updated preferences, can be null
+	 * @return The future IDs of the updated preferences
+	 */
+	public Future<List<String>> checkAndUpdatePreferencesAsync(IPropertyCallback<List<String>> callback) {
+		return PropertyExecutor.submit(new Callable<List<String>>() {
+			/**
+			 * Checks and updates the preferences
+			 */
+			@Override
+			public List<String> call() {
+				return checkAndUpdatePreferences();
+			}
+		}, callback);
 	}
 
 	/**
@@ -185,7 +697,7 @@ public class PropertyHashTable extends Hashtable<String, IProperty<?>> {
 			prefsEditor.putBoolean(id, (Boolean)value);
 		else if (value instanceof Integer)
 			prefsEditor.putInt(id, (Integer)value);
-		else if (value instanceof String)
+		else if (value instanceof Long)
 			prefsEditor.putLong(id, (Long)value);
 		else
 			throw new UnsupportedOperationException();
@@ -0,0 +1,87 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+import java.util.LinkedHashSet;
+
+import android.os.SystemClock;
+
+/**
+ * Class for the notifier of the property changes, that coalesces the changes
+ * detected on any thread and delivers them on the main thread once per frame
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+final class PropertyNotifier {
+
+	// Interval (in ms) between two deliveries, matching a 60 fps frame
+	static final long FRAME_INTERVAL = 16;
+
+	// The properties changed since the last delivery, in detection order
+	private static final LinkedHashSet<FileProperty<?>> _pending = new LinkedHashSet<FileProperty<?>>();
+
+	// Flag indicating if a delivery is already scheduled
+	private static boolean _scheduled;
+
+	// The delivery of the pending changes, performed on the main thread
+	private static final Runnable _delivery = new Runnable() {
+		/**
+		 * Delivers the pending changes
+		 */
+		@Override
+		public void run() {
+			deliver();
+		}
+	};
+
+	/**
+	 * Class constructor, not used
+	 */
+	private PropertyNotifier() {
+	}
+
+	/**
+	 * Schedules the notification of the change of a property at the start of the next frame.
+	 * A property changed more times before the delivery is notified only once
+	 * @param property The changed property
+	 */
+	static synchronized void schedule(FileProperty<?> property) {
+		_pending.add(property);
+		if (_scheduled)
+			return;
+
+		// Align the delivery to the next frame boundary, so a burst of changes produces a single delivery
+		long now = SystemClock.uptimeMillis();
+		_scheduled = PropertyExecutor.getMainHandler().postAtTime(_delivery, now - (now % FRAME_INTERVAL) + FRAME_INTERVAL);
+	}
+
+	/**
+	 * Delivers the pending changes to the listeners of the changed properties
+	 */
+	private static void deliver() {
+		// Take the pending changes, so the changes detected during the delivery are scheduled again
+		FileProperty<?>[] properties;
+		synchronized (PropertyNotifier.class) {
+			properties = _pending.toArray(new FileProperty<?>[_pending.size()]);
+			_pending.clear();
+			_scheduled = false;
+		}
+
+		// Notify the listeners of each changed property
+		for (FileProperty<?> property:properties)
+			property.dispatchChange();
+	}
+
+}
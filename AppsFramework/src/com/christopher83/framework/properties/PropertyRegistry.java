@@ -0,0 +1,108 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.christopher83.framework.properties.interfaces.IProperty;
+
+import android.content.Context;
+
+/**
+ * Class for a registry of all the properties of an application, organized in named groups.
+ * Each group is a view sharing the same property instances of the registry, so the
+ * caches and the statistics of the properties are shared by all the users of the registry
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PropertyRegistry extends PropertyHashTable {
+
+	private final ConcurrentHashMap<String, PropertyHashTable> _groups;       // The group views, by name
+	private final ConcurrentHashMap<String, PropertyDescriptor> _descriptors; // The descriptors of the properties, by ID
+
+	/**
+	 * Class constructor
+	 * @param context The application context
+	 */
+	public PropertyRegistry(final Context context) {
+		super(context);
+		_groups = new ConcurrentHashMap<String, PropertyHashTable>();
+		_descriptors = new ConcurrentHashMap<String, PropertyDescriptor>();
+	}
+
+	/**
+	 * Class constructor, creating a property for each descriptor
+	 * @param context The application context
+	 * @param descriptors The descriptors of the properties
+	 */
+	public PropertyRegistry(final Context context, List<PropertyDescriptor> descriptors) {
+		this(context);
+		for (PropertyDescriptor descriptor:descriptors)
+			put(descriptor);
+	}
+
+	/**
+	 * Creates the property described by the specified descriptor and adds it inside the registry
+	 * and inside its group, indexed by the handle of the descriptor
+	 * @param descriptor The descriptor of the property
+	 * @return The new property
+	 */
+	public synchronized FileProperty<?> put(PropertyDescriptor descriptor) {
+		FileProperty<?> property = descriptor.createProperty();
+		_descriptors.put(descriptor.getID(), descriptor);
+		put(descriptor.getGroup(), descriptor.getHandle(), property);
+		return property;
+	}
+
+	/**
+	 * Gets the descriptor of the specified property
+	 * @param id The ID of the property
+	 * @return The descriptor of the property, or null if the property has not been created from a descriptor
+	 */
+	public PropertyDescriptor getDescriptor(String id) {
+		return _descriptors.get(id);
+	}
+
+	/**
+	 * Adds a new property item inside the registry and inside the specified group
+	 * @param group The name of the group
+	 * @param resID The resource ID of the property
+	 * @param property The property to add
+	 */
+	public synchronized void put(String group, int resID, IProperty<?> property) {
+		// Add the property to the registry
+		put(resID, property);
+
+		// Add the property to the group view, creating it if not present
+		PropertyHashTable view = _groups.get(group);
+		if (view == null) {
+			view = new PropertyHashTable(_context);
+			_groups.put(group, view);
+		}
+		view.put(resID, property);
+	}
+
+	/**
+	 * Gets the view of the specified group
+	 * @param group The name of the group
+	 * @return The properties hash table of the group, empty if the group doesn't exist
+	 */
+	public PropertyHashTable getGroup(String group) {
+		PropertyHashTable view = _groups.get(group);
+		return (view != null) ? view : new PropertyHashTable(_context);
+	}
+
+}
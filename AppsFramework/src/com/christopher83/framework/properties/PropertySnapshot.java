@@ -0,0 +1,155 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Class for an immutable snapshot of the values of a set of properties, read in a single pass
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PropertySnapshot {
+
+	// Names of the JSON fields
+	private static final String JSON_TIME = "time";
+	private static final String JSON_VALUES = "values";
+	private static final String JSON_ERRORS = "errors";
+
+	private final long _time;                       // The wall clock time (in ms since the epoch) when the snapshot has been taken
+	private final Map<String, Object> _values;      // The values read, by property ID
+	private final Map<String, Exception> _errors;   // The errors of the failed reads, by property ID
+
+	/**
+	 * Class constructor
+	 * @param time The wall clock time (in ms since the epoch) when the snapshot has been taken,
+	 * so the stored snapshots can be compared across reboots and devices
+	 * @param values The values read, by property ID
+	 * @param errors The errors of the failed reads, by property ID
+	 */
+	public PropertySnapshot(long time, Map<String, Object> values, Map<String, Exception> errors) {
+		_time = time;
+		_values = Collections.unmodifiableMap(values);
+		_errors = Collections.unmodifiableMap(errors);
+	}
+
+	/**
+	 * Gets the time when the snapshot has been taken
+	 * @return The wall clock time (in ms since the epoch) when the snapshot has been taken
+	 */
+	public long getTime() {
+		return _time;
+	}
+
+	/**
+	 * Checks if the value of the specified property has been read
+	 * @param id The ID of the property
+	 * @return True if the value is available
+	 */
+	public boolean containsValue(String id) {
+		return _values.containsKey(id);
+	}
+
+	/**
+	 * Gets the value read for the specified property
+	 * @param id The ID of the property
+	 * @return The value read, or null if the read failed
+	 */
+	public Object getValue(String id) {
+		return _values.get(id);
+	}
+
+	/**
+	 * Gets the error of the failed read of the specified property
+	 * @param id The ID of the property
+	 * @return The error, or null if the read succeeded
+	 */
+	public Exception getError(String id) {
+		return _errors.get(id);
+	}
+
+	/**
+	 * Gets all the values read
+	 * @return The unmodifiable map of the values read, by property ID
+	 */
+	public Map<String, Object> getValues() {
+		return _values;
+	}
+
+	/**
+	 * Gets all the errors of the failed reads
+	 * @return The unmodifiable map of the errors, by property ID
+	 */
+	public Map<String, Exception> getErrors() {
+		return _errors;
+	}
+
+	/**
+	 * Checks if any read failed
+	 * @return True if at least a read failed
+	 */
+	public boolean hasErrors() {
+		return !_errors.isEmpty();
+	}
+
+	/**
+	 * Converts the snapshot to JSON, so it can be stored with the data measured while it was valid
+	 * @return The JSON object with the time, the values and the messages of the errors
+	 * @throws JSONException If a value can't be converted
+	 */
+	public JSONObject toJSON() throws JSONException {
+		JSONObject values = new JSONObject();
+		for (Map.Entry<String, Object> entry:_values.entrySet())
+			values.put(entry.getKey(), entry.getValue());
+		JSONObject errors = new JSONObject();
+		for (Map.Entry<String, Exception> entry:_errors.entrySet())
+			errors.put(entry.getKey(), String.valueOf(entry.getValue().getMessage()));
+
+		JSONObject json = new JSONObject();
+		json.put(JSON_TIME, _time);
+		json.put(JSON_VALUES, values);
+		json.put(JSON_ERRORS, errors);
+		return json;
+	}
+
+	/**
+	 * Creates a snapshot from JSON
+	 * @param json The JSON object created by {@link #toJSON()}
+	 * @return The new snapshot, with the errors restored as plain exceptions with the stored messages
+	 * @throws JSONException If the JSON object is not valid
+	 */
+	public static PropertySnapshot fromJSON(JSONObject json) throws JSONException {
+		Map<String, Object> values = new HashMap<String, Object>();
+		JSONObject jsonValues = json.getJSONObject(JSON_VALUES);
+		for (Iterator<String> ids = jsonValues.keys(); ids.hasNext();) {
+			String id = ids.next();
+			values.put(id, jsonValues.get(id));
+		}
+		Map<String, Exception> errors = new HashMap<String, Exception>();
+		JSONObject jsonErrors = json.getJSONObject(JSON_ERRORS);
+		for (Iterator<String> ids = jsonErrors.keys(); ids.hasNext();) {
+			String id = ids.next();
+			errors.put(id, new Exception(jsonErrors.getString(id)));
+		}
+		return new PropertySnapshot(json.getLong(JSON_TIME), values, errors);
+	}
+
+}
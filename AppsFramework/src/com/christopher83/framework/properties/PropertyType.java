@@ -0,0 +1,44 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+/**
+ * Types of the values exposed by the file of a property
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public enum PropertyType {
+
+	/**
+	 * Decimal integer value
+	 */
+	INTEGER,
+
+	/**
+	 * Decimal long value
+	 */
+	LONG,
+
+	/**
+	 * Boolean value expressed as 0 or 1
+	 */
+	BOOLEAN,
+
+	/**
+	 * Free text value
+	 */
+	STRING
+
+}
@@ -0,0 +1,34 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+/**
+ * Policies for handling the values outside the range, or not aligned to the step, of a property
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public enum RangePolicy {
+
+	/**
+	 * The value is not written, the write fails
+	 */
+	REJECT,
+
+	/**
+	 * The value is brought inside the range and aligned to the step, then written
+	 */
+	CLAMP
+
+}
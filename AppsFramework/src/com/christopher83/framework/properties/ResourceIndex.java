@@ -0,0 +1,130 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties;
+
+import com.christopher83.framework.properties.interfaces.IProperty;
+
+/**
+ * Class for an immutable open-addressing index of properties by resource ID.
+ * Since it's never modified, it can be read by any thread without locking:
+ * adding an item creates a new index
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+final class ResourceIndex {
+
+	// The empty index
+	static final ResourceIndex EMPTY = new ResourceIndex(new int[2], new IProperty<?>[2], 0);
+
+	private final int[] _keys;            // The resource IDs, 0 for the empty slots (never a valid resource ID)
+	private final IProperty<?>[] _values; // The properties, at the same slot of their resource ID
+	private final int _size;              // The number of indexed properties
+
+	/**
+	 * Class constructor
+	 * @param keys The resource IDs
+	 * @param values The properties
+	 * @param size The number of indexed properties
+	 */
+	private ResourceIndex(int[] keys, IProperty<?>[] values, int size) {
+		_keys = keys;
+		_values = values;
+		_size = size;
+	}
+
+	/**
+	 * Gets the property by resource ID
+	 * @param resID The resource ID of the property to get
+	 * @return The property, or null if not indexed
+	 */
+	IProperty<?> get(int resID) {
+		int mask = _keys.length - 1;
+		for (int slot = hash(resID) & mask; _keys[slot] != 0; slot = (slot + 1) & mask) {
+			if (_keys[slot] == resID)
+				return _values[slot];
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a new index containing the items of this index and the specified one
+	 * @param resID The resource ID of the property to add
+	 * @param property The property to add, replacing the one with the same resource ID
+	 * @return The new index
+	 */
+	ResourceIndex with(int resID, IProperty<?> property) {
+		// Keep the load factor under 50%, so the probe sequences stay short
+		int capacity = _keys.length;
+		while ((_size + 1) * 2 > capacity)
+			capacity *= 2;
+
+		// Copy the current items inside the new index, then add the new one
+		ResourceIndex index = new ResourceIndex(new int[capacity], new IProperty<?>[capacity], 0);
+		int size = 0;
+		for (int i = 0; i < _keys.length; i++) {
+			if (_keys[i] != 0 && _keys[i] != resID)
+				size += index.insert(_keys[i], _values[i]);
+		}
+		size += index.insert(resID, property);
+		return new ResourceIndex(index._keys, index._values, size);
+	}
+
+	/**
+	 * Creates a new index where the specified property is replaced by another one, at the same resource IDs
+	 * @param previous The property to replace
+	 * @param property The replacing property
+	 * @return The new index, or this index if the property to replace is not indexed
+	 */
+	ResourceIndex replace(IProperty<?> previous, IProperty<?> property) {
+		// Replace the property on a copy of the values, created only when the property is found
+		IProperty<?>[] values = null;
+		for (int i = 0; i < _values.length; i++) {
+			if (_keys[i] != 0 && _values[i] == previous) {
+				if (values == null)
+					values = _values.clone();
+				values[i] = property;
+			}
+		}
+		return (values != null) ? new ResourceIndex(_keys, values, _size) : this;
+	}
+
+	/**
+	 * Inserts an item inside the arrays of this index, used only while building a new index
+	 * @param resID The resource ID
+	 * @param property The property
+	 * @return 1 if a new slot has been used, 0 if an item has been replaced
+	 */
+	private int insert(int resID, IProperty<?> property) {
+		int mask = _keys.length - 1;
+		int slot = hash(resID) & mask;
+		while (_keys[slot] != 0 && _keys[slot] != resID)
+			slot = (slot + 1) & mask;
+		int added = (_keys[slot] == 0) ? 1 : 0;
+		_keys[slot] = resID;
+		_values[slot] = property;
+		return added;
+	}
+
+	/**
+	 * Spreads the bits of the resource ID, whose high bits are the same for all the resources of a package
+	 * @param resID The resource ID
+	 * @return The hash of the resource ID
+	 */
+	private static int hash(int resID) {
+		int h = resID * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -15,6 +15,10 @@
  */
 package com.christopher83.framework.properties;
 
+import java.nio.ByteBuffer;
+
+import com.christopher83.framework.utilities.IOUtilities;
+
 /**
  * Class for a string property read/stored from a file
  * @author Cristoforo Cataldo (Christopher83)
@@ -76,13 +80,24 @@ public class StringFileProperty extends FileProperty<String> {
 		return readRawValue();
 	}
 
+	/**
+	 * Decodes the string value of the property from the raw bytes of the file
+	 * @param buffer The buffer positioned on the raw bytes, can be null
+	 * @return The string value of the property
+	 */
+	@Override
+	protected String decodeValue(ByteBuffer buffer) {
+		return IOUtilities.bytesToString(buffer);
+	}
+
 	/**
 	 * Sets the current value of the property
 	 * @param value The current value to set
+	 * @return True if the value has been stored
 	 */
 	@Override
-	public void setValue(Object value) {
-		storeRawValue((String)value);
+	public boolean setValue(Object value) {
+		return storeRawValue((String)value);
 	}
 
 }
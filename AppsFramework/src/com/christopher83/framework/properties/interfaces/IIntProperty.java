@@ -0,0 +1,38 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties.interfaces;
+
+/**
+ * Interface for a Property holding a primitive integer value, accessed without boxing
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public interface IIntProperty extends IProperty<Integer> {
+
+	/**
+	 * Gets the current integer value of the property
+	 * @param defaultValue The value to return if the current value is not available
+	 * @return The current value, or the specified default value if not available
+	 */
+	public abstract int getInt(int defaultValue);
+
+	/**
+	 * Sets the current integer value of the property
+	 * @param value The current value to set
+	 * @return True if the value has been stored
+	 */
+	public abstract boolean setInt(int value);
+
+}
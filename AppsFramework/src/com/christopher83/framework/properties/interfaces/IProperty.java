@@ -15,6 +15,8 @@
  */
 package com.christopher83.framework.properties.interfaces;
 
+import java.util.concurrent.Future;
+
 /**
  * Interface for a generic Property
  * @author Cristoforo Cataldo (Christopher83)
@@ -73,7 +75,36 @@ public interface IProperty<T> {
 	/**
 	 * Sets the current value of the property
 	 * @param value The current value to set
+	 * @return True if the value has been stored
+	 */
+	public abstract boolean setValue(Object value);
+
+	/**
+	 * Gets the current value of the property on the I/O thread
+	 * @param callback The callback to invoke on the main thread with the current value, can be null
+	 * @return The future current value
+	 */
+	public abstract Future<T> getValueAsync(IPropertyCallback<T> callback);
+
+	/**
+	 * Sets the current value of the property on the I/O thread
+	 * @param value The current value to set
+	 * @param callback The callback to invoke on the main thread with the result of the store, can be null
+	 * @return The future result of the store (true if the value has been stored)
+	 */
+	public abstract Future<Boolean> setValueAsync(Object value, IPropertyCallback<Boolean> callback);
+
+	/**
+	 * Adds a listener notified on the main thread when the value of the property changes,
+	 * because of a write or of a read finding a different value
+	 * @param listener The listener to add
+	 */
+	public abstract void addListener(IPropertyListener<T> listener);
+
+	/**
+	 * Removes a listener of the value changes
+	 * @param listener The listener to remove
 	 */
-	public abstract void setValue(Object value);
+	public abstract void removeListener(IPropertyListener<T> listener);
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties.interfaces;
+
+/**
+ * Interface for the callback of an asynchronous property operation,
+ * always invoked on the main thread
+ * @author Cristoforo Cataldo (Christopher83)
+ * @param <T> The type of the operation result
+ */
+public interface IPropertyCallback<T> {
+
+	/**
+	 * Manages the completion of the operation
+	 * @param result The result of the operation, null if the operation failed
+	 */
+	public abstract void onCompleted(T result);
+
+}
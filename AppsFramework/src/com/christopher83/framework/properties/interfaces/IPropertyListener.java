@@ -0,0 +1,34 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.properties.interfaces;
+
+/**
+ * Interface for a listener of the value changes of a property,
+ * always invoked on the main thread
+ * @author Cristoforo Cataldo (Christopher83)
+ * @param <T> The type of the stored value
+ */
+public interface IPropertyListener<T> {
+
+	/**
+	 * Manages the change of the value of the property. The changes detected
+	 * during the same frame are coalesced, so only the latest value is notified
+	 * @param property The changed property
+	 * @param value The latest value of the property, null if not available
+	 */
+	public abstract void onPropertyChanged(IProperty<T> property, T value);
+
+}
@@ -0,0 +1,244 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.sampling;
+
+import com.christopher83.framework.properties.interfaces.IIntProperty;
+import com.christopher83.framework.properties.interfaces.ILongProperty;
+import com.christopher83.framework.properties.interfaces.IProperty;
+
+/**
+ * Class for the sampler of a monotonic counter exposed by a property.
+ * The samples are stored inside primitive ring buffers allocated once, so sampling never allocates.
+ * The counter resets (e.g. after a reboot or a module reload) are detected and don't affect the total
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class CounterSampler {
+
+	// Value returned when a statistic is not available
+	public static final long NO_VALUE = Long.MIN_VALUE;
+
+	// Milliseconds in a minute
+	private static final long MINUTE = 60000;
+
+	private final IProperty<?> _counter; // The counter property
+	private final long[] _times;          // The times (in ms) of the samples, ring buffer
+	private final long[] _totals;        // The accumulated totals at the time of the samples, ring buffer
+	private int _head;                   // The index of the next sample to write
+	private int _count;                  // The number of stored samples
+	private long _last = NO_VALUE;       // The last raw value read from the counter
+	private long _total;                 // The total increments of the counter since the sampling started
+	private long _resets;                // The number of detected counter resets
+	private long _failures;              // The number of failed reads
+
+	/**
+	 * Class constructor
+	 * @param counter The counter property, implementing the integer or the long accessors
+	 * @param capacity The number of samples kept
+	 */
+	public CounterSampler(IProperty<?> counter, int capacity) {
+		_counter = counter;
+		_times = new long[capacity];
+		_totals = new long[capacity];
+	}
+
+	/**
+	 * Gets the sampled counter property
+	 * @return The counter property
+	 */
+	public IProperty<?> getCounter() {
+		return _counter;
+	}
+
+	/**
+	 * Reads the counter and stores a new sample
+	 * @param time The time of the sample (in ms), from a monotonic clock
+	 * @return True if the counter has been read
+	 */
+	public boolean sample(long time) {
+		// Read the counter without boxing
+		long value = read();
+		synchronized (this) {
+			if (value == NO_VALUE) {
+				_failures++;
+				return false;
+			}
+
+			// Accumulate the increment since the last read. A lower value means the counter has been reset,
+			// so the whole current value is the increment since the reset
+			if (_last != NO_VALUE) {
+				if (value >= _last)
+					_total += value - _last;
+				else {
+					_total += value;
+					_resets++;
+				}
+			}
+			_last = value;
+
+			// Store the sample, overwriting the oldest one when full
+			_times[_head] = time;
+			_totals[_head] = _total;
+			_head = (_head + 1) % _times.length;
+			if (_count < _times.length)
+				_count++;
+			return true;
+		}
+	}
+
+	/**
+	 * Restores the state saved from a previous sampling, so the total survives the process restarts.
+	 * A reset of the counter is detected by the next sample only if the counter hasn't climbed back above
+	 * the saved last value, so the last value must not be restored when the counter may have been reset
+	 * meanwhile (e.g. after a reboot)
+	 * @param total The saved total
+	 * @param last The saved last raw value of the counter, or {@link #NO_VALUE} if unknown or no longer valid
+	 */
+	public synchronized void restore(long total, long last) {
+		_total = total;
+		_last = last;
+	}
+
+	/**
+	 * Gets the total increments of the counter since the sampling started, including the restored total
+	 * @return The total increments
+	 */
+	public synchronized long getTotal() {
+		return _total;
+	}
+
+	/**
+	 * Gets the last raw value read from the counter
+	 * @return The last raw value, or {@link #NO_VALUE} if not read yet
+	 */
+	public synchronized long getLast() {
+		return _last;
+	}
+
+	/**
+	 * Gets the number of detected counter resets
+	 * @return The number of resets
+	 */
+	public synchronized long getResets() {
+		return _resets;
+	}
+
+	/**
+	 * Gets the number of failed reads of the counter
+	 * @return The number of failed reads
+	 */
+	public synchronized long getFailures() {
+		return _failures;
+	}
+
+	/**
+	 * Gets the number of stored samples
+	 * @return The number of samples
+	 */
+	public synchronized int getCount() {
+		return _count;
+	}
+
+	/**
+	 * Gets the increments per minute over all the stored samples
+	 * @return The rate per minute, or {@link #NO_VALUE} if less than two samples are stored
+	 */
+	public double getRatePerMinute() {
+		return getRatePerMinute(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the increments per minute over the samples of the specified window, ending at the latest sample
+	 * @param window The window length (in ms)
+	 * @return The rate per minute, or {@link #NO_VALUE} if less than two samples are inside the window
+	 */
+	public synchronized double getRatePerMinute(long window) {
+		if (_count < 2)
+			return NO_VALUE;
+
+		// Get the latest sample and the oldest one still inside the window
+		int newest = (_head - 1 + _times.length) % _times.length;
+		int oldest = (newest - getCount(window) + 1 + _times.length) % _times.length;
+
+		// Compute the rate between the two samples
+		long elapsed = _times[newest] - _times[oldest];
+		if (oldest == newest || elapsed <= 0)
+			return NO_VALUE;
+		return (double)(_totals[newest] - _totals[oldest]) * MINUTE / elapsed;
+	}
+
+	/**
+	 * Gets the increments of the counter over the samples of the specified window, ending at the latest sample
+	 * @param window The window length (in ms)
+	 * @return The increments, or {@link #NO_VALUE} if less than two samples are inside the window
+	 */
+	public synchronized long getIncrements(long window) {
+		int count = getCount(window);
+		if (count < 2)
+			return NO_VALUE;
+		int newest = (_head - 1 + _times.length) % _times.length;
+		int oldest = (newest - count + 1 + _times.length) % _times.length;
+		return _totals[newest] - _totals[oldest];
+	}
+
+	/**
+	 * Gets the number of stored samples inside the specified window, ending at the latest sample
+	 * @param window The window length (in ms)
+	 * @return The number of samples
+	 */
+	public synchronized int getCount(long window) {
+		if (_count == 0)
+			return 0;
+
+		// Walk back from the latest sample to the oldest one still inside the window
+		int newest = (_head - 1 + _times.length) % _times.length;
+		long endTime = _times[newest];
+		int count = 1;
+		while (count < _count && endTime - _times[(newest - count + _times.length) % _times.length] <= window)
+			count++;
+		return count;
+	}
+
+	/**
+	 * Copies the stored samples, from the oldest to the newest, inside the specified arrays
+	 * @param times The array receiving the times of the samples
+	 * @param totals The array receiving the accumulated totals of the samples
+	 * @return The number of copied samples, limited by the arrays length
+	 */
+	public synchronized int copySamples(long[] times, long[] totals) {
+		int count = Math.min(_count, Math.min(times.length, totals.length));
+		int start = (_head - count + _times.length) % _times.length;
+		for (int i = 0; i < count; i++) {
+			int index = (start + i) % _times.length;
+			times[i] = _times[index];
+			totals[i] = _totals[index];
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the raw value of the counter without boxing
+	 * @return The raw value, or {@link #NO_VALUE} if not available
+	 */
+	private long read() {
+		if (_counter instanceof IIntProperty) {
+			int value = ((IIntProperty)_counter).getInt(Integer.MIN_VALUE);
+			return (value != Integer.MIN_VALUE) ? value : NO_VALUE;
+		} else if (_counter instanceof ILongProperty)
+			return ((ILongProperty)_counter).getLong(NO_VALUE);
+		return NO_VALUE;
+	}
+
+}
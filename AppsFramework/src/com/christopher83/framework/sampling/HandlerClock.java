@@ -0,0 +1,70 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.sampling;
+
+import com.christopher83.framework.sampling.interfaces.IClock;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Class for a clock running the tasks on the thread of a looper. The time is the uptime,
+ * that doesn't advance during the deep sleep, so the scheduled tasks never wake up the device
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class HandlerClock implements IClock {
+
+	private final Handler _handler; // The handler running the tasks
+
+	/**
+	 * Class constructor
+	 * @param looper The looper of the thread where to run the tasks
+	 */
+	public HandlerClock(Looper looper) {
+		_handler = new Handler(looper);
+	}
+
+	/**
+	 * Gets the current time
+	 * @return The current uptime (in ms)
+	 */
+	@Override
+	public long now() {
+		return SystemClock.uptimeMillis();
+	}
+
+	/**
+	 * Schedules a task, replacing its previous scheduling
+	 * @param task The task to run
+	 * @param time The uptime (in ms) when the task must run
+	 */
+	@Override
+	public void schedule(Runnable task, long time) {
+		_handler.removeCallbacks(task);
+		_handler.postAtTime(task, time);
+	}
+
+	/**
+	 * Cancels the scheduling of a task
+	 * @param task The task to cancel
+	 */
+	@Override
+	public void cancel(Runnable task) {
+		_handler.removeCallbacks(task);
+	}
+
+}
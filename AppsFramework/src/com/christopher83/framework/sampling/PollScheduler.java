@@ -0,0 +1,344 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.sampling;
+
+import java.util.ArrayList;
+
+import com.christopher83.framework.properties.FileProperty;
+import com.christopher83.framework.sampling.interfaces.IClock;
+import com.christopher83.framework.sampling.interfaces.IPollTarget;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.PowerManager;
+
+/**
+ * Class for a scheduler polling its targets with adaptive intervals.
+ * The interval of a target returns to its minimum when the target changes and doubles,
+ * up to its maximum, while the target stays unchanged. All the targets due within a
+ * fraction of their interval are polled together, so a single wakeup serves them all.
+ * The polling can be paused, e.g. while the screen is off
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PollScheduler {
+
+	// Factor applied to the interval of an unchanged target
+	private static final int BACKOFF_FACTOR = 2;
+
+	// Fraction of its interval a target can be polled in advance to join a wakeup
+	private static final int BATCH_FRACTION = 2;
+
+	/**
+	 * Class for a polled target reading a file property
+	 */
+	private static class PropertyTarget implements IPollTarget {
+		final FileProperty<?> property; // The polled property
+
+		/**
+		 * Class constructor
+		 * @param property The polled property
+		 */
+		PropertyTarget(FileProperty<?> property) {
+			this.property = property;
+		}
+
+		/**
+		 * Polls the property
+		 */
+		@Override
+		public boolean poll(long time) {
+			return property.poll();
+		}
+	}
+
+	/**
+	 * Class for a polled target with its scheduling state
+	 */
+	private static class Entry {
+		final IPollTarget target; // The polled target
+		final long minInterval;   // The interval (in ms) used after a change
+		final long maxInterval;   // The max interval (in ms) reached backing off
+		long interval;            // The current interval (in ms)
+		long due;                 // The time (in ms) of the next poll
+		long polls;               // The number of polls
+		long changes;             // The number of polls that found a change
+
+		/**
+		 * Class constructor
+		 * @param target The polled target
+		 * @param minInterval The interval (in ms) used after a change
+		 * @param maxInterval The max interval (in ms) reached backing off
+		 * @param due The time (in ms) of the first poll
+		 */
+		Entry(IPollTarget target, long minInterval, long maxInterval, long due) {
+			this.target = target;
+			this.minInterval = minInterval;
+			this.maxInterval = Math.max(minInterval, maxInterval);
+			this.interval = minInterval;
+			this.due = due;
+		}
+	}
+
+	private final IClock _clock;                              // The clock measuring the time and running the wakeups
+	private final ArrayList<Entry> _entries = new ArrayList<Entry>(); // The polled targets
+	private final ArrayList<Entry> _due = new ArrayList<Entry>();     // The targets to poll by the current wakeup, reused by each one
+	private boolean _paused;                                  // Flag indicating if the polling is paused
+	private long _wakeups;                                    // The number of wakeups
+	private BroadcastReceiver _screenReceiver;                // The receiver pausing the polling while the screen is off
+
+	// The wakeup polling the due targets
+	private final Runnable _wakeup = new Runnable() {
+		/**
+		 * Polls the due targets
+		 */
+		@Override
+		public void run() {
+			wakeup();
+		}
+	};
+
+	/**
+	 * Class constructor
+	 * @param clock The clock measuring the time and running the wakeups
+	 */
+	public PollScheduler(IClock clock) {
+		_clock = clock;
+	}
+
+	/**
+	 * Adds a target to poll, polled as soon as possible
+	 * @param target The target to poll
+	 * @param minInterval The interval (in ms) used after a change
+	 * @param maxInterval The max interval (in ms) reached backing off while the target is unchanged
+	 */
+	public synchronized void add(IPollTarget target, long minInterval, long maxInterval) {
+		_entries.add(new Entry(target, minInterval, maxInterval, _clock.now()));
+		reschedule();
+	}
+
+	/**
+	 * Adds a file property to poll, whose changes are notified to its listeners
+	 * @param property The property to poll
+	 * @param minInterval The interval (in ms) used after a change
+	 * @param maxInterval The max interval (in ms) reached backing off while the value is unchanged
+	 * @return The target added for the property, used to remove it
+	 */
+	public IPollTarget add(FileProperty<?> property, long minInterval, long maxInterval) {
+		IPollTarget target = new PropertyTarget(property);
+		add(target, minInterval, maxInterval);
+		return target;
+	}
+
+	/**
+	 * Removes a polled target. The property of a target added for a file property stops tracking its content
+	 * @param target The target to remove
+	 */
+	public synchronized void remove(IPollTarget target) {
+		for (int i = 0; i < _entries.size(); i++) {
+			if (_entries.get(i).target == target) {
+				stopPolling(_entries.remove(i).target);
+				break;
+			}
+		}
+		reschedule();
+	}
+
+	/**
+	 * Removes all the polled targets. The properties of the targets added for file properties stop tracking their content
+	 */
+	public synchronized void clear() {
+		for (Entry entry:_entries)
+			stopPolling(entry.target);
+		_entries.clear();
+		reschedule();
+	}
+
+	/**
+	 * Pauses the polling
+	 */
+	public synchronized void pause() {
+		_paused = true;
+		reschedule();
+	}
+
+	/**
+	 * Resumes the polling, polling all the targets as soon as possible
+	 */
+	public synchronized void resume() {
+		_paused = false;
+		long now = _clock.now();
+		for (Entry entry:_entries)
+			entry.due = now;
+		reschedule();
+	}
+
+	/**
+	 * Checks if the polling is paused
+	 * @return True if the polling is paused
+	 */
+	public synchronized boolean isPaused() {
+		return _paused;
+	}
+
+	/**
+	 * Gets the current interval of a target
+	 * @param target The polled target
+	 * @return The current interval (in ms), or -1 if the target is not polled
+	 */
+	public synchronized long getInterval(IPollTarget target) {
+		for (Entry entry:_entries) {
+			if (entry.target == target)
+				return entry.interval;
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the number of polls of a target
+	 * @param target The polled target
+	 * @return The number of polls, or -1 if the target is not polled
+	 */
+	public synchronized long getPolls(IPollTarget target) {
+		for (Entry entry:_entries) {
+			if (entry.target == target)
+				return entry.polls;
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the number of wakeups performed
+	 * @return The number of wakeups
+	 */
+	public synchronized long getWakeups() {
+		return _wakeups;
+	}
+
+	/**
+	 * Pauses the polling while the screen is off, till {@link #stopFollowingScreen(Context)} is invoked
+	 * @param context The context
+	 */
+	@SuppressWarnings("deprecation")
+	public synchronized void followScreen(Context context) {
+		if (_screenReceiver != null)
+			return;
+
+		// Pause or resume the polling when the screen is turned off or on
+		_screenReceiver = new BroadcastReceiver() {
+			/**
+			 * Manages the screen state changes
+			 */
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction()))
+					pause();
+				else if (Intent.ACTION_SCREEN_ON.equals(intent.getAction()))
+					resume();
+			}
+		};
+		IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_OFF);
+		filter.addAction(Intent.ACTION_SCREEN_ON);
+		context.getApplicationContext().registerReceiver(_screenReceiver, filter);
+
+		// Apply the current screen state
+		PowerManager powerManager = (PowerManager)context.getSystemService(Context.POWER_SERVICE);
+		if (powerManager != null && !powerManager.isScreenOn())
+			pause();
+	}
+
+	/**
+	 * Stops pausing the polling while the screen is off
+	 * @param context The context
+	 */
+	public synchronized void stopFollowingScreen(Context context) {
+		if (_screenReceiver == null)
+			return;
+		context.getApplicationContext().unregisterReceiver(_screenReceiver);
+		_screenReceiver = null;
+		if (_paused)
+			resume();
+	}
+
+	/**
+	 * Polls all the due targets, and the targets due soon, then schedules the next wakeup
+	 */
+	private void wakeup() {
+		// Take the targets to poll, so they're polled outside the lock
+		ArrayList<Entry> due = _due;
+		long now;
+		synchronized (this) {
+			if (_paused)
+				return;
+			now = _clock.now();
+			_wakeups++;
+			due.clear();
+			for (int i = 0; i < _entries.size(); i++) {
+				Entry entry = _entries.get(i);
+				if (entry.due - now <= entry.interval / BATCH_FRACTION)
+					due.add(entry);
+			}
+		}
+
+		// Poll each target, adapting its interval to the result (indexed loops, so no iterator is allocated)
+		for (int i = 0; i < due.size(); i++) {
+			Entry entry = due.get(i);
+			boolean changed = entry.target.poll(now);
+			synchronized (this) {
+				entry.polls++;
+				if (changed) {
+					entry.changes++;
+					entry.interval = entry.minInterval;
+				} else
+					entry.interval = Math.min(entry.maxInterval, entry.interval * BACKOFF_FACTOR);
+				entry.due = now + entry.interval;
+			}
+		}
+
+		// Release the polled targets, the list being reused by the next wakeup
+		due.clear();
+
+		// Schedule the next wakeup
+		synchronized (this) {
+			reschedule();
+		}
+	}
+
+	/**
+	 * Stops the tracking of the content of a removed target, if added for a file property
+	 * @param target The removed target
+	 */
+	private static void stopPolling(IPollTarget target) {
+		if (target instanceof PropertyTarget)
+			((PropertyTarget)target).property.stopPolling();
+	}
+
+	/**
+	 * Schedules the wakeup at the earliest due time, or cancels it if there's nothing to poll
+	 */
+	private void reschedule() {
+		if (_paused || _entries.isEmpty()) {
+			_clock.cancel(_wakeup);
+			return;
+		}
+		long earliest = Long.MAX_VALUE;
+		for (int i = 0; i < _entries.size(); i++)
+			earliest = Math.min(earliest, _entries.get(i).due);
+		_clock.schedule(_wakeup, earliest);
+	}
+
+}
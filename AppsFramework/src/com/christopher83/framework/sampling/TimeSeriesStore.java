@@ -0,0 +1,527 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.sampling;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import com.christopher83.framework.sampling.interfaces.ISampleVisitor;
+
+import android.util.Log;
+
+/**
+ * Class for an append-only time series stored inside a directory of segment files.
+ * Each segment starts with a header holding the first sample, followed by frames of records.
+ * Each record holds the zigzag varint encoded deltas of time and value from the previous record.
+ * Each frame holds its length and the CRC32 of its records, so a frame torn by a crash is
+ * detected and truncated when the store is opened. The oldest segments are deleted when the
+ * total size exceeds the retention limit. The segments are read through memory mapping
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class TimeSeriesStore {
+
+	// Magic number and version at the start of each segment ("PKTS", 1)
+	private static final int SEGMENT_MAGIC = 0x504B5453;
+	private static final byte SEGMENT_VERSION = 1;
+
+	// Length of the segment header (magic, version, first time, first value)
+	private static final int HEADER_LENGTH = 4 + 1 + 8 + 8;
+
+	// Length of the frame header (records length, CRC32 of the records)
+	private static final int FRAME_HEADER_LENGTH = 2 + 4;
+
+	// Max number of records buffered inside a frame before writing it
+	private static final int FRAME_RECORDS = 32;
+
+	// Max length of an encoded record (two varints of 10 bytes)
+	private static final int MAX_RECORD_LENGTH = 20;
+
+	// Extension and name format of the segment files
+	private static final String SEGMENT_EXTENSION = ".seg";
+	private static final String SEGMENT_FORMAT = "%010d" + SEGMENT_EXTENSION;
+
+	private final File _directory;      // The directory of the segments
+	private final long _segmentSize;    // The size (in bytes) above which a new segment is started
+	private final long _maxSize;        // The max total size (in bytes) of the segments
+	private final ArrayList<File> _segments = new ArrayList<File>(); // The segments, from the oldest
+	private long _size;                 // The total size (in bytes) of the segments
+
+	private FileOutputStream _output;   // The output stream of the current segment, null if no segment is open
+	private long _segmentLength;        // The length (in bytes) of the current segment, including the buffered frame
+	private long _lastTime;             // The time of the last appended sample
+	private long _lastValue;            // The value of the last appended sample
+
+	private final byte[] _frame = new byte[FRAME_HEADER_LENGTH + FRAME_RECORDS * MAX_RECORD_LENGTH]; // The frame being buffered
+	private final ByteBuffer _frameBuffer = ByteBuffer.wrap(_frame); // The buffer wrapping the frame
+	private int _frameRecords;          // The number of records buffered inside the frame
+	private final CRC32 _crc = new CRC32(); // The checksum reused for each frame
+
+	private final byte[] _readFrame = new byte[_frame.length]; // The frame being decoded by a query
+	private boolean _queryVisited;      // Flag indicating if the running query has visited a sample
+	private long _queryLastTime;        // The time of the last sample visited by the running query
+	private long _queryLastValue;       // The value of the last sample visited by the running query
+
+	/**
+	 * Class constructor, opening the store and recovering the segment torn by a crash
+	 * @param directory The directory of the segments, created if not existing
+	 * @param segmentSize The size (in bytes) above which a new segment is started
+	 * @param maxSize The max total size (in bytes) of the segments, the oldest are deleted when exceeded
+	 */
+	public TimeSeriesStore(File directory, long segmentSize, long maxSize) {
+		_directory = directory;
+		_segmentSize = segmentSize;
+		_maxSize = maxSize;
+		open();
+	}
+
+	/**
+	 * Appends a sample. The sample is buffered till its frame is full or the store is flushed
+	 * @param time The time of the sample (in ms)
+	 * @param value The value of the sample
+	 * @return True if the sample has been appended
+	 */
+	public synchronized boolean append(long time, long value) {
+		try {
+			// Start a new segment, with this sample inside its header, if needed
+			if (_output == null)
+				startSegment(time, value);
+
+			// Encode the deltas from the previous sample inside the frame
+			if (_frameRecords == 0)
+				_frameBuffer.position(FRAME_HEADER_LENGTH);
+			int start = _frameBuffer.position();
+			writeVarLong(_frameBuffer, zigzag(time - _lastTime));
+			writeVarLong(_frameBuffer, zigzag(value - _lastValue));
+			_segmentLength += _frameBuffer.position() - start + (_frameRecords == 0 ? FRAME_HEADER_LENGTH : 0);
+			_frameRecords++;
+			_lastTime = time;
+			_lastValue = value;
+
+			// Write the frame when full, then roll the segment if it's too big
+			if (_frameRecords == FRAME_RECORDS)
+				writeFrame();
+			if (_segmentLength >= _segmentSize) {
+				closeSegment();
+				applyRetention();
+			}
+			return true;
+		} catch (IOException ex) {
+			Log.e(TimeSeriesStore.class.getName(), String.format("Error during sample appending inside %s: %s", _directory, ex.getMessage()));
+			closeSegment();
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the buffered samples to the current segment and syncs it to the storage
+	 */
+	public synchronized void flush() {
+		try {
+			writeFrame();
+			if (_output != null)
+				_output.getFD().sync();
+		} catch (IOException ex) {
+			Log.e(TimeSeriesStore.class.getName(), String.format("Error during flushing of %s: %s", _directory, ex.getMessage()));
+			closeSegment();
+		}
+	}
+
+	/**
+	 * Writes the buffered samples and closes the current segment
+	 */
+	public synchronized void close() {
+		flush();
+		closeSegment();
+	}
+
+	/**
+	 * Visits in time order the stored samples inside the specified interval, buffered samples excluded.
+	 * A sample repeated at the start of a segment is visited only once
+	 * @param from The start time of the interval (in ms, inclusive)
+	 * @param to The end time of the interval (in ms, inclusive)
+	 * @param visitor The visitor of the samples
+	 * @return The number of visited samples
+	 */
+	public synchronized int query(long from, long to, ISampleVisitor visitor) {
+		int count = 0;
+		_queryVisited = false;
+		long firstTime = _segments.isEmpty() ? Long.MIN_VALUE : readFirstTime(_segments.get(0));
+		for (int i = 0; i < _segments.size(); i++) {
+			// Stop when the segment starts after the interval
+			if (firstTime > to)
+				break;
+
+			// Skip the segment if the next one starts before the interval
+			long nextFirstTime = (i + 1 < _segments.size()) ? readFirstTime(_segments.get(i + 1)) : Long.MAX_VALUE;
+			if (nextFirstTime >= from)
+				count += querySegment(_segments.get(i), from, to, visitor);
+			firstTime = nextFirstTime;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the total size of the segments
+	 * @return The total size (in bytes)
+	 */
+	public synchronized long getSize() {
+		return _size + (_output != null ? _segmentLength : 0);
+	}
+
+	/**
+	 * Gets the number of segments
+	 * @return The number of segments
+	 */
+	public synchronized int getSegmentCount() {
+		return _segments.size();
+	}
+
+	/**
+	 * Opens the store, listing the segments and recovering the last one
+	 */
+	private void open() {
+		if (!_directory.isDirectory() && !_directory.mkdirs())
+			Log.e(TimeSeriesStore.class.getName(), String.format("Unable to create the directory %s", _directory));
+
+		// List the segments, sorted by name so from the oldest
+		File[] files = _directory.listFiles(new FileFilter() {
+			/**
+			 * Accepts only the segment files
+			 */
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(SEGMENT_EXTENSION);
+			}
+		});
+		if (files != null) {
+			Arrays.sort(files);
+			_segments.addAll(Arrays.asList(files));
+		}
+
+		// Truncate the torn frames of the last segment, the only one that could have been written during a crash
+		if (!_segments.isEmpty())
+			recover(_segments.get(_segments.size() - 1));
+
+		// Compute the total size and apply the retention
+		for (File segment:_segments)
+			_size += segment.length();
+		applyRetention();
+	}
+
+	/**
+	 * Validates the frames of a segment, truncating it at the first invalid frame,
+	 * or deleting it if its header is invalid
+	 * @param segment The segment file
+	 */
+	private void recover(File segment) {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(segment, "rw");
+			FileChannel channel = file.getChannel();
+			long length = channel.size();
+
+			// If the header is torn or invalid, then the segment is useless
+			MappedByteBuffer buffer = (length >= HEADER_LENGTH) ? channel.map(FileChannel.MapMode.READ_ONLY, 0, length) : null;
+			if (buffer == null || buffer.getInt() != SEGMENT_MAGIC || buffer.get() != SEGMENT_VERSION) {
+				file.close();
+				file = null;
+				deleteSegment(segment);
+				return;
+			}
+			buffer.position(HEADER_LENGTH);
+
+			// Check each frame, the valid length ends with the last complete frame having a matching checksum
+			long validLength = HEADER_LENGTH;
+			while (buffer.remaining() >= FRAME_HEADER_LENGTH) {
+				int recordsLength = buffer.getShort() & 0xFFFF;
+				int crc = buffer.getInt();
+				if (recordsLength == 0 || recordsLength > buffer.remaining() || recordsLength > _frame.length)
+					break;
+				buffer.get(_frame, 0, recordsLength);
+				_crc.reset();
+				_crc.update(_frame, 0, recordsLength);
+				if ((int)_crc.getValue() != crc)
+					break;
+				validLength = buffer.position();
+			}
+
+			// Truncate the torn tail
+			if (validLength < length) {
+				Log.w(TimeSeriesStore.class.getName(), String.format("Truncating %d torn bytes of %s", length - validLength, segment));
+				channel.truncate(validLength);
+			}
+		} catch (IOException ex) {
+			Log.e(TimeSeriesStore.class.getName(), String.format("Error during recovery of %s: %s", segment, ex.getMessage()));
+		} finally {
+			closeQuietly(file);
+		}
+	}
+
+	/**
+	 * Visits the samples of a segment inside the specified interval. The frames are checked
+	 * against their length and checksum, the segment is read till the first invalid frame
+	 * @param segment The segment file
+	 * @param from The start time of the interval (in ms, inclusive)
+	 * @param to The end time of the interval (in ms, inclusive)
+	 * @param visitor The visitor of the samples
+	 * @return The number of visited samples
+	 */
+	private int querySegment(File segment, long from, long to, ISampleVisitor visitor) {
+		RandomAccessFile file = null;
+		int count = 0;
+		try {
+			file = new RandomAccessFile(segment, "r");
+			long length = file.length();
+			if (length < HEADER_LENGTH)
+				return 0;
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+			// Decode the records of each frame, starting from the sample inside the header
+			buffer.position(4 + 1);
+			long time = buffer.getLong();
+			long value = buffer.getLong();
+			while (buffer.remaining() >= FRAME_HEADER_LENGTH) {
+				// Copy the records of the frame, stopping if torn, too long or with a wrong checksum
+				int recordsLength = buffer.getShort() & 0xFFFF;
+				int crc = buffer.getInt();
+				if (recordsLength > buffer.remaining() || recordsLength > _readFrame.length) {
+					Log.w(TimeSeriesStore.class.getName(), String.format("Invalid frame length %d inside %s", recordsLength, segment));
+					break;
+				}
+				buffer.get(_readFrame, 0, recordsLength);
+				_crc.reset();
+				_crc.update(_readFrame, 0, recordsLength);
+				if ((int)_crc.getValue() != crc) {
+					Log.w(TimeSeriesStore.class.getName(), String.format("Invalid frame checksum inside %s", segment));
+					break;
+				}
+
+				// Decode the records, a record crossing the end of the frame throws an underflow
+				ByteBuffer records = ByteBuffer.wrap(_readFrame, 0, recordsLength);
+				while (records.hasRemaining()) {
+					time += unzigzag(readVarLong(records));
+					value += unzigzag(readVarLong(records));
+					if (time > to)
+						return count;
+
+					// Skip the sample already visited at the end of the previous segment
+					if (_queryVisited && time == _queryLastTime && value == _queryLastValue)
+						continue;
+					if (time >= from) {
+						visitor.onSample(time, value);
+						count++;
+						_queryVisited = true;
+						_queryLastTime = time;
+						_queryLastValue = value;
+					}
+				}
+			}
+		} catch (BufferUnderflowException ex) {
+			Log.w(TimeSeriesStore.class.getName(), String.format("Truncated record inside %s", segment));
+		} catch (IOException ex) {
+			Log.e(TimeSeriesStore.class.getName(), String.format("Error during reading of %s: %s", segment, ex.getMessage()));
+		} finally {
+			closeQuietly(file);
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the time of the first sample of a segment from its header
+	 * @param segment The segment file
+	 * @return The time of the first sample, or Long.MIN_VALUE if not available
+	 */
+	private long readFirstTime(File segment) {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(segment, "r");
+			if (file.length() < HEADER_LENGTH)
+				return Long.MIN_VALUE;
+			file.seek(4 + 1);
+			return file.readLong();
+		} catch (IOException ex) {
+			return Long.MIN_VALUE;
+		} finally {
+			closeQuietly(file);
+		}
+	}
+
+	/**
+	 * Starts a new segment, writing its header with the first sample
+	 * @param time The time of the first sample (in ms)
+	 * @param value The value of the first sample
+	 * @throws IOException If the segment can't be created
+	 */
+	private void startSegment(long time, long value) throws IOException {
+		// Name the segment after the last one, so the names keep the time order
+		int sequence = 0;
+		if (!_segments.isEmpty()) {
+			String name = _segments.get(_segments.size() - 1).getName();
+			try {
+				sequence = Integer.parseInt(name.substring(0, name.length() - SEGMENT_EXTENSION.length())) + 1;
+			} catch (NumberFormatException ex) {
+				sequence = _segments.size();
+			}
+		}
+		File segment = new File(_directory, String.format(SEGMENT_FORMAT, sequence));
+
+		// Write the header, holding the first sample as base of the deltas
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.putInt(SEGMENT_MAGIC).put(SEGMENT_VERSION).putLong(time).putLong(value);
+		_output = new FileOutputStream(segment, false);
+		_output.write(header.array());
+		_segments.add(segment);
+		_segmentLength = HEADER_LENGTH;
+		_lastTime = time;
+		_lastValue = value;
+		_frameRecords = 0;
+	}
+
+	/**
+	 * Writes the buffered frame, with its length and checksum, to the current segment
+	 * @throws IOException If the frame can't be written
+	 */
+	private void writeFrame() throws IOException {
+		if (_output == null || _frameRecords == 0)
+			return;
+
+		// Fill the frame header and write the whole frame with a single call
+		int length = _frameBuffer.position();
+		int recordsLength = length - FRAME_HEADER_LENGTH;
+		_crc.reset();
+		_crc.update(_frame, FRAME_HEADER_LENGTH, recordsLength);
+		_frameBuffer.putShort(0, (short)recordsLength);
+		_frameBuffer.putInt(2, (int)_crc.getValue());
+		_output.write(_frame, 0, length);
+		_frameRecords = 0;
+		_frameBuffer.position(FRAME_HEADER_LENGTH);
+	}
+
+	/**
+	 * Closes the current segment, writing the buffered frame
+	 */
+	private void closeSegment() {
+		if (_output == null)
+			return;
+		try {
+			writeFrame();
+		} catch (IOException ex) {
+			Log.e(TimeSeriesStore.class.getName(), String.format("Error during frame writing inside %s: %s", _directory, ex.getMessage()));
+		}
+		try {
+			_output.close();
+		} catch (IOException ex) {
+			Log.w(TimeSeriesStore.class.getName(), "Error during segment closing", ex);
+		}
+		_output = null;
+		_frameRecords = 0;
+		_size += _segments.get(_segments.size() - 1).length();
+	}
+
+	/**
+	 * Deletes the oldest closed segments while the total size exceeds the retention limit
+	 */
+	private void applyRetention() {
+		int closedSegments = _segments.size() - (_output != null ? 1 : 0);
+		while (closedSegments > 0 && getSize() > _maxSize) {
+			deleteSegment(_segments.get(0));
+			closedSegments--;
+		}
+	}
+
+	/**
+	 * Deletes a segment, removing it from the list
+	 * @param segment The segment file
+	 */
+	private void deleteSegment(File segment) {
+		if (_segments.remove(segment))
+			_size -= Math.min(_size, segment.length());
+		if (!segment.delete())
+			Log.w(TimeSeriesStore.class.getName(), String.format("Unable to delete the segment %s", segment));
+	}
+
+	/**
+	 * Encodes a signed value so that the small magnitudes, positive or negative, produce small varints
+	 * @param value The value to encode
+	 * @return The zigzag encoded value
+	 */
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	/**
+	 * Decodes a zigzag encoded value
+	 * @param value The zigzag encoded value
+	 * @return The decoded value
+	 */
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Writes a value as varint, 7 bits per byte with the high bit set on all the bytes but the last
+	 * @param buffer The buffer where to write
+	 * @param value The value to write, as unsigned
+	 */
+	private static void writeVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+	}
+
+	/**
+	 * Reads a varint value
+	 * @param buffer The buffer where to read
+	 * @return The value read, as unsigned
+	 */
+	private static long readVarLong(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0 && shift < 64);
+		return value;
+	}
+
+	/**
+	 * Closes a file, ignoring any error
+	 * @param file The file to close
+	 */
+	private static void closeQuietly(RandomAccessFile file) {
+		try {
+			if (file != null)
+				file.close();
+		} catch (IOException ex) {
+			Log.w(TimeSeriesStore.class.getName(), "Error during file closing", ex);
+		}
+	}
+
+}
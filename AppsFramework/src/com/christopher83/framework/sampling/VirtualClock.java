@@ -0,0 +1,127 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.sampling;
+
+import java.util.ArrayList;
+
+import com.christopher83.framework.sampling.interfaces.IClock;
+
+/**
+ * Class for a clock whose time advances only when requested, running the scheduled tasks
+ * in time order on the calling thread. Used to simulate and to test the timing behaviors
+ * without waiting for the real time
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class VirtualClock implements IClock {
+
+	private long _now;                                             // The current virtual time (in ms)
+	private final ArrayList<Runnable> _tasks = new ArrayList<Runnable>(); // The scheduled tasks
+	private final ArrayList<Long> _times = new ArrayList<Long>();        // The times of the scheduled tasks
+	private long _wakeups;                                         // The number of tasks run
+
+	/**
+	 * Class constructor
+	 * @param start The initial virtual time (in ms)
+	 */
+	public VirtualClock(long start) {
+		_now = start;
+	}
+
+	/**
+	 * Gets the current time
+	 * @return The current virtual time (in ms)
+	 */
+	@Override
+	public synchronized long now() {
+		return _now;
+	}
+
+	/**
+	 * Schedules a task, replacing its previous scheduling
+	 * @param task The task to run
+	 * @param time The virtual time (in ms) when the task must run
+	 */
+	@Override
+	public synchronized void schedule(Runnable task, long time) {
+		cancel(task);
+		_tasks.add(task);
+		_times.add(Long.valueOf(time));
+	}
+
+	/**
+	 * Cancels the scheduling of a task
+	 * @param task The task to cancel
+	 */
+	@Override
+	public synchronized void cancel(Runnable task) {
+		int index = _tasks.indexOf(task);
+		if (index >= 0) {
+			_tasks.remove(index);
+			_times.remove(index);
+		}
+	}
+
+	/**
+	 * Advances the virtual time, running the tasks scheduled meanwhile in time order.
+	 * The tasks scheduled by the running tasks are run too, if due
+	 * @param duration The time (in ms) to advance
+	 */
+	public void advance(long duration) {
+		long end;
+		synchronized (this) {
+			end = _now + duration;
+		}
+
+		while (true) {
+			// Take the earliest due task, moving the time to its scheduling
+			Runnable task;
+			synchronized (this) {
+				int earliest = -1;
+				for (int i = 0; i < _times.size(); i++) {
+					if (_times.get(i).longValue() <= end && (earliest < 0 || _times.get(i).longValue() < _times.get(earliest).longValue()))
+						earliest = i;
+				}
+				if (earliest < 0) {
+					_now = end;
+					return;
+				}
+				_now = Math.max(_now, _times.remove(earliest).longValue());
+				task = _tasks.remove(earliest);
+				_wakeups++;
+			}
+
+			// Run the task outside the lock, so it can schedule again
+			task.run();
+		}
+	}
+
+	/**
+	 * Gets the number of tasks run since the clock creation
+	 * @return The number of wakeups
+	 */
+	public synchronized long getWakeups() {
+		return _wakeups;
+	}
+
+	/**
+	 * Gets the number of scheduled tasks
+	 * @return The number of pending tasks
+	 */
+	public synchronized int getPendingCount() {
+		return _tasks.size();
+	}
+
+}
@@ -0,0 +1,43 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.sampling.interfaces;
+
+/**
+ * Interface for a clock measuring the time and running the scheduled tasks
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public interface IClock {
+
+	/**
+	 * Gets the current time
+	 * @return The current time (in ms)
+	 */
+	public abstract long now();
+
+	/**
+	 * Schedules a task, replacing its previous scheduling
+	 * @param task The task to run
+	 * @param time The time (in ms) when the task must run
+	 */
+	public abstract void schedule(Runnable task, long time);
+
+	/**
+	 * Cancels the scheduling of a task
+	 * @param task The task to cancel
+	 */
+	public abstract void cancel(Runnable task);
+
+}
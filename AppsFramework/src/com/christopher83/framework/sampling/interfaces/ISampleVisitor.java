@@ -0,0 +1,31 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.sampling.interfaces;
+
+/**
+ * Interface for a visitor of the samples of a time series, invoked for each sample in time order
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public interface ISampleVisitor {
+
+	/**
+	 * Manages a sample
+	 * @param time The time of the sample (in ms)
+	 * @param value The value of the sample
+	 */
+	public abstract void onSample(long time, long value);
+
+}
@@ -0,0 +1,226 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.utilities;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Class for decoding and encoding the ASCII values exposed by sysfs attributes,
+ * working directly on byte buffers without intermediate strings and without
+ * throwing exceptions for malformed content
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class AsciiCodec {
+
+	// Value returned when a number can't be decoded
+	public static final long INVALID_NUMBER = Long.MIN_VALUE;
+
+	// Values returned when decoding a boolean
+	public static final int BOOLEAN_FALSE = 0;
+	public static final int BOOLEAN_TRUE = 1;
+	public static final int INVALID_BOOLEAN = -1;
+
+	// Max length of an encoded value (sign and 19 digits of a long)
+	private static final int MAX_ENCODED_LENGTH = 20;
+
+	/**
+	 * Per-thread write buffer, reused by every encoding performed on the same thread
+	 */
+	private static final ThreadLocal<ByteBuffer> _writeBuffer = new ThreadLocal<ByteBuffer>() {
+		/**
+		 * Allocates the write buffer the first time it's requested by a thread
+		 */
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(MAX_ENCODED_LENGTH);
+		}
+	};
+
+	/**
+	 * Decodes a decimal integer value
+	 * @param buffer The buffer positioned on the content to decode, can be null
+	 * @return The decoded value, or {@link #INVALID_NUMBER} if the content is malformed or out of the integer range
+	 */
+	public static long decodeInt(ByteBuffer buffer) {
+		long value = decodeLong(buffer);
+		return (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) ? value : INVALID_NUMBER;
+	}
+
+	/**
+	 * Decodes a decimal long value
+	 * @param buffer The buffer positioned on the content to decode, can be null
+	 * @return The decoded value, or {@link #INVALID_NUMBER} if the content is malformed or out of the long range
+	 */
+	public static long decodeLong(ByteBuffer buffer) {
+		if (buffer == null)
+			return INVALID_NUMBER;
+
+		// Get the bounds of the content, ignoring the surrounding whitespaces and the trailing newline
+		int start = trimStart(buffer);
+		int end = trimEnd(buffer, start);
+		if (start == end)
+			return INVALID_NUMBER;
+
+		// Check for the sign
+		boolean negative = false;
+		byte first = buffer.get(start);
+		if (first == '-' || first == '+') {
+			negative = (first == '-');
+			if (++start == end)
+				return INVALID_NUMBER;
+		}
+
+		// Accumulate the digits as a negative value, so that Long.MIN_VALUE doesn't overflow
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multiplierLimit = limit / 10;
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9 || value < multiplierLimit)
+				return INVALID_NUMBER;
+			value *= 10;
+			if (value < limit + digit)
+				return INVALID_NUMBER;
+			value -= digit;
+		}
+
+		return negative ? value : -value;
+	}
+
+	/**
+	 * Decodes a boolean value expressed as 0 or 1
+	 * @param buffer The buffer positioned on the content to decode, can be null
+	 * @return {@link #BOOLEAN_TRUE}, {@link #BOOLEAN_FALSE}, or {@link #INVALID_BOOLEAN} if the content is malformed
+	 */
+	public static int decodeBoolean(ByteBuffer buffer) {
+		if (buffer == null)
+			return INVALID_BOOLEAN;
+
+		// The content must be a single digit, ignoring the surrounding whitespaces and the trailing newline
+		int start = trimStart(buffer);
+		int end = trimEnd(buffer, start);
+		if (end - start != 1)
+			return INVALID_BOOLEAN;
+
+		switch (buffer.get(start)) {
+			case '0':
+				return BOOLEAN_FALSE;
+			case '1':
+				return BOOLEAN_TRUE;
+			default:
+				return INVALID_BOOLEAN;
+		}
+	}
+
+	/**
+	 * Encodes a decimal long value inside the write buffer of the calling thread.
+	 * The returned buffer is reused by the next encoding performed on the same thread
+	 * @param value The value to encode
+	 * @return The buffer positioned on the encoded value
+	 */
+	public static ByteBuffer encodeLong(long value) {
+		ByteBuffer buffer = _writeBuffer.get();
+		buffer.clear();
+
+		// Write the digits from the end of the buffer, working on the negative value
+		// so that Long.MIN_VALUE doesn't overflow
+		int position = MAX_ENCODED_LENGTH;
+		long remaining = (value < 0) ? value : -value;
+		do {
+			buffer.put(--position, (byte)('0' - (remaining % 10)));
+			remaining /= 10;
+		} while (remaining != 0);
+		if (value < 0)
+			buffer.put(--position, (byte)'-');
+
+		// Position the buffer on the encoded digits
+		buffer.position(position);
+		return buffer;
+	}
+
+	/**
+	 * Encodes a boolean value as 0 or 1 inside the write buffer of the calling thread.
+	 * The returned buffer is reused by the next encoding performed on the same thread
+	 * @param value The value to encode
+	 * @return The buffer positioned on the encoded value
+	 */
+	public static ByteBuffer encodeBoolean(boolean value) {
+		ByteBuffer buffer = _writeBuffer.get();
+		buffer.clear();
+		buffer.put(MAX_ENCODED_LENGTH - 1, (byte)(value ? '1' : '0'));
+		buffer.position(MAX_ENCODED_LENGTH - 1);
+		return buffer;
+	}
+
+	/**
+	 * Checks if two raw contents are equal, ignoring the surrounding whitespaces and line terminators
+	 * @param first The buffer positioned on the first content, can be null
+	 * @param second The buffer positioned on the second content, can be null
+	 * @return True if the trimmed contents are equal
+	 */
+	public static boolean contentEquals(ByteBuffer first, ByteBuffer second) {
+		if (first == null || second == null)
+			return false;
+
+		// Compare the lengths of the trimmed contents, then each byte
+		int firstStart = trimStart(first);
+		int firstEnd = trimEnd(first, firstStart);
+		int secondStart = trimStart(second);
+		int secondEnd = trimEnd(second, secondStart);
+		if (firstEnd - firstStart != secondEnd - secondStart)
+			return false;
+		for (int i = 0; i < firstEnd - firstStart; i++) {
+			if (first.get(firstStart + i) != second.get(secondStart + i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the specified byte is a whitespace or a line terminator
+	 * @param b The byte to check
+	 * @return True if the byte must be trimmed
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == 0;
+	}
+
+	/**
+	 * Gets the index of the first byte of the content that is not a whitespace
+	 * @param buffer The buffer positioned on the content
+	 * @return The start index of the trimmed content
+	 */
+	private static int trimStart(ByteBuffer buffer) {
+		int start = buffer.position();
+		while (start < buffer.limit() && isWhitespace(buffer.get(start)))
+			start++;
+		return start;
+	}
+
+	/**
+	 * Gets the index following the last byte of the content that is not a whitespace
+	 * @param buffer The buffer positioned on the content
+	 * @param start The start index of the trimmed content
+	 * @return The end index (exclusive) of the trimmed content
+	 */
+	private static int trimEnd(ByteBuffer buffer, int start) {
+		int end = buffer.limit();
+		while (end > start && isWhitespace(buffer.get(end - 1)))
+			end--;
+		return end;
+	}
+
+}
@@ -0,0 +1,203 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.utilities;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.util.Log;
+
+/**
+ * Class for a pool of file descriptors kept open to re-read sysfs attributes.
+ * Each attribute is re-read with a positional read at offset 0, that makes
+ * the kernel regenerate the content without re-opening the file
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class FileDescriptorPool {
+
+	// Default max number of descriptors kept open
+	public static final int DEFAULT_CAPACITY = 32;
+
+	// Max number of attempts for a read, the second one is done on a freshly opened descriptor
+	private static final int MAX_READ_ATTEMPTS = 2;
+
+	// The pool shared by the whole process
+	private static final FileDescriptorPool _default = new FileDescriptorPool(DEFAULT_CAPACITY);
+
+	private final int _capacity;                          // Max number of descriptors kept open
+	private final LinkedHashMap<String, FileChannel> _channels; // The open descriptors, in access order
+
+	/**
+	 * Class constructor
+	 * @param capacity The max number of descriptors kept open
+	 */
+	public FileDescriptorPool(int capacity) {
+		_capacity = capacity;
+		_channels = new LinkedHashMap<String, FileChannel>(16, 0.75f, true) {
+			// Serial version ID of the map type
+			private static final long serialVersionUID = 4711935016405293816L;
+
+			/**
+			 * Evicts and closes the least recently used descriptor when the capacity is exceeded
+			 */
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, FileChannel> eldest) {
+				if (size() <= _capacity)
+					return false;
+				closeQuietly(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Gets the pool shared by the whole process
+	 * @return The default pool
+	 */
+	public static FileDescriptorPool getDefault() {
+		return _default;
+	}
+
+	/**
+	 * Checks if a descriptor for the specified path is currently open
+	 * @param path The file path
+	 * @return True if the descriptor is open
+	 */
+	public synchronized boolean isOpen(String path) {
+		return _channels.containsKey(path);
+	}
+
+	/**
+	 * Reads the content of the file from offset 0 inside the specified buffer
+	 * @param path The file path
+	 * @param buffer The buffer where to store the content, starting from its current position
+	 * @return The number of bytes read
+	 * @throws IOException If the file can't be opened or read
+	 */
+	public int read(String path, ByteBuffer buffer) throws IOException {
+		int start = buffer.position();
+		IOException error = null;
+
+		for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+			FileChannel channel = null;
+			try {
+				// Get the open descriptor, or open it if not present
+				channel = acquire(path);
+
+				// Re-read the whole content with positional reads starting from offset 0
+				buffer.position(start);
+				while (buffer.hasRemaining() && channel.read(buffer, buffer.position() - start) > 0);
+				return buffer.position() - start;
+			} catch (IOException ex) {
+				// The descriptor is stale (evicted, or the attribute has been removed),
+				// so drop it and retry with a freshly opened one
+				invalidate(path, channel);
+				error = ex;
+			}
+		}
+
+		// If the whole module directory has disappeared, then drop the descriptors of all its attributes,
+		// otherwise only this attribute is unreadable (missing or not permitted) and the others are still valid
+		File directory = new File(path).getParentFile();
+		if (directory != null && !directory.isDirectory())
+			invalidateDirectory(directory.getPath());
+		throw error;
+	}
+
+	/**
+	 * Closes and removes the descriptor of the specified path
+	 * @param path The file path
+	 */
+	public synchronized void invalidate(String path) {
+		closeQuietly(_channels.remove(path));
+	}
+
+	/**
+	 * Closes and removes all the descriptors of the files contained inside the specified directory,
+	 * used when the module exposing the attributes disappears
+	 * @param directory The directory path
+	 */
+	public synchronized void invalidateDirectory(String directory) {
+		if (directory == null)
+			return;
+
+		// For each open descriptor, close it if the file is contained inside the directory
+		String prefix = directory.endsWith(File.separator) ? directory : directory + File.separator;
+		Iterator<Map.Entry<String, FileChannel>> iterator = _channels.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, FileChannel> entry = iterator.next();
+			if (entry.getKey().startsWith(prefix)) {
+				closeQuietly(entry.getValue());
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Closes and removes all the open descriptors
+	 */
+	public synchronized void invalidateAll() {
+		for (FileChannel channel:_channels.values())
+			closeQuietly(channel);
+		_channels.clear();
+	}
+
+	/**
+	 * Gets the open descriptor of the specified path, opening it if not present
+	 * @param path The file path
+	 * @return The open descriptor
+	 * @throws IOException If the file can't be opened
+	 */
+	private synchronized FileChannel acquire(String path) throws IOException {
+		FileChannel channel = _channels.get(path);
+		if (channel == null || !channel.isOpen()) {
+			channel = new FileInputStream(path).getChannel();
+			_channels.put(path, channel);
+		}
+		return channel;
+	}
+
+	/**
+	 * Closes and removes the descriptor of the specified path, only if it's still the specified one
+	 * @param path The file path
+	 * @param channel The descriptor to remove
+	 */
+	private synchronized void invalidate(String path, FileChannel channel) {
+		if (_channels.get(path) == channel)
+			_channels.remove(path);
+		closeQuietly(channel);
+	}
+
+	/**
+	 * Closes the specified descriptor, ignoring any error
+	 * @param channel The descriptor to close
+	 */
+	private static void closeQuietly(FileChannel channel) {
+		try {
+			if (channel != null)
+				channel.close();
+		} catch (IOException ex) {
+			Log.w(FileDescriptorPool.class.getName(), "Error during file descriptor closing", ex);
+		}
+	}
+
+}
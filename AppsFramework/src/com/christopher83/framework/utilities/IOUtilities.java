@@ -15,12 +15,13 @@
  */
 package com.christopher83.framework.utilities;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 
 import android.util.Log;
 
@@ -30,12 +31,29 @@ import android.util.Log;
  */
 public class IOUtilities {
 
+	// Size of the read buffer, a sysfs attribute can't be larger than a memory page
+	public static final int SYSFS_PAGE_SIZE = 4096;
+
+	/**
+	 * Per-thread read buffer, reused by every read performed on the same thread
+	 */
+	private static final ThreadLocal<ByteBuffer> _readBuffer = new ThreadLocal<ByteBuffer>() {
+		/**
+		 * Allocates the read buffer the first time it's requested by a thread
+		 */
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(SYSFS_PAGE_SIZE);
+		}
+	};
+
 	/**
 	 * Checks if the specified file path exists
 	 * @param path The file path to check
 	 * @return True if the path exists
 	 */
 	public static boolean fileExists(String path) {
+		// Always ask the filesystem, an open descriptor inside the pool survives the removal of the module
 		return new File(path).exists();
 	}
 
@@ -55,28 +73,95 @@ public class IOUtilities {
 	 * @return The content of the file, if found, otherwise a string empty
 	 */
 	public static String fileRead(String path) {
-		// Content to return initialization
-		StringBuilder content = new StringBuilder();
+		// Read the raw content of the file and convert it to string
+		return bytesToString(fileReadBytes(path));
+	}
 
-		try {
-			// Create a new buffered reader to read the file content
-			BufferedReader reader = new BufferedReader(new FileReader(new File(path)));
+	/**
+	 * Converts the raw content of a file to string, skipping the line terminators.
+	 * The content is decoded with the default charset, as done by {@link java.io.FileReader},
+	 * the ASCII content of the sysfs attributes is converted without any decoder
+	 * @param buffer The buffer positioned on the content, can be null
+	 * @return The content as string, or an empty string if the buffer is null
+	 */
+	public static String bytesToString(ByteBuffer buffer) {
+		// If the file can't be read, then return an empty string
+		if (buffer == null)
+			return "";
+
+		// Append each byte of the content, skipping the line terminators
+		StringBuilder content = new StringBuilder(buffer.remaining());
+		for (int i = buffer.position(); i < buffer.limit(); i++) {
+			byte b = buffer.get(i);
+
+			// If a non ASCII byte is found, then decode the whole content with the default charset
+			if (b < 0)
+				return decodeString(buffer);
+
+			if (b != '\n' && b != '\r')
+				content.append((char)b);
+		}
 
-			// Read each file line till the end and append it to the content StringBuilder
-			String line = null;
-			while ((line = reader.readLine()) != null)
-				content.append(line);
+		// Return the content of the file
+		return content.toString();
+	}
 
-			// Close the file
-			reader.close();
+	/**
+	 * Decodes the raw content of a file with the default charset, skipping the line terminators
+	 * (their byte values never occur inside a multi-byte sequence)
+	 * @param buffer The buffer positioned on the content
+	 * @return The decoded content
+	 */
+	private static String decodeString(ByteBuffer buffer) {
+		// Copy the bytes of the content, skipping the line terminators
+		byte[] bytes = new byte[buffer.remaining()];
+		int length = 0;
+		for (int i = buffer.position(); i < buffer.limit(); i++) {
+			byte b = buffer.get(i);
+			if (b != '\n' && b != '\r')
+				bytes[length++] = b;
+		}
+
+		// Decode the copied bytes
+		return new String(bytes, 0, length, Charset.defaultCharset());
+	}
+
+	/**
+	 * Gets the cleared read buffer of the calling thread, the same one returned by
+	 * {@link #fileReadBytes(String)}, so it's reused by the next read performed on the same thread
+	 * @return The read buffer of the calling thread
+	 */
+	public static ByteBuffer getReadBuffer() {
+		ByteBuffer buffer = _readBuffer.get();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Reads the raw content of a file inside the read buffer of the calling thread.
+	 * The returned buffer is reused by the next read performed on the same thread,
+	 * so its content must be consumed before reading another file
+	 * @param path The file path
+	 * @return The buffer positioned on the content of the file, or null if the file can't be read
+	 */
+	public static ByteBuffer fileReadBytes(String path) {
+		// Get the cleared read buffer of the calling thread
+		ByteBuffer buffer = getReadBuffer();
+
+		try {
+			// Read the file content through the descriptor kept open inside the pool
+			FileDescriptorPool.getDefault().read(path, buffer);
+
+			// Prepare the buffer to be read from the beginning of the content
+			buffer.flip();
+			return buffer;
 		} catch (FileNotFoundException ex) {
 			Log.e(IOUtilities.class.getName(), String.format("The file %s not exists", path));
+			return null;
 		} catch (IOException ex) {
 			Log.e(IOUtilities.class.getName(), String.format("Error during file %s reading", path));
+			return null;
 		}
-
-		// Return the content of the file
-		return content.toString();
 	}
 
 	/**
@@ -105,10 +190,48 @@ public class IOUtilities {
 			return true;
 		} catch (FileNotFoundException e) {
 			Log.e(IOUtilities.class.getName(), String.format("The file %s not exists", path));
+			FileDescriptorPool.getDefault().invalidate(path);
+			return false;
+		} catch (IOException e) {
+			Log.e(IOUtilities.class.getName(), String.format("Error during file %s writing", path));
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the specified raw bytes to the file
+	 * @param path File path
+	 * @param value The buffer positioned on the bytes to write
+	 * @return The result of the operation (true = successful write, false = write failed)
+	 */
+	public static boolean fileWrite(String path, ByteBuffer value) {
+		FileOutputStream stream = null;
+		try {
+			// Create the output stream to perform file writes
+			stream = new FileOutputStream(path);
+
+			// Write the passed bytes through the related channel
+			FileChannel channel = stream.getChannel();
+			while (value.hasRemaining())
+				channel.write(value);
+
+			// Successful write
+			return true;
+		} catch (FileNotFoundException e) {
+			Log.e(IOUtilities.class.getName(), String.format("The file %s not exists", path));
+			FileDescriptorPool.getDefault().invalidate(path);
 			return false;
 		} catch (IOException e) {
 			Log.e(IOUtilities.class.getName(), String.format("Error during file %s writing", path));
 			return false;
+		} finally {
+			// Close the file
+			try {
+				if (stream != null)
+					stream.close();
+			} catch (IOException e) {
+				Log.e(IOUtilities.class.getName(), String.format("Error during file %s closing", path));
+			}
 		}
 	}
 
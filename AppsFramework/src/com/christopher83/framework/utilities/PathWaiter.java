@@ -0,0 +1,116 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.utilities;
+
+import java.io.File;
+
+import android.os.FileObserver;
+import android.os.SystemClock;
+
+/**
+ * Class for waiting the appearance of a path, like the sysfs directory of a module loaded late.
+ * The path is checked with an exponential backoff, bounded by a max interval and by a total timeout,
+ * while the nearest existing parent directory is watched so a creation wakes the wait immediately.
+ * The watch alone is not enough, since sysfs doesn't report the creation of all its nodes
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PathWaiter {
+
+	// Events of the parent directory waking the wait
+	private static final int WATCHED_EVENTS = FileObserver.CREATE | FileObserver.MOVED_TO;
+
+	private final File _path;                   // The path to wait for
+	private final Object _lock = new Object();  // The lock signaled by the watch
+	private boolean _signaled;                  // Flag indicating if the watch reported a creation since the last check
+	private int _checks;                        // The number of checks of the path
+
+	/**
+	 * Class constructor
+	 * @param path The path to wait for
+	 */
+	public PathWaiter(File path) {
+		_path = path;
+	}
+
+	/**
+	 * Waits for the path
+	 * @param initialInterval The interval (in ms) before the second check, doubled after each check
+	 * @param maxInterval The max interval (in ms) between two checks
+	 * @param timeout The max total wait (in ms)
+	 * @return True if the path exists, false if the timeout elapsed before its appearance
+	 * @throws InterruptedException If the waiting thread has been interrupted
+	 */
+	public boolean await(long initialInterval, long maxInterval, long timeout) throws InterruptedException {
+		_checks = 1;
+		if (_path.exists())
+			return true;
+		if (timeout <= 0)
+			return false;
+
+		// Watch the nearest existing parent directory
+		FileObserver observer = null;
+		File parent = _path.getAbsoluteFile().getParentFile();
+		while (parent != null && !parent.isDirectory())
+			parent = parent.getParentFile();
+		if (parent != null) {
+			observer = new FileObserver(parent.getPath(), WATCHED_EVENTS) {
+				/**
+				 * Wakes the wait on a creation inside the directory
+				 */
+				@Override
+				public void onEvent(int event, String path) {
+					synchronized (_lock) {
+						_signaled = true;
+						_lock.notifyAll();
+					}
+				}
+			};
+			observer.startWatching();
+		}
+
+		try {
+			// Check the path with an exponential backoff, or as soon as the watch reports a creation
+			long deadline = SystemClock.elapsedRealtime() + timeout;
+			long interval = Math.max(1, initialInterval);
+			while (true) {
+				long remaining = deadline - SystemClock.elapsedRealtime();
+				if (remaining <= 0)
+					return false;
+				synchronized (_lock) {
+					if (!_signaled)
+						_lock.wait(Math.min(interval, remaining));
+					_signaled = false;
+				}
+				_checks++;
+				if (_path.exists())
+					return true;
+				interval = Math.min(interval * 2, Math.max(1, maxInterval));
+			}
+		} finally {
+			if (observer != null)
+				observer.stopWatching();
+		}
+	}
+
+	/**
+	 * Gets the number of checks made by the latest wait
+	 * @return The number of checks of the path
+	 */
+	public int getChecks() {
+		return _checks;
+	}
+
+}
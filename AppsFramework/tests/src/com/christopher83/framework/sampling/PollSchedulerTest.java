@@ -0,0 +1,212 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.framework.sampling;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import com.christopher83.framework.properties.IntegerFileProperty;
+import com.christopher83.framework.sampling.interfaces.IPollTarget;
+
+import junit.framework.TestCase;
+
+/**
+ * Class for the tests of the poll scheduler, driven by a virtual clock
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PollSchedulerTest extends TestCase {
+
+	// Intervals (in ms) of the polled targets
+	private static final long MIN_INTERVAL = 100;
+	private static final long MAX_INTERVAL = 800;
+
+	/**
+	 * Class for a polled target reporting the change set by the test
+	 */
+	private static class CountingTarget implements IPollTarget {
+		int polls;       // The number of polls
+		long lastTime;   // The time (in ms) of the last poll
+		boolean changed; // The result of the next polls
+
+		/**
+		 * Counts the poll
+		 */
+		@Override
+		public boolean poll(long time) {
+			polls++;
+			lastTime = time;
+			return changed;
+		}
+	}
+
+	private VirtualClock _clock;      // The clock driving the scheduler
+	private PollScheduler _scheduler; // The tested scheduler
+
+	/**
+	 * Creates the scheduler on a virtual clock
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_clock = new VirtualClock(0);
+		_scheduler = new PollScheduler(_clock);
+	}
+
+	/**
+	 * Checks that the interval of an unchanged target doubles up to its maximum
+	 */
+	public void testBackoffGrowth() {
+		CountingTarget target = new CountingTarget();
+		_scheduler.add(target, MIN_INTERVAL, MAX_INTERVAL);
+
+		// The target is polled as soon as added
+		_clock.advance(0);
+		assertEquals(1, target.polls);
+		assertEquals(200, _scheduler.getInterval(target));
+
+		// The next poll doesn't happen before the interval
+		_clock.advance(199);
+		assertEquals(1, target.polls);
+		_clock.advance(1);
+		assertEquals(2, target.polls);
+		assertEquals(200, target.lastTime);
+		assertEquals(400, _scheduler.getInterval(target));
+
+		// The interval keeps doubling, then stays at its maximum
+		_clock.advance(400);
+		assertEquals(3, target.polls);
+		assertEquals(MAX_INTERVAL, _scheduler.getInterval(target));
+		_clock.advance(MAX_INTERVAL);
+		assertEquals(4, target.polls);
+		assertEquals(MAX_INTERVAL, _scheduler.getInterval(target));
+		_clock.advance(MAX_INTERVAL * 10);
+		assertEquals(14, target.polls);
+		assertEquals(MAX_INTERVAL, _scheduler.getInterval(target));
+	}
+
+	/**
+	 * Checks that a change brings the interval back to its minimum, then the backoff starts again
+	 */
+	public void testResetOnChange() {
+		CountingTarget target = new CountingTarget();
+		_scheduler.add(target, MIN_INTERVAL, MAX_INTERVAL);
+
+		// Back off to the max interval
+		_clock.advance(1400);
+		assertEquals(4, target.polls);
+		assertEquals(MAX_INTERVAL, _scheduler.getInterval(target));
+
+		// A change resets the interval
+		target.changed = true;
+		_clock.advance(MAX_INTERVAL);
+		assertEquals(5, target.polls);
+		assertEquals(MIN_INTERVAL, _scheduler.getInterval(target));
+
+		// While changing, the target is polled at the min interval
+		_clock.advance(MIN_INTERVAL * 3);
+		assertEquals(8, target.polls);
+		assertEquals(MIN_INTERVAL, _scheduler.getInterval(target));
+
+		// Unchanged again, the backoff starts from the min interval
+		target.changed = false;
+		_clock.advance(MIN_INTERVAL);
+		assertEquals(9, target.polls);
+		assertEquals(200, _scheduler.getInterval(target));
+	}
+
+	/**
+	 * Checks that no poll and no wakeup happen while paused, and that the resume polls at once
+	 */
+	public void testPauseResume() {
+		CountingTarget target = new CountingTarget();
+		_scheduler.add(target, MIN_INTERVAL, MAX_INTERVAL);
+		_clock.advance(0);
+		assertEquals(1, target.polls);
+
+		// Paused, nothing is scheduled and nothing is polled
+		_scheduler.pause();
+		assertTrue(_scheduler.isPaused());
+		assertEquals(0, _clock.getPendingCount());
+		long wakeups = _scheduler.getWakeups();
+		_clock.advance(60000);
+		assertEquals(1, target.polls);
+		assertEquals(wakeups, _scheduler.getWakeups());
+
+		// Resumed, the target is polled at once, keeping its backoff
+		_scheduler.resume();
+		assertFalse(_scheduler.isPaused());
+		_clock.advance(0);
+		assertEquals(2, target.polls);
+		assertEquals(60000, target.lastTime);
+		assertEquals(400, _scheduler.getInterval(target));
+	}
+
+	/**
+	 * Checks that the targets due soon are polled together with the due ones
+	 */
+	public void testBatching() {
+		CountingTarget first = new CountingTarget();
+		CountingTarget second = new CountingTarget();
+		_scheduler.add(first, MIN_INTERVAL, MIN_INTERVAL);
+		_clock.advance(30);
+		_scheduler.add(second, MIN_INTERVAL, MIN_INTERVAL);
+
+		// The second target, due 30 ms after the first one, joins its wakeups
+		_clock.advance(170);
+		assertEquals(3, first.polls);
+		assertEquals(3, second.polls);
+		assertEquals(200, second.lastTime);
+		assertEquals(4, _scheduler.getWakeups());
+	}
+
+	/**
+	 * Checks that a property removed from the scheduler stops tracking its content,
+	 * so its next poll reports a change again
+	 * @throws IOException If the property file can't be created
+	 */
+	public void testRemoveStopsPropertyTracking() throws IOException {
+		File file = File.createTempFile("property", null);
+		try {
+			FileWriter writer = new FileWriter(file);
+			writer.write("5\n");
+			writer.close();
+			IntegerFileProperty property = new IntegerFileProperty("property", file.getPath());
+
+			// Polled by the scheduler, the content is tracked
+			IPollTarget target = _scheduler.add(property, MIN_INTERVAL, MAX_INTERVAL);
+			_clock.advance(0);
+			assertEquals(1, _scheduler.getPolls(target));
+			assertFalse(property.poll());
+
+			// Removed from the scheduler, the tracked content is dropped
+			_scheduler.remove(target);
+			assertEquals(-1, _scheduler.getPolls(target));
+			assertTrue(property.poll());
+
+			// Cleared from the scheduler, the same happens
+			_scheduler.add(property, MIN_INTERVAL, MAX_INTERVAL);
+			_clock.advance(0);
+			assertFalse(property.poll());
+			_scheduler.clear();
+			assertEquals(0, _clock.getPendingCount());
+			assertTrue(property.poll());
+		} finally {
+			file.delete();
+		}
+	}
+
+}
@@ -81,9 +81,12 @@ public class PkfActivity extends FragmentActivity implements ActionBar.TabListen
 		// Set the content of the activity view
 		setContentView(R.layout.activity_pkf);
 
-		// If the kernel that doesn't support the Phantom Key Presses Filter module, then show an alert dialog
+		// If the kernel that doesn't support the Phantom Key Presses Filter module, then show an alert dialog,
+		// else make sure the ignored key presses counters are sampled
 		if (!isPkfSupported(this))
 			showPkfNotSupportedAlert();
+		else
+			PkfSamplerService.start(this, 0);
 
 		// Set up the action bar
 		final ActionBar actionBar = getActionBar();
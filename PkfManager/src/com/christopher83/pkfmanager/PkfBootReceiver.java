@@ -15,15 +15,29 @@
  */
 package com.christopher83.pkfmanager;
 
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import com.christopher83.framework.properties.PropertyHashTable;
+import com.christopher83.framework.utilities.PathWaiter;
 
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 /**
- * Class for the receiver of the boot completed intent
+ * Class for the receiver of the boot completed intent.
+ * The preferences are restored off the main thread: the broadcast is kept pending while a worker waits for
+ * the restore made on the I/O thread, then released at the latest after a deadline, so the receiver never
+ * delays the other boot completed receivers long enough to be killed.
+ * When the module is loaded late, its sysfs directory is waited with a bounded exponential backoff:
+ * within the deadline by the receiver, then by the sampling service till the module timeout
  * @author Cristoforo Cataldo (Christopher83)
  */
 public class PkfBootReceiver extends BroadcastReceiver {
@@ -31,6 +45,19 @@ public class PkfBootReceiver extends BroadcastReceiver {
 	// Constant for the boot completed action
 	private static final String ACTION_BOOT = "android.intent.action.BOOT_COMPLETED";
 
+	// Max time (in ms) the broadcast is kept pending, below the 10 s timeout of the receivers
+	private static final long RESTORE_DEADLINE = 8000;
+
+	// Max time (in ms) after the broadcast the module is waited for, before giving up
+	private static final long MODULE_TIMEOUT = 120000;
+
+	// Initial and max intervals (in ms) between two checks of the module presence
+	private static final long MODULE_INITIAL_INTERVAL = 50;
+	private static final long MODULE_MAX_INTERVAL = 5000;
+
+	// Name of the worker thread waiting for the restore
+	private static final String THREAD_NAME = "PkfBootRestore";
+
 	/**
 	 * Manages the received intent
 	 */
@@ -39,25 +66,110 @@ public class PkfBootReceiver extends BroadcastReceiver {
 		if (!intent.getAction().equals(ACTION_BOOT))
 			return;
 
-		// If the Phantom Key Presses Filter module is supported
-		if (PkfActivity.isPkfSupported(context)) {
-			// Log the restoring process start
-			Log.d(PkfBootReceiver.class.getName(), "Phantom Key Presses Filter - Restoring preferences...");
+		// Keep the broadcast pending and restore the preferences on a worker thread
+		final long receiveTime = SystemClock.elapsedRealtime();
+		final PendingResult pendingResult = goAsync();
+		final Context appContext = context.getApplicationContext();
+		Thread worker = new Thread(new Runnable() {
+			/**
+			 * Restores the preferences, then releases the broadcast
+			 */
+			@Override
+			public void run() {
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				try {
+					restore(appContext, receiveTime);
+				} finally {
+					pendingResult.finish();
+				}
+			}
+		}, THREAD_NAME);
+		worker.start();
+	}
+
+	/**
+	 * Restores the preferences of all the filter properties, waiting for the restore till the deadline
+	 * @param context The application context
+	 * @param receiveTime The time (in ms since boot) when the broadcast has been received
+	 */
+	private static void restore(Context context, long receiveTime) {
+		// Wait for the Phantom Key Presses Filter module till the deadline, if not found then let the sampling service wait for it
+		File module = new File(context.getString(R.string.path_pkf_module));
+		PathWaiter waiter = new PathWaiter(module);
+		try {
+			if (!waiter.await(MODULE_INITIAL_INTERVAL, MODULE_MAX_INTERVAL, RESTORE_DEADLINE - (SystemClock.elapsedRealtime() - receiveTime))) {
+				Log.w(PkfBootReceiver.class.getName(), String.format("Phantom Key Presses Filter - Module not found yet, waiting for it up to %d ms after the broadcast...",
+					MODULE_TIMEOUT));
+				PkfSamplerService.restoreWhenReady(context, receiveTime + MODULE_TIMEOUT);
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		// Log the restoring process start
+		long startTime = SystemClock.elapsedRealtime();
+		Log.d(PkfBootReceiver.class.getName(), String.format("Phantom Key Presses Filter - Restoring preferences... (%d ms after boot, %d ms after the broadcast, %d module checks)",
+			startTime, startTime - receiveTime, waiter.getChecks()));
 
-			// Restore the home key presses filtering parameters by setting the values of the related shared preferences
-			PropertyHashTable homeKeyProperties = PkfCommon.getPkfHomeKeyProperties(context);
-			homeKeyProperties.restore();
+		// Restore the home key and touch keys presses filtering parameters together, from the single registry, on the I/O thread
+		PropertyHashTable properties = PkfCommon.getPkfProperties(context);
+		Future<Void> restore = properties.restoreAsync(null);
+		try {
+			restore.get(RESTORE_DEADLINE - (startTime - receiveTime), TimeUnit.MILLISECONDS);
 
-			// Restore the touch keys presses filtering parameters by setting the values of the related shared preferences
-			PropertyHashTable touchKeysProperties = PkfCommon.getPkfTouchKeysProperties(context);
-			touchKeysProperties.restore();
+			// Log the restoring process end, with its timing, the number of values already set inside the kernel
+			// and the number of values outside the allowed ranges
+			long endTime = SystemClock.elapsedRealtime();
+			Log.d(PkfBootReceiver.class.getName(), String.format("Phantom Key Presses Filter - Restoring preferences completed in %d ms, %d ms after boot! (%d unchanged values skipped, %d values clamped, %d values rejected)",
+				endTime - startTime, endTime, properties.getSkippedWrites(), properties.getClampedWrites(), properties.getRejectedWrites()));
+		} catch (TimeoutException e) {
+			// Release the broadcast, the restore goes on while the process is alive
+			Log.w(PkfBootReceiver.class.getName(), String.format("Phantom Key Presses Filter - Restoring preferences not completed within %d ms, continuing in background",
+				RESTORE_DEADLINE));
+		} catch (ExecutionException e) {
+			Log.e(PkfBootReceiver.class.getName(), "Phantom Key Presses Filter - Error during preferences restore", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// Start sampling the ignored key presses counters whatever the outcome of the restore, while the module is present
+			if (module.exists())
+				PkfSamplerService.start(context, 0);
+		}
+	}
 
-			// Log the restoring process end
-			Log.d(PkfBootReceiver.class.getName(), "Phantom Key Presses Filter - Restoring preferences completed!");
-		} else {
-			// Log that the module is not currently supported
-			Log.e(PkfBootReceiver.class.getName(), "Phantom Key Presses Filter - Module not found!");
+	/**
+	 * Waits for the module till a deadline, then restores the preferences of all the filter properties.
+	 * Blocks the calling thread, that must not be the main thread
+	 * @param context The context
+	 * @param deadline The time (in ms since boot) when to stop waiting for the module
+	 * @return True if the module has been found and the preferences restored
+	 */
+	static boolean waitAndRestore(Context context, long deadline) {
+		// Wait for the Phantom Key Presses Filter module
+		PathWaiter waiter = new PathWaiter(new File(context.getString(R.string.path_pkf_module)));
+		try {
+			if (!waiter.await(MODULE_INITIAL_INTERVAL, MODULE_MAX_INTERVAL, deadline - SystemClock.elapsedRealtime())) {
+				// Log that the module is not currently supported
+				Log.e(PkfBootReceiver.class.getName(), "Phantom Key Presses Filter - Module not found!");
+				return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
 		}
+
+		// Restore the home key and touch keys presses filtering parameters together, from the single registry
+		long startTime = SystemClock.elapsedRealtime();
+		PropertyHashTable properties = PkfCommon.getPkfProperties(context);
+		properties.restore();
+
+		// Log the restoring process end, with its timing and the number of values already set inside the kernel
+		long endTime = SystemClock.elapsedRealtime();
+		Log.d(PkfBootReceiver.class.getName(), String.format("Phantom Key Presses Filter - Late module found after %d checks, restoring preferences completed in %d ms, %d ms after boot! (%d unchanged values skipped, %d values clamped, %d values rejected)",
+			waiter.getChecks(), endTime - startTime, endTime, properties.getSkippedWrites(), properties.getClampedWrites(), properties.getRejectedWrites()));
+		return true;
 	}
 
 }
\ No newline at end of file
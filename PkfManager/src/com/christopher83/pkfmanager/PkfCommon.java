@@ -15,10 +15,8 @@
  */
 package com.christopher83.pkfmanager;
 
-import com.christopher83.pkfmanager.R;
-import com.christopher83.framework.properties.BooleanFileProperty;
-import com.christopher83.framework.properties.IntegerFileProperty;
 import com.christopher83.framework.properties.PropertyHashTable;
+import com.christopher83.framework.properties.PropertyRegistry;
 
 import android.content.Context;
 
@@ -28,59 +26,61 @@ import android.content.Context;
  */
 public class PkfCommon {
 
+	// Names of the property groups, derived from the names of the parameters
+	public static final String GROUP_HOMEKEY = "homekey";
+	public static final String GROUP_TOUCHKEYS = "touchkeys";
+	public static final String GROUP_ABOUT = "pkf";
+
+	// The registry of all the properties, shared by the whole process
+	private static volatile PropertyRegistry _registry;
+
+	/**
+	 * Gets the registry of all the properties, initializing it on the first request.
+	 * The registry lives as long as the process, so the activity, the fragments and the
+	 * boot receiver share the same property instances with their caches and statistics.
+	 * The properties are created from the generated descriptors, without any resource lookup
+	 * @param context The context
+	 * @return The properties registry
+	 */
+	public static PropertyRegistry getPkfProperties(final Context context) {
+		PropertyRegistry registry = _registry;
+		if (registry == null) {
+			synchronized (PkfCommon.class) {
+				registry = _registry;
+				if (registry == null) {
+					registry = new PropertyRegistry(context.getApplicationContext(), PkfDescriptors.ALL);
+					_registry = registry;
+				}
+			}
+		}
+		return registry;
+	}
+
 	/**
 	 * Gets the properties related to the home key presses filtering
-	 * @param context The application context
-	 * @return The properties hash table related to the home key presses filtering
+	 * @param context The context
+	 * @return The shared properties hash table related to the home key presses filtering
 	 */
 	public static PropertyHashTable getPkfHomeKeyProperties(final Context context) {
-		// Initialize the properties hash table
-		PropertyHashTable properties = new PropertyHashTable(context);
-
-		// Add the file properties for the filtering parameters of the home key presses
-		properties.put(new BooleanFileProperty(context.getString(R.string.id_homekey_filter_status), context.getString(R.string.path_homekey_filter_status)));
-		properties.put(new IntegerFileProperty(context.getString(R.string.id_homekey_allowed_irqs), context.getString(R.string.path_homekey_allowed_irqs)));
-		properties.put(new IntegerFileProperty(context.getString(R.string.id_homekey_report_wait), context.getString(R.string.path_homekey_report_wait)));
-		properties.put(new IntegerFileProperty(context.getString(R.string.id_homekey_ignored_kp), context.getString(R.string.path_homekey_ignored_kp), true));
-
-		// Return the properties hash table related to the home key presses filtering
-		return properties;
+		return getPkfProperties(context).getGroup(GROUP_HOMEKEY);
 	}
 
 	/**
 	 * Gets the properties related to the touch key presses filtering
-	 * @param context The application context
-	 * @return The properties hash table related to the touch key presses filtering
+	 * @param context The context
+	 * @return The shared properties hash table related to the touch key presses filtering
 	 */
 	public static PropertyHashTable getPkfTouchKeysProperties(final Context context) {
-		// Initialize the properties hash table
-		PropertyHashTable properties = new PropertyHashTable(context);
-
-		// Add the file properties for the filtering parameters of the touch key presses
-		properties.put(new BooleanFileProperty(context.getString(R.string.id_touchkeys_filter_status), context.getString(R.string.path_touchkeys_filter_status)));
-		properties.put(new IntegerFileProperty(context.getString(R.string.id_touchkeys_interrupt_checks), context.getString(R.string.path_touchkeys_interrupt_checks)));
-		properties.put(new IntegerFileProperty(context.getString(R.string.id_touchkeys_firsterr_wait), context.getString(R.string.path_touchkeys_firsterr_wait)));
-		properties.put(new IntegerFileProperty(context.getString(R.string.id_touchkeys_lasterr_wait), context.getString(R.string.path_touchkeys_lasterr_wait)));
-		properties.put(new IntegerFileProperty(context.getString(R.string.id_touchkeys_ignored_kp), context.getString(R.string.path_touchkeys_ignored_kp), true));
-
-		// Return the properties hash table related to the touch key presses filtering
-		return properties;
+		return getPkfProperties(context).getGroup(GROUP_TOUCHKEYS);
 	}
 
 	/**
 	 * Gets the properties related to the about tab
-	 * @param context The application context
-	 * @return The properties hash table related to the about tab
+	 * @param context The context
+	 * @return The shared properties hash table related to the about tab
 	 */
 	public static PropertyHashTable getPkfAboutProperties(final Context context) {
-		// Initialize the properties hash table
-		PropertyHashTable properties = new PropertyHashTable(context);
-
-		// Add the file properties for the about tab
-		properties.put(new IntegerFileProperty(context.getString(R.string.id_pkf_module_version), context.getString(R.string.path_pkf_module_version), true));
-
-		// Return the properties hash table related to the home key presses filtering
-		return properties;
+		return getPkfProperties(context).getGroup(GROUP_ABOUT);
 	}
 
 }
@@ -0,0 +1,93 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.christopher83.framework.properties.CachePolicy;
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.properties.PropertyType;
+
+/**
+ * Class for the descriptors of the module properties.
+ * GENERATED from res/values/parameters.xml by tools/descriptors.xsl, do not edit
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public final class PkfDescriptors {
+
+	// pkf_module_version
+	public static final PropertyDescriptor PKF_MODULE_VERSION = new PropertyDescriptor(R.string.id_pkf_module_version, "id_pkf_module_version", "/sys/class/misc/phantom_kp_filter/version", "pkf",
+			PropertyType.INTEGER, true, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, CachePolicy.UNTIL_WRITE);
+
+	// homekey_filter_status
+	public static final PropertyDescriptor HOMEKEY_FILTER_STATUS = new PropertyDescriptor(R.string.id_homekey_filter_status, "id_homekey_filter_status", "/sys/class/misc/phantom_kp_filter/home_enabled", "homekey",
+			PropertyType.BOOLEAN, false, 0L, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, CachePolicy.UNTIL_WRITE);
+
+	// homekey_allowed_irqs
+	public static final PropertyDescriptor HOMEKEY_ALLOWED_IRQS = new PropertyDescriptor(R.string.id_homekey_allowed_irqs, "id_homekey_allowed_irqs", "/sys/class/misc/phantom_kp_filter/home_allowed_irqs", "homekey",
+			PropertyType.INTEGER, false, 4L, 1L, 32L, PropertyDescriptor.NO_VALUE, CachePolicy.UNTIL_WRITE);
+
+	// homekey_report_wait
+	public static final PropertyDescriptor HOMEKEY_REPORT_WAIT = new PropertyDescriptor(R.string.id_homekey_report_wait, "id_homekey_report_wait", "/sys/class/misc/phantom_kp_filter/home_report_wait", "homekey",
+			PropertyType.INTEGER, false, 12L, 5L, 25L, PropertyDescriptor.NO_VALUE, CachePolicy.UNTIL_WRITE);
+
+	// homekey_ignored_kp
+	public static final PropertyDescriptor HOMEKEY_IGNORED_KP = new PropertyDescriptor(R.string.id_homekey_ignored_kp, "id_homekey_ignored_kp", "/sys/class/misc/phantom_kp_filter/home_ignored_kp", "homekey",
+			PropertyType.INTEGER, true, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, CachePolicy.ALWAYS_READ);
+
+	// touchkeys_filter_status
+	public static final PropertyDescriptor TOUCHKEYS_FILTER_STATUS = new PropertyDescriptor(R.string.id_touchkeys_filter_status, "id_touchkeys_filter_status", "/sys/class/misc/phantom_kp_filter/menuback_enabled", "touchkeys",
+			PropertyType.BOOLEAN, false, 1L, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, CachePolicy.UNTIL_WRITE);
+
+	// touchkeys_interrupt_checks
+	public static final PropertyDescriptor TOUCHKEYS_INTERRUPT_CHECKS = new PropertyDescriptor(R.string.id_touchkeys_interrupt_checks, "id_touchkeys_interrupt_checks", "/sys/class/misc/phantom_kp_filter/menuback_interrupt_checks", "touchkeys",
+			PropertyType.INTEGER, false, 10L, 1L, 10L, PropertyDescriptor.NO_VALUE, CachePolicy.UNTIL_WRITE);
+
+	// touchkeys_firsterr_wait
+	public static final PropertyDescriptor TOUCHKEYS_FIRSTERR_WAIT = new PropertyDescriptor(R.string.id_touchkeys_firsterr_wait, "id_touchkeys_firsterr_wait", "/sys/class/misc/phantom_kp_filter/menuback_first_err_wait", "touchkeys",
+			PropertyType.INTEGER, false, 500L, 50L, 1000L, 10L, CachePolicy.UNTIL_WRITE);
+
+	// touchkeys_lasterr_wait
+	public static final PropertyDescriptor TOUCHKEYS_LASTERR_WAIT = new PropertyDescriptor(R.string.id_touchkeys_lasterr_wait, "id_touchkeys_lasterr_wait", "/sys/class/misc/phantom_kp_filter/menuback_last_err_wait", "touchkeys",
+			PropertyType.INTEGER, false, 100L, 50L, 1000L, 10L, CachePolicy.UNTIL_WRITE);
+
+	// touchkeys_ignored_kp
+	public static final PropertyDescriptor TOUCHKEYS_IGNORED_KP = new PropertyDescriptor(R.string.id_touchkeys_ignored_kp, "id_touchkeys_ignored_kp", "/sys/class/misc/phantom_kp_filter/menuback_ignored_kp", "touchkeys",
+			PropertyType.INTEGER, true, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, PropertyDescriptor.NO_VALUE, CachePolicy.ALWAYS_READ);
+
+	// All the descriptors, in declaration order
+	public static final List<PropertyDescriptor> ALL = Collections.unmodifiableList(Arrays.asList(
+			PKF_MODULE_VERSION,
+			HOMEKEY_FILTER_STATUS,
+			HOMEKEY_ALLOWED_IRQS,
+			HOMEKEY_REPORT_WAIT,
+			HOMEKEY_IGNORED_KP,
+			TOUCHKEYS_FILTER_STATUS,
+			TOUCHKEYS_INTERRUPT_CHECKS,
+			TOUCHKEYS_FIRSTERR_WAIT,
+			TOUCHKEYS_LASTERR_WAIT,
+			TOUCHKEYS_IGNORED_KP
+	));
+
+	/**
+	 * Class constructor, not used
+	 */
+	private PkfDescriptors() {
+	}
+
+}
@@ -0,0 +1,383 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager;
+
+import java.io.File;
+
+import com.christopher83.framework.properties.PropertyHashTable;
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.sampling.CounterSampler;
+import com.christopher83.framework.sampling.HandlerClock;
+import com.christopher83.framework.sampling.PollScheduler;
+import com.christopher83.framework.sampling.TimeSeriesStore;
+import com.christopher83.framework.sampling.interfaces.IPollTarget;
+import com.christopher83.pkfmanager.tuning.HomeKeyAutoTuner;
+import com.christopher83.pkfmanager.tuning.PropertyTuningTarget;
+import com.christopher83.pkfmanager.tuning.TuningAudit;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+/**
+ * Class for the service sampling the ignored key presses counters in background
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PkfSamplerService extends Service {
+
+	// Extra of the start intent with the sampling interval (in ms)
+	public static final String EXTRA_INTERVAL = "com.christopher83.pkfmanager.extra.SAMPLING_INTERVAL";
+
+	// Extra of the start intent with the time (in ms since boot) till the preferences restore waits for the module
+	public static final String EXTRA_RESTORE_DEADLINE = "com.christopher83.pkfmanager.extra.RESTORE_DEADLINE";
+
+	// Default sampling interval (in ms)
+	public static final long DEFAULT_INTERVAL = 60000;
+
+	// Factor applied to the sampling interval to get the max interval reached while a counter is idle
+	private static final int MAX_INTERVAL_FACTOR = 16;
+
+	// Number of samples kept for each counter, a day at the default interval
+	private static final int SAMPLES_CAPACITY = 1440;
+
+	// Number of samples, of both the counters, between two saves of the totals
+	private static final int SAMPLES_PER_SAVE = 60;
+
+	// Keys of the shared preferences used to keep the sampling state
+	private static final String PREF_INTERVAL = "sampler_interval";
+	private static final String PREF_TOTAL = "sampler_total_";
+	private static final String PREF_LAST = "sampler_last_";
+	private static final String PREF_BOOT_TIME = "sampler_boot_time";
+
+	// Max difference (in ms) between two boot times computed during the same boot, absorbing the wall clock adjustments
+	private static final long BOOT_TIME_TOLERANCE = 60000;
+
+	// Directory of the counters history, inside the files directory
+	private static final String HISTORY_DIRECTORY = "history";
+
+	// Size (in bytes) of each history segment and max size of the history of each counter
+	private static final long HISTORY_SEGMENT_SIZE = 16 * 1024;
+	private static final long HISTORY_MAX_SIZE = 256 * 1024;
+
+	// Name of the audit log of the auto-tune changes, inside the files directory
+	private static final String AUDIT_FILE = "autotune.log";
+
+	// Number of auto-tune changes kept in memory
+	private static final int AUDIT_CAPACITY = 64;
+
+	// Name of the sampling thread
+	private static final String THREAD_NAME = "PkfSampler";
+
+	// Name of the worker thread waiting for the module to restore the preferences
+	private static final String RESTORE_THREAD_NAME = "PkfLateRestore";
+
+	private static CounterSampler _homeKeySampler;    // The sampler of the home key ignored presses
+	private static CounterSampler _touchKeysSampler;  // The sampler of the touch keys ignored presses
+	private static TimeSeriesStore _homeKeyHistory;   // The history of the home key ignored presses
+	private static TimeSeriesStore _touchKeysHistory; // The history of the touch keys ignored presses
+	private static boolean _restoring;                // Whether a worker is waiting for the module to restore the preferences
+
+	private HandlerThread _thread;     // The sampling thread
+	private PollScheduler _scheduler;  // The scheduler of the samplings, running on the sampling thread
+	private long _interval;            // The sampling interval (in ms)
+	private HomeKeyAutoTuner _tuner;   // The auto-tuner of the home key filter, running on the sampling thread
+	private int _unsavedSamples;       // The number of samples taken since the last save
+
+	/**
+	 * Starts the sampling service
+	 * @param context The context
+	 * @param interval The sampling interval (in ms), or 0 to keep the current one
+	 */
+	public static void start(Context context, long interval) {
+		Intent intent = new Intent(context, PkfSamplerService.class);
+		if (interval > 0)
+			intent.putExtra(EXTRA_INTERVAL, interval);
+		context.startService(intent);
+	}
+
+	/**
+	 * Starts the sampling service, restoring the preferences on a worker thread as soon as the module appears.
+	 * The service stops itself if the module doesn't appear till the deadline
+	 * @param context The context
+	 * @param deadline The time (in ms since boot) when to stop waiting for the module
+	 */
+	public static void restoreWhenReady(Context context, long deadline) {
+		Intent intent = new Intent(context, PkfSamplerService.class);
+		intent.putExtra(EXTRA_RESTORE_DEADLINE, deadline);
+		context.startService(intent);
+	}
+
+	/**
+	 * Gets the sampler of the home key ignored presses counter
+	 * @param context The context
+	 * @return The sampler shared by the whole process
+	 */
+	public static synchronized CounterSampler getHomeKeySampler(Context context) {
+		if (_homeKeySampler == null)
+			_homeKeySampler = createSampler(context, PkfDescriptors.HOMEKEY_IGNORED_KP);
+		return _homeKeySampler;
+	}
+
+	/**
+	 * Gets the sampler of the touch keys ignored presses counter
+	 * @param context The context
+	 * @return The sampler shared by the whole process
+	 */
+	public static synchronized CounterSampler getTouchKeysSampler(Context context) {
+		if (_touchKeysSampler == null)
+			_touchKeysSampler = createSampler(context, PkfDescriptors.TOUCHKEYS_IGNORED_KP);
+		return _touchKeysSampler;
+	}
+
+	/**
+	 * Gets the history of the home key ignored presses, with the totals of the counter over time
+	 * @param context The context
+	 * @return The history shared by the whole process
+	 */
+	public static synchronized TimeSeriesStore getHomeKeyHistory(Context context) {
+		if (_homeKeyHistory == null)
+			_homeKeyHistory = createHistory(context, PkfDescriptors.HOMEKEY_IGNORED_KP);
+		return _homeKeyHistory;
+	}
+
+	/**
+	 * Gets the history of the touch keys ignored presses, with the totals of the counter over time
+	 * @param context The context
+	 * @return The history shared by the whole process
+	 */
+	public static synchronized TimeSeriesStore getTouchKeysHistory(Context context) {
+		if (_touchKeysHistory == null)
+			_touchKeysHistory = createHistory(context, PkfDescriptors.TOUCHKEYS_IGNORED_KP);
+		return _touchKeysHistory;
+	}
+
+	/**
+	 * Starts the worker thread waiting for the module to restore the preferences,
+	 * unless one is already waiting, so that repeated starts don't stack the waits.
+	 * If the module doesn't appear till the deadline, there's nothing to sample and the service is stopped
+	 * @param deadline The time (in ms since boot) when to stop waiting for the module
+	 */
+	private void startRestore(final long deadline) {
+		synchronized (PkfSamplerService.class) {
+			if (_restoring)
+				return;
+			_restoring = true;
+		}
+
+		Thread worker = new Thread(new Runnable() {
+			/**
+			 * Waits for the module and restores the preferences
+			 */
+			@Override
+			public void run() {
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				try {
+					if (!PkfBootReceiver.waitAndRestore(getApplicationContext(), deadline))
+						stopSelf();
+				} finally {
+					synchronized (PkfSamplerService.class) {
+						_restoring = false;
+					}
+				}
+			}
+		}, RESTORE_THREAD_NAME);
+		worker.start();
+	}
+
+	/**
+	 * Creates the history of a counter
+	 * @param context The context
+	 * @param descriptor The descriptor of the counter property
+	 * @return The opened history
+	 */
+	private static TimeSeriesStore createHistory(Context context, PropertyDescriptor descriptor) {
+		File directory = new File(new File(context.getApplicationContext().getFilesDir(), HISTORY_DIRECTORY), descriptor.getID());
+		return new TimeSeriesStore(directory, HISTORY_SEGMENT_SIZE, HISTORY_MAX_SIZE);
+	}
+
+	/**
+	 * Creates the sampler of a counter, restoring the saved state
+	 * @param context The context
+	 * @param descriptor The descriptor of the counter property
+	 * @return The new sampler
+	 */
+	private static CounterSampler createSampler(Context context, PropertyDescriptor descriptor) {
+		PropertyHashTable properties = PkfCommon.getPkfProperties(context);
+		CounterSampler sampler = new CounterSampler(properties.get(descriptor.getID()), SAMPLES_CAPACITY);
+
+		// Restore the total saved by the previous sampling, and the last value only if saved during this boot,
+		// since the counter restarts after a reboot and could climb back above the saved value unnoticed
+		SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context.getApplicationContext());
+		long last = CounterSampler.NO_VALUE;
+		if (Math.abs(prefs.getLong(PREF_BOOT_TIME, 0) - getBootTime()) <= BOOT_TIME_TOLERANCE)
+			last = prefs.getLong(PREF_LAST + descriptor.getID(), CounterSampler.NO_VALUE);
+		sampler.restore(prefs.getLong(PREF_TOTAL + descriptor.getID(), 0), last);
+		return sampler;
+	}
+
+	/**
+	 * Gets the wall clock time of the boot, identifying the current boot
+	 * @return The boot time (in ms since the epoch)
+	 */
+	private static long getBootTime() {
+		return System.currentTimeMillis() - SystemClock.elapsedRealtime();
+	}
+
+	/**
+	 * Manages the service creation
+	 */
+	@Override
+	public void onCreate() {
+		// Invoke the base class method
+		super.onCreate();
+
+		// Start the sampling thread, with background priority
+		_thread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+		_thread.start();
+		HandlerClock clock = new HandlerClock(_thread.getLooper());
+		_scheduler = new PollScheduler(clock);
+
+		// Create the auto-tuner of the home key filter, measuring the rate with the samples of its counter
+		PropertyTuningTarget target = new PropertyTuningTarget(PkfCommon.getPkfProperties(this), getHomeKeySampler(this),
+			PreferenceManager.getDefaultSharedPreferences(this));
+		_tuner = new HomeKeyAutoTuner(clock, target, new TuningAudit(new File(getFilesDir(), AUDIT_FILE), AUDIT_CAPACITY));
+
+		// Don't sample while the screen is off, the kernel keeps counting meanwhile
+		_scheduler.followScreen(this);
+	}
+
+	/**
+	 * Manages the service start, (re)scheduling the sampling with the requested interval
+	 */
+	@Override
+	public int onStartCommand(Intent intent, int flags, int startId) {
+		// Wait for the module and restore the preferences on a worker thread, the samplings go on meanwhile
+		long restoreDeadline = (intent != null) ? intent.getLongExtra(EXTRA_RESTORE_DEADLINE, 0) : 0;
+		if (restoreDeadline > 0)
+			startRestore(restoreDeadline);
+
+		// Get the requested interval, or the last one used if the service has been restarted
+		SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+		long interval = (intent != null) ? intent.getLongExtra(EXTRA_INTERVAL, 0) : 0;
+		if (interval > 0)
+			prefs.edit().putLong(PREF_INTERVAL, interval).apply();
+		else
+			interval = prefs.getLong(PREF_INTERVAL, DEFAULT_INTERVAL);
+		_interval = interval;
+
+		// Restart the sampling, backing off while the counters don't change
+		_scheduler.clear();
+		_scheduler.add(createTarget(getHomeKeySampler(this), getHomeKeyHistory(this)), _interval, _interval * MAX_INTERVAL_FACTOR);
+		_scheduler.add(createTarget(getTouchKeysSampler(this), getTouchKeysHistory(this)), _interval, _interval * MAX_INTERVAL_FACTOR);
+		Log.d(PkfSamplerService.class.getName(), String.format("Phantom Key Presses Filter - Sampling counters every %d to %d ms", _interval, _interval * MAX_INTERVAL_FACTOR));
+
+		// Start or stop the auto-tune of the home key filter, following its preference
+		if (prefs.getBoolean(getString(R.string.key_homekey_autotune), false))
+			_tuner.start();
+		else
+			_tuner.stop();
+		return START_STICKY;
+	}
+
+	/**
+	 * Manages the service destruction
+	 */
+	@Override
+	public void onDestroy() {
+		// Stop the auto-tune and the sampling, then save the totals and the histories
+		_tuner.stop();
+		_scheduler.stopFollowingScreen(this);
+		_scheduler.clear();
+		_thread.quit();
+		save();
+
+		// Invoke the base class method
+		super.onDestroy();
+	}
+
+	/**
+	 * The service can't be bound
+	 */
+	@Override
+	public IBinder onBind(Intent intent) {
+		return null;
+	}
+
+	/**
+	 * Creates the poll target sampling a counter
+	 * @param sampler The sampler of the counter
+	 * @param history The history of the counter
+	 * @return The new poll target
+	 */
+	private IPollTarget createTarget(final CounterSampler sampler, final TimeSeriesStore history) {
+		return new IPollTarget() {
+			/**
+			 * Samples the counter
+			 */
+			@Override
+			public boolean poll(long time) {
+				return sample(sampler, history);
+			}
+		};
+	}
+
+	/**
+	 * Samples a counter, appending its total to its history and saving the totals periodically
+	 * @param sampler The sampler of the counter
+	 * @param history The history of the counter
+	 * @return True if the counter has changed since the previous sample
+	 */
+	private boolean sample(CounterSampler sampler, TimeSeriesStore history) {
+		// The samplers use the monotonic clock, the histories the wall clock so they span the reboots
+		long total = sampler.getTotal();
+		boolean first = (sampler.getCount() == 0);
+		if (!sampler.sample(SystemClock.elapsedRealtime()))
+			return false;
+		history.append(System.currentTimeMillis(), sampler.getTotal());
+
+		if (++_unsavedSamples >= SAMPLES_PER_SAVE)
+			save();
+		return first || sampler.getTotal() != total;
+	}
+
+	/**
+	 * Saves the totals of the samplers, so they survive the process restarts, with the time of the current boot
+	 */
+	private void save() {
+		CounterSampler homeKeySampler = getHomeKeySampler(this);
+		CounterSampler touchKeysSampler = getTouchKeysSampler(this);
+		PreferenceManager.getDefaultSharedPreferences(this).edit()
+			.putLong(PREF_TOTAL + PkfDescriptors.HOMEKEY_IGNORED_KP.getID(), homeKeySampler.getTotal())
+			.putLong(PREF_LAST + PkfDescriptors.HOMEKEY_IGNORED_KP.getID(), homeKeySampler.getLast())
+			.putLong(PREF_TOTAL + PkfDescriptors.TOUCHKEYS_IGNORED_KP.getID(), touchKeysSampler.getTotal())
+			.putLong(PREF_LAST + PkfDescriptors.TOUCHKEYS_IGNORED_KP.getID(), touchKeysSampler.getLast())
+			.putLong(PREF_BOOT_TIME, getBootTime())
+			.apply();
+		_unsavedSamples = 0;
+
+		// Write the buffered history samples
+		getHomeKeyHistory(this).flush();
+		getTouchKeysHistory(this).flush();
+	}
+
+}
@@ -0,0 +1,259 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.christopher83.framework.input.InputEventParser;
+import com.christopher83.framework.input.IntervalHistogram;
+import com.christopher83.framework.input.KeyPressRecorder;
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.pkfmanager.PkfDescriptors;
+
+/**
+ * Class for the analysis of a captured input trace (getevent text or raw input_event dump), computing the
+ * histograms of the intervals between the presses of the HOME, MENU and BACK keys and recommending the
+ * error waits of the MENU and BACK keys.
+ * <p>
+ * The phantom presses arrive in bursts much closer than the presses made by the user, so the intervals
+ * are split in short and long ones, and the short ones are grouped in bursts. The first error wait must
+ * cover the first interval of a burst, the last error wait the following ones: both are recommended as
+ * the 95th percentile of the related intervals. The invalid key errors and the interrupts are not visible
+ * inside the captures, so the presses inside the bursts stand for them
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class CaptureAnalyzer {
+
+	// Width (in us) and number of the histogram buckets, 1 ms each up to 4 s
+	private static final long BUCKET_WIDTH = 1000;
+	private static final int BUCKET_COUNT = 4000;
+
+	// Fraction of the burst intervals covered by the recommended waits
+	private static final double COVERAGE = 0.95;
+
+	// Min number of bursts needed for a recommendation
+	private static final int MIN_BURSTS = 10;
+
+	// Codes of the keys, the HOME key is reported as KEY_HOME or KEY_HOMEPAGE depending on the device
+	private static final int[] HOME_KEYS = { InputEventParser.KEY_HOME, InputEventParser.KEY_HOMEPAGE };
+	private static final int[] TOUCH_KEYS = { InputEventParser.KEY_MENU, InputEventParser.KEY_BACK };
+
+	private static final long US_PER_MS = 1000;
+
+	private final KeyPressRecorder _presses;          // The presses of the keys
+	private final IntervalHistogram _homeIntervals;   // The intervals between the HOME key presses
+	private final IntervalHistogram _menuIntervals;   // The intervals between the MENU key presses
+	private final IntervalHistogram _backIntervals;   // The intervals between the BACK key presses
+	private final IntervalHistogram _touchIntervals;  // The intervals between the MENU and BACK key presses
+	private final IntervalHistogram _firstIntervals;  // The first intervals of the MENU and BACK bursts
+	private final IntervalHistogram _nextIntervals;   // The following intervals of the MENU and BACK bursts
+	private final long _homeThreshold;                // The threshold (in us) of the short HOME intervals
+	private final long _touchThreshold;               // The threshold (in us) of the short MENU and BACK intervals
+
+	/**
+	 * Class constructor, parsing and analyzing a capture
+	 * @param capture The capture file, text or binary
+	 * @throws IOException If the capture can't be read
+	 */
+	public CaptureAnalyzer(File capture) throws IOException {
+		// Parse the capture, keeping only the presses of the filtered keys
+		_presses = new KeyPressRecorder(InputEventParser.KEY_HOME, InputEventParser.KEY_HOMEPAGE,
+			InputEventParser.KEY_MENU, InputEventParser.KEY_BACK);
+		new InputEventParser(_presses).parse(capture);
+
+		// Compute the histograms of the intervals
+		_homeIntervals = newHistogram();
+		_menuIntervals = newHistogram();
+		_backIntervals = newHistogram();
+		_touchIntervals = newHistogram();
+		_presses.addIntervals(_homeIntervals, HOME_KEYS);
+		_presses.addIntervals(_menuIntervals, InputEventParser.KEY_MENU);
+		_presses.addIntervals(_backIntervals, InputEventParser.KEY_BACK);
+		_presses.addIntervals(_touchIntervals, TOUCH_KEYS);
+		_homeThreshold = _homeIntervals.getSplitThreshold();
+		_touchThreshold = _touchIntervals.getSplitThreshold();
+
+		// Split the short MENU and BACK intervals in the first ones of the bursts and the following ones
+		_firstIntervals = newHistogram();
+		_nextIntervals = newHistogram();
+		if (_touchThreshold != IntervalHistogram.NO_VALUE) {
+			long previous = Long.MIN_VALUE;
+			boolean inBurst = false;
+			for (int i = 0; i < _presses.size(); i++) {
+				if (!isTouchKey(_presses.getCode(i)))
+					continue;
+				long time = _presses.getTime(i);
+				if (previous != Long.MIN_VALUE && time - previous >= 0 && time - previous < _touchThreshold) {
+					(inBurst ? _nextIntervals : _firstIntervals).add(time - previous);
+					inBurst = true;
+				} else
+					inBurst = false;
+				previous = time;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of presses of the filtered keys
+	 * @return The number of presses
+	 */
+	public int getPressCount() {
+		return _presses.size();
+	}
+
+	/**
+	 * Gets the histogram of the intervals between the presses of a key
+	 * @param key The code of the key, KEY_HOME or KEY_HOMEPAGE for the HOME key, KEY_MENU or KEY_BACK
+	 * @return The histogram, or null if the key is not filtered
+	 */
+	public IntervalHistogram getIntervals(int key) {
+		switch (key) {
+			case InputEventParser.KEY_HOME:
+			case InputEventParser.KEY_HOMEPAGE:
+				return _homeIntervals;
+			case InputEventParser.KEY_MENU:
+				return _menuIntervals;
+			case InputEventParser.KEY_BACK:
+				return _backIntervals;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Gets the histogram of the intervals between the presses of both the MENU and BACK keys
+	 * @return The histogram
+	 */
+	public IntervalHistogram getTouchKeysIntervals() {
+		return _touchIntervals;
+	}
+
+	/**
+	 * Gets the number of bursts of the MENU and BACK keys
+	 * @return The number of bursts
+	 */
+	public long getTouchKeysBursts() {
+		return _firstIntervals.getCount();
+	}
+
+	/**
+	 * Gets the recommended first error wait of the MENU and BACK keys
+	 * @return The wait (in ms) inside the declared range, or {@link PropertyDescriptor#NO_VALUE} if the bursts are too few
+	 */
+	public long recommendFirstErrWait() {
+		return recommend(_firstIntervals, PkfDescriptors.TOUCHKEYS_FIRSTERR_WAIT);
+	}
+
+	/**
+	 * Gets the recommended last error wait of the MENU and BACK keys
+	 * @return The wait (in ms) inside the declared range, or {@link PropertyDescriptor#NO_VALUE} if the bursts are too few
+	 */
+	public long recommendLastErrWait() {
+		return recommend(_nextIntervals, PkfDescriptors.TOUCHKEYS_LASTERR_WAIT);
+	}
+
+	/**
+	 * Applies the recommended error waits to a configuration
+	 * @param configuration The configuration to change
+	 * @return The configuration with the recommended waits, unchanged when there is no recommendation
+	 */
+	public PkfConfiguration applyRecommendations(PkfConfiguration configuration) {
+		long firstErrWait = recommendFirstErrWait();
+		if (firstErrWait != PropertyDescriptor.NO_VALUE)
+			configuration = configuration.with(PkfDescriptors.TOUCHKEYS_FIRSTERR_WAIT, firstErrWait);
+		long lastErrWait = recommendLastErrWait();
+		if (lastErrWait != PropertyDescriptor.NO_VALUE)
+			configuration = configuration.with(PkfDescriptors.TOUCHKEYS_LASTERR_WAIT, lastErrWait);
+		return configuration;
+	}
+
+	/**
+	 * Creates the trace of the presses, for the simulator. The presses inside the bursts are marked as phantom
+	 * and, for the MENU and BACK keys, followed by an invalid key error
+	 * @return The new trace
+	 */
+	public EventTrace toEventTrace() {
+		EventTrace trace = new EventTrace(_presses.size());
+		long previousHome = Long.MIN_VALUE;
+		long previousTouch = Long.MIN_VALUE;
+		for (int i = 0; i < _presses.size(); i++) {
+			long time = _presses.getTime(i);
+			if (trace.size() > 0 && time < trace.getTime(trace.size() - 1))
+				continue;
+			if (isTouchKey(_presses.getCode(i))) {
+				boolean phantom = isBurst(time, previousTouch, _touchThreshold);
+				trace.add(time, phantom ? (byte)(EventTrace.TOUCH_PRESS | EventTrace.PHANTOM) : EventTrace.TOUCH_PRESS);
+				if (phantom)
+					trace.add(time, EventTrace.TOUCH_ERROR);
+				previousTouch = time;
+			} else {
+				boolean phantom = isBurst(time, previousHome, _homeThreshold);
+				trace.add(time, phantom ? (byte)(EventTrace.HOME_PRESS | EventTrace.PHANTOM) : EventTrace.HOME_PRESS);
+				previousHome = time;
+			}
+		}
+		return trace;
+	}
+
+	/**
+	 * Creates an empty histogram of the intervals
+	 * @return The new histogram
+	 */
+	private static IntervalHistogram newHistogram() {
+		return new IntervalHistogram(BUCKET_WIDTH, BUCKET_COUNT);
+	}
+
+	/**
+	 * Checks if a key is the MENU or the BACK key
+	 * @param code The code of the key
+	 * @return True if MENU or BACK
+	 */
+	private static boolean isTouchKey(int code) {
+		return code == TOUCH_KEYS[0] || code == TOUCH_KEYS[1];
+	}
+
+	/**
+	 * Checks if a press belongs to a burst
+	 * @param time The time (in us) of the press
+	 * @param previous The time (in us) of the previous press of the same keys, or {@link Long#MIN_VALUE}
+	 * @param threshold The threshold (in us) of the short intervals, or {@link IntervalHistogram#NO_VALUE}
+	 * @return True if the interval from the previous press is short
+	 */
+	private static boolean isBurst(long time, long previous, long threshold) {
+		return threshold != IntervalHistogram.NO_VALUE && previous != Long.MIN_VALUE && time - previous < threshold;
+	}
+
+	/**
+	 * Recommends a wait covering most of some intervals
+	 * @param intervals The intervals to cover
+	 * @param descriptor The descriptor of the wait parameter
+	 * @return The wait (in ms) rounded up to the step and inside the declared range,
+	 * or {@link PropertyDescriptor#NO_VALUE} if the intervals are too few
+	 */
+	private static long recommend(IntervalHistogram intervals, PropertyDescriptor descriptor) {
+		if (intervals.getCount() < MIN_BURSTS)
+			return PropertyDescriptor.NO_VALUE;
+
+		// Round up to the step, from the min
+		long percentile = intervals.getPercentile(COVERAGE);
+		long wait = (percentile == Long.MAX_VALUE) ? descriptor.getMax() : (percentile + US_PER_MS - 1) / US_PER_MS;
+		long step = (descriptor.getStep() != PropertyDescriptor.NO_VALUE) ? descriptor.getStep() : 1;
+		wait = descriptor.getMin() + (Math.max(0, wait - descriptor.getMin()) + step - 1) / step * step;
+		return Math.min(descriptor.getMax(), wait);
+	}
+
+}
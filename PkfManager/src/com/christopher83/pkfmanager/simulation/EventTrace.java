@@ -0,0 +1,164 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Class for a trace of the key events and interrupts handled by the filter, stored inside
+ * primitive arrays so millions of events can be replayed without allocations.
+ * The events must be added in time order
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class EventTrace {
+
+	// Types of the events
+	public static final byte HOME_PRESS = 1;   // A press of the HOME key
+	public static final byte HOME_IRQ = 2;     // An interrupt of the HOME key line
+	public static final byte TOUCH_PRESS = 3;  // A press of the MENU or BACK key
+	public static final byte TOUCH_ERROR = 4;  // An invalid key error of the MENU or BACK keys
+
+	// Flag of the presses not made by the user, combined with the type
+	public static final byte PHANTOM = (byte)0x80;
+
+	// Mask extracting the type of an event
+	public static final byte TYPE_MASK = 0x7F;
+
+	// Initial capacity of the arrays
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] _times;  // The times of the events (in us)
+	private byte[] _types;  // The types of the events, with the phantom flag
+	private int _size;      // The number of events
+
+	/**
+	 * Class constructor
+	 */
+	public EventTrace() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Class constructor
+	 * @param capacity The initial number of events that can be stored without growing
+	 */
+	public EventTrace(int capacity) {
+		_times = new long[Math.max(1, capacity)];
+		_types = new byte[_times.length];
+	}
+
+	/**
+	 * Adds an event
+	 * @param time The time of the event (in us), not lower than the time of the previous event
+	 * @param type The type of the event, optionally combined with {@link #PHANTOM}
+	 */
+	public void add(long time, byte type) {
+		if (_size > 0 && time < _times[_size - 1])
+			throw new IllegalArgumentException(String.format("Event at %d us added after the event at %d us", time, _times[_size - 1]));
+
+		// Grow the arrays when full
+		if (_size == _times.length) {
+			_times = Arrays.copyOf(_times, _size * 2);
+			_types = Arrays.copyOf(_types, _size * 2);
+		}
+		_times[_size] = time;
+		_types[_size] = type;
+		_size++;
+	}
+
+	/**
+	 * Gets the number of events
+	 * @return The number of events
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Gets the time of an event
+	 * @param index The index of the event
+	 * @return The time of the event (in us)
+	 */
+	public long getTime(int index) {
+		return _times[index];
+	}
+
+	/**
+	 * Gets the type of an event
+	 * @param index The index of the event
+	 * @return The type of the event, with the phantom flag
+	 */
+	public byte getType(int index) {
+		return _types[index];
+	}
+
+	/**
+	 * Gets the duration of the trace
+	 * @return The time (in us) between the first and the last event
+	 */
+	public long getDuration() {
+		return (_size > 1) ? _times[_size - 1] - _times[0] : 0;
+	}
+
+	/**
+	 * Gets the index of the first event not before a time
+	 * @param time The time (in us)
+	 * @return The index of the event, or {@link #size()} if all the events are before the time
+	 */
+	public int indexOf(long time) {
+		int index = Arrays.binarySearch(_times, 0, _size, time);
+		if (index < 0)
+			return -index - 1;
+
+		// Move to the first of the events with the same time
+		while (index > 0 && _times[index - 1] == time)
+			index--;
+		return index;
+	}
+
+	/**
+	 * Copies the events inside a time range
+	 * @param from The start time (in us), included
+	 * @param to The end time (in us), excluded
+	 * @return The new trace with the events of the range
+	 */
+	public EventTrace slice(long from, long to) {
+		int start = indexOf(from);
+		int end = Math.max(start, indexOf(to));
+		EventTrace trace = new EventTrace(end - start);
+		System.arraycopy(_times, start, trace._times, 0, end - start);
+		System.arraycopy(_types, start, trace._types, 0, end - start);
+		trace._size = end - start;
+		return trace;
+	}
+
+	/**
+	 * Gets the array of the times, shared with the trace
+	 * @return The times of the events (in us), valid up to {@link #size()}
+	 */
+	long[] times() {
+		return _times;
+	}
+
+	/**
+	 * Gets the array of the types, shared with the trace
+	 * @return The types of the events, valid up to {@link #size()}
+	 */
+	byte[] types() {
+		return _types;
+	}
+
+}
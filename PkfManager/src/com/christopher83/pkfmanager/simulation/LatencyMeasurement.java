@@ -0,0 +1,278 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.christopher83.framework.input.InputEventParser;
+import com.christopher83.framework.input.IntervalHistogram;
+import com.christopher83.framework.input.LatencyRecorder;
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.properties.PropertySnapshot;
+import com.christopher83.pkfmanager.PkfDescriptors;
+
+import android.os.Build;
+
+/**
+ * Class for a measurement of the latency added by the filter to the HOME key and to the MENU and BACK keys,
+ * correlating the raw interrupts recorded inside a capture with the delivered key presses, together with
+ * the snapshot of the properties valid during the capture, so the measurements of different configurations
+ * and devices can be compared
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class LatencyMeasurement {
+
+	// Width (in us) and number of the latency histogram buckets, 100 us each up to 200 ms
+	public static final long BUCKET_WIDTH = 100;
+	public static final int BUCKET_COUNT = 2000;
+
+	// Max delay (in us) between a raw interrupt and its delivered press
+	private static final long PAIRING_WINDOW = 100000;
+
+	// Indexes of the groups of keys
+	private static final int HOME = 0;
+	private static final int TOUCH_KEYS = 1;
+
+	// Names of the JSON fields
+	private static final String JSON_DEVICE = "device";
+	private static final String JSON_SNAPSHOT = "snapshot";
+	private static final String JSON_HOME = "home";
+	private static final String JSON_TOUCH_KEYS = "touchkeys";
+	private static final String JSON_SUPPRESSED = "suppressed";
+	private static final String JSON_COUNT = "count";
+	private static final String JSON_UNMATCHED = "unmatched";
+	private static final String JSON_P50 = "p50";
+	private static final String JSON_P95 = "p95";
+	private static final String JSON_P99 = "p99";
+	private static final String JSON_BUCKET_WIDTH = "bucket_width";
+	private static final String JSON_BUCKETS = "buckets";
+
+	private final String _device;                    // The device where the capture has been made
+	private final PropertySnapshot _snapshot;        // The properties valid during the capture
+	private final PkfConfiguration _configuration;   // The filter configuration of the snapshot
+	private final IntervalHistogram _homeLatencies;  // The latencies (in us) added to the HOME key presses
+	private final IntervalHistogram _touchLatencies; // The latencies (in us) added to the MENU and BACK key presses
+	private final long _homeUnmatched;               // The HOME key presses without a raw interrupt
+	private final long _touchUnmatched;              // The MENU and BACK key presses without a raw interrupt
+	private final long _suppressed;                  // The raw interrupts without a delivered press
+
+	/**
+	 * Class constructor
+	 * @param device The device where the capture has been made
+	 * @param snapshot The properties valid during the capture
+	 * @param homeLatencies The latencies added to the HOME key presses
+	 * @param touchLatencies The latencies added to the MENU and BACK key presses
+	 * @param homeUnmatched The HOME key presses without a raw interrupt
+	 * @param touchUnmatched The MENU and BACK key presses without a raw interrupt
+	 * @param suppressed The raw interrupts without a delivered press
+	 */
+	private LatencyMeasurement(String device, PropertySnapshot snapshot, IntervalHistogram homeLatencies,
+			IntervalHistogram touchLatencies, long homeUnmatched, long touchUnmatched, long suppressed) {
+		_device = device;
+		_snapshot = snapshot;
+		_configuration = toConfiguration(snapshot);
+		_homeLatencies = homeLatencies;
+		_touchLatencies = touchLatencies;
+		_homeUnmatched = homeUnmatched;
+		_touchUnmatched = touchUnmatched;
+		_suppressed = suppressed;
+	}
+
+	/**
+	 * Measures the added latencies inside a capture, recorded with getevent -t including the MSC_SCAN events
+	 * reported at the interrupts, or as a raw input_event dump
+	 * @param capture The capture file
+	 * @param snapshot The properties valid during the capture
+	 * @return The new measurement, for the current device
+	 * @throws IOException If the capture can't be read
+	 */
+	public static LatencyMeasurement measure(File capture, PropertySnapshot snapshot) throws IOException {
+		LatencyRecorder recorder = new LatencyRecorder(PAIRING_WINDOW, BUCKET_WIDTH, BUCKET_COUNT,
+			new int[] { InputEventParser.KEY_HOME, InputEventParser.KEY_HOMEPAGE },
+			new int[] { InputEventParser.KEY_MENU, InputEventParser.KEY_BACK });
+		new InputEventParser(recorder).parse(capture);
+		recorder.finish();
+		return new LatencyMeasurement(String.format("%s %s", Build.MANUFACTURER, Build.MODEL), snapshot,
+			recorder.getLatencies(HOME), recorder.getLatencies(TOUCH_KEYS), recorder.getUnmatched(HOME),
+			recorder.getUnmatched(TOUCH_KEYS), recorder.getSuppressed());
+	}
+
+	/**
+	 * Gets the device where the capture has been made
+	 * @return The manufacturer and the model of the device
+	 */
+	public String getDevice() {
+		return _device;
+	}
+
+	/**
+	 * Gets the properties valid during the capture
+	 * @return The snapshot of the properties
+	 */
+	public PropertySnapshot getSnapshot() {
+		return _snapshot;
+	}
+
+	/**
+	 * Gets the filter configuration valid during the capture
+	 * @return The configuration, with the default values for the properties missing inside the snapshot
+	 */
+	public PkfConfiguration getConfiguration() {
+		return _configuration;
+	}
+
+	/**
+	 * Gets the histogram of the added latencies
+	 * @param touchKeys True for the MENU and BACK keys, false for the HOME key
+	 * @return The histogram of the latencies (in us)
+	 */
+	public IntervalHistogram getLatencies(boolean touchKeys) {
+		return touchKeys ? _touchLatencies : _homeLatencies;
+	}
+
+	/**
+	 * Gets the number of delivered presses without a raw interrupt
+	 * @param touchKeys True for the MENU and BACK keys, false for the HOME key
+	 * @return The number of unmatched presses
+	 */
+	public long getUnmatched(boolean touchKeys) {
+		return touchKeys ? _touchUnmatched : _homeUnmatched;
+	}
+
+	/**
+	 * Gets the number of raw interrupts without a delivered press
+	 * @return The number of suppressed interrupts, of all the keys
+	 */
+	public long getSuppressed() {
+		return _suppressed;
+	}
+
+	/**
+	 * Converts the measurement to JSON
+	 * @return The JSON object with the device, the snapshot and the latencies of both the groups of keys
+	 * @throws JSONException If the snapshot can't be converted
+	 */
+	public JSONObject toJSON() throws JSONException {
+		JSONObject json = new JSONObject();
+		json.put(JSON_DEVICE, _device);
+		json.put(JSON_SNAPSHOT, _snapshot.toJSON());
+		json.put(JSON_HOME, toJSON(_homeLatencies, _homeUnmatched));
+		json.put(JSON_TOUCH_KEYS, toJSON(_touchLatencies, _touchUnmatched));
+		json.put(JSON_SUPPRESSED, _suppressed);
+		return json;
+	}
+
+	/**
+	 * Creates a measurement from JSON
+	 * @param json The JSON object created by {@link #toJSON()}
+	 * @return The new measurement
+	 * @throws JSONException If the JSON object is not valid
+	 */
+	public static LatencyMeasurement fromJSON(JSONObject json) throws JSONException {
+		JSONObject home = json.getJSONObject(JSON_HOME);
+		JSONObject touchKeys = json.getJSONObject(JSON_TOUCH_KEYS);
+		return new LatencyMeasurement(json.getString(JSON_DEVICE), PropertySnapshot.fromJSON(json.getJSONObject(JSON_SNAPSHOT)),
+			histogramFromJSON(home), histogramFromJSON(touchKeys), home.getLong(JSON_UNMATCHED),
+			touchKeys.getLong(JSON_UNMATCHED), json.getLong(JSON_SUPPRESSED));
+	}
+
+	/**
+	 * Gets the key of the measurement, made of the values of some parameters
+	 * @param descriptors The descriptors of the parameters
+	 * @return The key, as "id=value" pairs
+	 */
+	public String getKey(List<PropertyDescriptor> descriptors) {
+		StringBuilder key = new StringBuilder();
+		for (PropertyDescriptor descriptor:descriptors) {
+			if (key.length() > 0)
+				key.append(", ");
+			key.append(descriptor.getID()).append('=').append(_configuration.get(descriptor));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Converts the latencies of a group of keys to JSON, with the percentiles and the non empty buckets
+	 * @param latencies The latencies
+	 * @param unmatched The presses without a raw interrupt
+	 * @return The JSON object
+	 * @throws JSONException If a value can't be converted
+	 */
+	private static JSONObject toJSON(IntervalHistogram latencies, long unmatched) throws JSONException {
+		JSONArray buckets = new JSONArray();
+		for (int i = 0; i < latencies.getBucketCount(); i++) {
+			if (latencies.getBucket(i) > 0)
+				buckets.put(new JSONArray().put(i).put(latencies.getBucket(i)));
+		}
+		if (latencies.getOverflow() > 0)
+			buckets.put(new JSONArray().put(latencies.getBucketCount()).put(latencies.getOverflow()));
+
+		JSONObject json = new JSONObject();
+		json.put(JSON_COUNT, latencies.getCount());
+		json.put(JSON_UNMATCHED, unmatched);
+		if (latencies.getCount() > 0) {
+			json.put(JSON_P50, latencies.getPercentile(0.50));
+			json.put(JSON_P95, latencies.getPercentile(0.95));
+			json.put(JSON_P99, latencies.getPercentile(0.99));
+		}
+		json.put(JSON_BUCKET_WIDTH, latencies.getBucketWidth());
+		json.put(JSON_BUCKETS, buckets);
+		return json;
+	}
+
+	/**
+	 * Creates the latencies of a group of keys from JSON
+	 * @param json The JSON object
+	 * @return The histogram of the latencies
+	 * @throws JSONException If the JSON object is not valid
+	 */
+	private static IntervalHistogram histogramFromJSON(JSONObject json) throws JSONException {
+		IntervalHistogram latencies = new IntervalHistogram(json.getLong(JSON_BUCKET_WIDTH), BUCKET_COUNT);
+		JSONArray buckets = json.getJSONArray(JSON_BUCKETS);
+		for (int i = 0; i < buckets.length(); i++) {
+			JSONArray bucket = buckets.getJSONArray(i);
+			latencies.addBucket(bucket.getInt(0), bucket.getLong(1));
+		}
+		return latencies;
+	}
+
+	/**
+	 * Gets the filter configuration of a snapshot
+	 * @param snapshot The snapshot of the properties
+	 * @return The configuration, with the default values for the missing or unreadable properties
+	 */
+	private static PkfConfiguration toConfiguration(PropertySnapshot snapshot) {
+		List<PropertyDescriptor> descriptors = PkfDescriptors.ALL;
+		long[] values = new long[descriptors.size()];
+		for (int i = 0; i < values.length; i++) {
+			Object value = snapshot.getValue(descriptors.get(i).getID());
+			if (value instanceof Boolean)
+				values[i] = ((Boolean)value).booleanValue() ? 1 : 0;
+			else if (value instanceof Number)
+				values[i] = ((Number)value).longValue();
+			else
+				values[i] = descriptors.get(i).getDefaultValue();
+		}
+		return PkfConfiguration.of(values);
+	}
+
+}
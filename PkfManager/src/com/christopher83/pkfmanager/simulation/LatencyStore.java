@@ -0,0 +1,159 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import com.christopher83.framework.input.IntervalHistogram;
+import com.christopher83.framework.properties.PropertyDescriptor;
+
+import android.util.Log;
+
+/**
+ * Class for the store of the latency measurements, kept as a JSON array inside a file,
+ * and for their grouping by configuration or by parameter value
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class LatencyStore {
+
+	private final File _file; // The file holding the measurements
+
+	/**
+	 * Class constructor
+	 * @param file The file holding the measurements
+	 */
+	public LatencyStore(File file) {
+		_file = file;
+	}
+
+	/**
+	 * Adds a measurement, rewriting the file atomically
+	 * @param measurement The measurement to add
+	 * @return True if the measurement has been stored
+	 */
+	public synchronized boolean add(LatencyMeasurement measurement) {
+		try {
+			JSONArray measurements = read();
+			measurements.put(measurement.toJSON());
+			write(measurements.toString());
+			return true;
+		} catch (JSONException e) {
+			Log.e(LatencyStore.class.getName(), String.format("Unable to convert the measurement: %s", e.getMessage()));
+		} catch (IOException e) {
+			Log.e(LatencyStore.class.getName(), String.format("Unable to write the measurements to %s: %s", _file, e.getMessage()));
+		}
+		return false;
+	}
+
+	/**
+	 * Loads all the measurements
+	 * @return The stored measurements, the oldest first, or an empty list if the file can't be read
+	 */
+	public synchronized List<LatencyMeasurement> load() {
+		List<LatencyMeasurement> measurements = new ArrayList<LatencyMeasurement>();
+		try {
+			JSONArray json = read();
+			for (int i = 0; i < json.length(); i++)
+				measurements.add(LatencyMeasurement.fromJSON(json.getJSONObject(i)));
+		} catch (JSONException e) {
+			Log.e(LatencyStore.class.getName(), String.format("Invalid measurements inside %s: %s", _file, e.getMessage()));
+		} catch (IOException e) {
+			Log.e(LatencyStore.class.getName(), String.format("Unable to read the measurements from %s: %s", _file, e.getMessage()));
+		}
+		return measurements;
+	}
+
+	/**
+	 * Groups the latencies of some measurements by the values of some parameters, merging the
+	 * histograms of the same group. With all the writable parameters, each group is a configuration
+	 * @param measurements The measurements to group
+	 * @param touchKeys True for the latencies of the MENU and BACK keys, false for the HOME key
+	 * @param descriptors The descriptors of the parameters
+	 * @return The merged latencies, by "id=value" pairs of the parameters
+	 */
+	public static Map<String, IntervalHistogram> slice(List<LatencyMeasurement> measurements, boolean touchKeys, PropertyDescriptor... descriptors) {
+		List<PropertyDescriptor> parameters = Arrays.asList(descriptors);
+		Map<String, IntervalHistogram> slices = new TreeMap<String, IntervalHistogram>();
+		for (LatencyMeasurement measurement:measurements) {
+			String key = measurement.getKey(parameters);
+			IntervalHistogram latencies = slices.get(key);
+			if (latencies == null) {
+				latencies = new IntervalHistogram(LatencyMeasurement.BUCKET_WIDTH, LatencyMeasurement.BUCKET_COUNT);
+				slices.put(key, latencies);
+			}
+			latencies.add(measurement.getLatencies(touchKeys));
+		}
+		return slices;
+	}
+
+	/**
+	 * Reads the stored measurements
+	 * @return The JSON array of the measurements, empty if the file doesn't exist
+	 * @throws IOException If the file can't be read
+	 * @throws JSONException If the file content is not valid
+	 */
+	private JSONArray read() throws IOException, JSONException {
+		if (!_file.exists())
+			return new JSONArray();
+
+		InputStream stream = new FileInputStream(_file);
+		try {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+				content.write(buffer, 0, count);
+			return new JSONArray(content.toString("UTF-8"));
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Writes the measurements to a temporary file, then replaces the store file with it
+	 * @param content The JSON text of the measurements
+	 * @throws IOException If the file can't be written
+	 */
+	private void write(String content) throws IOException {
+		File directory = _file.getAbsoluteFile().getParentFile();
+		if (directory != null)
+			directory.mkdirs();
+		File temporary = new File(_file.getPath() + ".tmp");
+		OutputStream stream = new FileOutputStream(temporary);
+		try {
+			stream.write(content.getBytes("UTF-8"));
+		} finally {
+			stream.close();
+		}
+		if (!temporary.renameTo(_file))
+			throw new IOException(String.format("Unable to rename %s", temporary));
+	}
+
+}
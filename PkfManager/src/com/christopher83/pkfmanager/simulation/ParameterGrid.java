@@ -0,0 +1,132 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+import java.util.List;
+
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.properties.PropertyType;
+
+/**
+ * Class for the grid of the configurations obtained combining all the allowed values of some parameters,
+ * enumerated from the min to the max with the step declared by their descriptors
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class ParameterGrid {
+
+	private final int[] _indexes;   // The descriptor indexes of the parameters, one for each axis
+	private final long[][] _values; // The allowed values of each axis
+	private final long _size;       // The number of configurations
+
+	/**
+	 * Class constructor
+	 * @param parameters The descriptors of the writable parameters to combine
+	 * @throws IllegalArgumentException If a parameter is readonly, or has no range
+	 */
+	public ParameterGrid(PropertyDescriptor... parameters) {
+		_indexes = new int[parameters.length];
+		_values = new long[parameters.length][];
+		long size = 1;
+		for (int i = 0; i < parameters.length; i++) {
+			_indexes[i] = PkfConfiguration.indexOf(parameters[i]);
+			_values[i] = getAllowedValues(parameters[i]);
+			size *= _values[i].length;
+		}
+		_size = size;
+	}
+
+	/**
+	 * Class constructor
+	 * @param parameters The descriptors of the writable parameters to combine
+	 * @throws IllegalArgumentException If a parameter is readonly, or has no range
+	 */
+	public ParameterGrid(List<PropertyDescriptor> parameters) {
+		this(parameters.toArray(new PropertyDescriptor[parameters.size()]));
+	}
+
+	/**
+	 * Gets the number of configurations
+	 * @return The number of configurations
+	 */
+	public long size() {
+		return _size;
+	}
+
+	/**
+	 * Gets the number of parameters
+	 * @return The number of axes
+	 */
+	public int getAxisCount() {
+		return _values.length;
+	}
+
+	/**
+	 * Gets the number of allowed values of a parameter
+	 * @param axis The index of the parameter
+	 * @return The number of allowed values
+	 */
+	public int getAxisLength(int axis) {
+		return _values[axis].length;
+	}
+
+	/**
+	 * Fills the values of a configuration of the grid
+	 * @param index The index of the configuration, from 0 to {@link #size()} - 1
+	 * @param values The values of all the parameters, where to set the values of the grid parameters
+	 */
+	void fill(long index, long[] values) {
+		// Decode the index as a number with a digit for each axis, the last axis changing faster
+		for (int axis = _values.length - 1; axis >= 0; axis--) {
+			int length = _values[axis].length;
+			values[_indexes[axis]] = _values[axis][(int)(index % length)];
+			index /= length;
+		}
+	}
+
+	/**
+	 * Gets a configuration of the grid
+	 * @param index The index of the configuration, from 0 to {@link #size()} - 1
+	 * @param base The configuration holding the values of the parameters outside the grid
+	 * @return The configuration
+	 */
+	public PkfConfiguration get(long index, PkfConfiguration base) {
+		long[] values = base.values();
+		fill(index, values);
+		return PkfConfiguration.of(values);
+	}
+
+	/**
+	 * Gets the allowed values of a parameter
+	 * @param descriptor The descriptor of the parameter
+	 * @return The allowed values, from the min to the max
+	 * @throws IllegalArgumentException If the parameter is readonly, or has no range
+	 */
+	private static long[] getAllowedValues(PropertyDescriptor descriptor) {
+		if (descriptor.isReadOnly())
+			throw new IllegalArgumentException(String.format("The property %s is readonly", descriptor.getID()));
+		if (descriptor.getType() == PropertyType.BOOLEAN)
+			return new long[] { 0, 1 };
+		if (descriptor.getMin() == PropertyDescriptor.NO_VALUE || descriptor.getMax() == PropertyDescriptor.NO_VALUE)
+			throw new IllegalArgumentException(String.format("The property %s has no range", descriptor.getID()));
+
+		long step = (descriptor.getStep() != PropertyDescriptor.NO_VALUE) ? descriptor.getStep() : 1;
+		long[] values = new long[(int)((descriptor.getMax() - descriptor.getMin()) / step + 1)];
+		for (int i = 0; i < values.length; i++)
+			values[i] = descriptor.getMin() + i * step;
+		return values;
+	}
+
+}
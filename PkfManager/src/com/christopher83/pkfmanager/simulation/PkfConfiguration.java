@@ -0,0 +1,213 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.christopher83.framework.properties.PropertyBatch;
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.properties.PropertyHashTable;
+import com.christopher83.framework.properties.PropertyType;
+import com.christopher83.pkfmanager.PkfDescriptors;
+
+/**
+ * Class for an immutable configuration of the filter parameters, holding a value
+ * for each writable property described by {@link PkfDescriptors#ALL}
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public final class PkfConfiguration {
+
+	// The descriptors of the parameters
+	private static final List<PropertyDescriptor> DESCRIPTORS = PkfDescriptors.ALL;
+
+	private final long[] _values; // The values of the parameters, by descriptor index (booleans as 0 or 1)
+
+	/**
+	 * Class constructor
+	 * @param values The values of the parameters, by descriptor index, not copied
+	 */
+	private PkfConfiguration(long[] values) {
+		_values = values;
+	}
+
+	/**
+	 * Creates the configuration with the default value of each parameter
+	 * @return The default configuration
+	 */
+	public static PkfConfiguration defaults() {
+		long[] values = new long[DESCRIPTORS.size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = DESCRIPTORS.get(i).getDefaultValue();
+		return new PkfConfiguration(values);
+	}
+
+	/**
+	 * Creates a configuration from the values of the parameters, without validating them
+	 * @param values The values of the parameters, by descriptor index, not copied
+	 * @return The new configuration
+	 */
+	static PkfConfiguration of(long[] values) {
+		return new PkfConfiguration(values);
+	}
+
+	/**
+	 * Gets a copy of the values of the parameters
+	 * @return The values of the parameters, by descriptor index
+	 */
+	long[] values() {
+		return _values.clone();
+	}
+
+	/**
+	 * Gets the value of a parameter
+	 * @param descriptor The descriptor of the parameter
+	 * @return The value of the parameter (booleans as 0 or 1), or {@link PropertyDescriptor#NO_VALUE} for the readonly properties
+	 */
+	public long get(PropertyDescriptor descriptor) {
+		return _values[indexOf(descriptor)];
+	}
+
+	/**
+	 * Gets the value of a boolean parameter
+	 * @param descriptor The descriptor of the parameter
+	 * @return The value of the parameter
+	 */
+	public boolean getBoolean(PropertyDescriptor descriptor) {
+		return get(descriptor) != 0;
+	}
+
+	/**
+	 * Creates a copy of the configuration with the value of a parameter changed
+	 * @param descriptor The descriptor of the parameter
+	 * @param value The new value of the parameter (booleans as 0 or 1)
+	 * @return The new configuration
+	 * @throws IllegalArgumentException If the parameter is readonly or the value is outside its range
+	 */
+	public PkfConfiguration with(PropertyDescriptor descriptor, long value) {
+		int index = indexOf(descriptor);
+		if (descriptor.isReadOnly())
+			throw new IllegalArgumentException(String.format("The property %s is readonly", descriptor.getID()));
+		if (!isAllowed(descriptor, value))
+			throw new IllegalArgumentException(String.format("The value %d is not allowed for the property %s", value, descriptor.getID()));
+
+		long[] values = _values.clone();
+		values[index] = value;
+		return new PkfConfiguration(values);
+	}
+
+	/**
+	 * Creates the batch applying the configuration to the properties, as a profile.
+	 * Only the writable parameters contained inside the properties are set
+	 * @param properties The properties where to apply the configuration
+	 * @return The batch of the writes, to commit
+	 */
+	public PropertyBatch toBatch(PropertyHashTable properties) {
+		PropertyBatch batch = properties.beginBatch();
+		for (int i = 0; i < _values.length; i++) {
+			PropertyDescriptor descriptor = DESCRIPTORS.get(i);
+			if (descriptor.isReadOnly() || properties.get(descriptor.getID()) == null)
+				continue;
+
+			// Box the value with the type of the property
+			switch (descriptor.getType()) {
+				case BOOLEAN:
+					batch.set(descriptor.getID(), Boolean.valueOf(_values[i] != 0));
+					break;
+				case LONG:
+					batch.set(descriptor.getID(), Long.valueOf(_values[i]));
+					break;
+				case STRING:
+					batch.set(descriptor.getID(), String.valueOf(_values[i]));
+					break;
+				default:
+					batch.set(descriptor.getID(), Integer.valueOf((int)_values[i]));
+					break;
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * Checks if a value is inside the range, and aligned to the step, declared for a parameter
+	 * @param descriptor The descriptor of the parameter
+	 * @param value The value to check (booleans as 0 or 1)
+	 * @return True if the value is allowed
+	 */
+	public static boolean isAllowed(PropertyDescriptor descriptor, long value) {
+		if (descriptor.getType() == PropertyType.BOOLEAN)
+			return value == 0 || value == 1;
+		long min = descriptor.getMin();
+		long max = descriptor.getMax();
+		long step = descriptor.getStep();
+		if (min != PropertyDescriptor.NO_VALUE && value < min)
+			return false;
+		if (max != PropertyDescriptor.NO_VALUE && value > max)
+			return false;
+		return step == PropertyDescriptor.NO_VALUE || (value - (min != PropertyDescriptor.NO_VALUE ? min : 0)) % step == 0;
+	}
+
+	/**
+	 * Gets the index of a descriptor
+	 * @param descriptor The descriptor of the parameter
+	 * @return The index of the descriptor
+	 * @throws IllegalArgumentException If the descriptor is not a filter parameter
+	 */
+	static int indexOf(PropertyDescriptor descriptor) {
+		int index = DESCRIPTORS.indexOf(descriptor);
+		if (index < 0)
+			throw new IllegalArgumentException(String.format("Unknown property %s", descriptor));
+		return index;
+	}
+
+	/**
+	 * Checks if two configurations hold the same values
+	 * @param other The other configuration
+	 * @return True if the values are the same
+	 */
+	@Override
+	public boolean equals(Object other) {
+		return (other instanceof PkfConfiguration) && Arrays.equals(_values, ((PkfConfiguration)other)._values);
+	}
+
+	/**
+	 * Gets the hash code of the values
+	 * @return The hash code
+	 */
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(_values);
+	}
+
+	/**
+	 * Gets the string representation of the writable parameters
+	 * @return The parameters as "name=value" pairs
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < _values.length; i++) {
+			PropertyDescriptor descriptor = DESCRIPTORS.get(i);
+			if (descriptor.isReadOnly())
+				continue;
+			if (text.length() > 0)
+				text.append(", ");
+			text.append(descriptor.getID()).append('=').append(_values[i]);
+		}
+		return text.toString();
+	}
+
+}
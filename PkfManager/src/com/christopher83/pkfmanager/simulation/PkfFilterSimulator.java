@@ -0,0 +1,190 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+import com.christopher83.pkfmanager.PkfDescriptors;
+
+/**
+ * Class for the simulator of the decision logic of the Phantom Key Presses Filter module,
+ * replaying a trace of events with a configuration of the filter parameters.
+ * <p>
+ * HOME key: the first press opens a window lasting the report wait, the presses inside the window
+ * are collected and, when the window ends, reported if the interrupts received meanwhile are not
+ * more than the allowed ones, otherwise ignored. The reported presses are delayed till the window end.
+ * <p>
+ * MENU and BACK keys: each press is validated by the interrupt checks, performed one per check period,
+ * and ignored if an invalid key error arrives during the checks. After an error all the presses are
+ * ignored for the first error wait, extended by the last error wait after each following error.
+ * The reported presses are delayed by the time spent for the checks.
+ * <p>
+ * The simulation is a single pass over the primitive arrays of the trace, without allocations
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PkfFilterSimulator {
+
+	// Default time (in us) spent by each interrupt check
+	public static final long DEFAULT_CHECK_PERIOD = 1000;
+
+	// Microseconds in a millisecond, the unit of the wait parameters
+	private static final long US_PER_MS = 1000;
+
+	private final long _checkPeriod; // The time (in us) spent by each interrupt check
+
+	/**
+	 * Class constructor
+	 */
+	public PkfFilterSimulator() {
+		this(DEFAULT_CHECK_PERIOD);
+	}
+
+	/**
+	 * Class constructor
+	 * @param checkPeriod The time (in us) spent by each interrupt check of the MENU and BACK keys
+	 */
+	public PkfFilterSimulator(long checkPeriod) {
+		_checkPeriod = checkPeriod;
+	}
+
+	/**
+	 * Replays a trace with a configuration
+	 * @param trace The trace of the events
+	 * @param configuration The configuration of the filter parameters
+	 * @return The result of the simulation
+	 */
+	public SimulationResult simulate(EventTrace trace, PkfConfiguration configuration) {
+		SimulationResult result = new SimulationResult();
+		simulate(trace, configuration, result);
+		return result;
+	}
+
+	/**
+	 * Replays a trace with a configuration, accumulating the counters inside an existing result
+	 * @param trace The trace of the events
+	 * @param configuration The configuration of the filter parameters
+	 * @param result The result where to accumulate the counters
+	 */
+	public void simulate(EventTrace trace, PkfConfiguration configuration, SimulationResult result) {
+		// Get the parameters once, converting the waits to us
+		boolean homeEnabled = configuration.getBoolean(PkfDescriptors.HOMEKEY_FILTER_STATUS);
+		long homeAllowedIrqs = configuration.get(PkfDescriptors.HOMEKEY_ALLOWED_IRQS);
+		long homeReportWait = configuration.get(PkfDescriptors.HOMEKEY_REPORT_WAIT) * US_PER_MS;
+		boolean touchEnabled = configuration.getBoolean(PkfDescriptors.TOUCHKEYS_FILTER_STATUS);
+		long touchChecksTime = configuration.get(PkfDescriptors.TOUCHKEYS_INTERRUPT_CHECKS) * _checkPeriod;
+		long touchFirstErrWait = configuration.get(PkfDescriptors.TOUCHKEYS_FIRSTERR_WAIT) * US_PER_MS;
+		long touchLastErrWait = configuration.get(PkfDescriptors.TOUCHKEYS_LASTERR_WAIT) * US_PER_MS;
+
+		// State of the HOME key window
+		boolean homeOpen = false;  // Flag indicating if a window is open
+		long homeEnd = 0;          // The end time of the window
+		long homeIrqs = 0;         // The interrupts received inside the window
+		long homeGenuine = 0;      // The genuine presses collected inside the window
+		long homePhantom = 0;      // The phantom presses collected inside the window
+		long homeTimes = 0;        // The sum of the times of the genuine presses collected
+		long homeFirst = 0;        // The time of the first genuine press collected
+
+		// State of the MENU and BACK keys checks
+		long touchBlockEnd = Long.MIN_VALUE; // The end time of the wait after the errors
+		boolean touchPending = false;        // Flag indicating if a press is being checked
+		long touchEnd = 0;                   // The end time of the checks
+		boolean touchPhantom = false;        // Flag indicating if the checked press is a phantom one
+		boolean touchFailed = false;         // Flag indicating if an error arrived during the checks
+
+		long[] times = trace.times();
+		byte[] types = trace.types();
+		int size = trace.size();
+		for (int i = 0; i <= size; i++) {
+			// Past the last event, close the pending decisions
+			long time = (i < size) ? times[i] : Long.MAX_VALUE;
+
+			// Close the HOME key window, if ended
+			if (homeOpen && time >= homeEnd) {
+				if (homeIrqs <= homeAllowedIrqs)
+					result.pass(homeGenuine, homePhantom, homeGenuine * homeEnd - homeTimes, (homeGenuine > 0) ? homeEnd - homeFirst : 0);
+				else
+					result.ignore(homeGenuine, homePhantom);
+				homeOpen = false;
+			}
+
+			// Close the checks of the MENU or BACK key press, if ended
+			if (touchPending && time >= touchEnd) {
+				if (touchFailed)
+					result.ignore(touchPhantom ? 0 : 1, touchPhantom ? 1 : 0);
+				else
+					result.pass(touchPhantom ? 0 : 1, touchPhantom ? 1 : 0, touchPhantom ? 0 : touchChecksTime, touchPhantom ? 0 : touchChecksTime);
+				touchPending = false;
+			}
+			if (i == size)
+				break;
+
+			// Handle the event
+			boolean phantom = (types[i] & EventTrace.PHANTOM) != 0;
+			switch (types[i] & EventTrace.TYPE_MASK) {
+				case EventTrace.HOME_PRESS:
+					if (!homeEnabled) {
+						result.pass(phantom ? 0 : 1, phantom ? 1 : 0, 0, 0);
+						break;
+					}
+					if (!homeOpen) {
+						homeOpen = true;
+						homeEnd = time + homeReportWait;
+						homeIrqs = 0;
+						homeGenuine = 0;
+						homePhantom = 0;
+						homeTimes = 0;
+					}
+					if (phantom)
+						homePhantom++;
+					else {
+						if (homeGenuine == 0)
+							homeFirst = time;
+						homeGenuine++;
+						homeTimes += time;
+					}
+					break;
+
+				case EventTrace.HOME_IRQ:
+					if (homeOpen)
+						homeIrqs++;
+					break;
+
+				case EventTrace.TOUCH_PRESS:
+					if (!touchEnabled)
+						result.pass(phantom ? 0 : 1, phantom ? 1 : 0, 0, 0);
+					else if (time < touchBlockEnd || touchPending)
+						result.ignore(phantom ? 0 : 1, phantom ? 1 : 0);
+					else {
+						touchPending = true;
+						touchEnd = time + touchChecksTime;
+						touchPhantom = phantom;
+						touchFailed = false;
+					}
+					break;
+
+				case EventTrace.TOUCH_ERROR:
+					if (!touchEnabled)
+						break;
+					if (touchPending)
+						touchFailed = true;
+					touchBlockEnd = (time >= touchBlockEnd) ? time + touchFirstErrWait : Math.max(touchBlockEnd, time + touchLastErrWait);
+					break;
+
+				default:
+					break;
+			}
+		}
+	}
+
+}
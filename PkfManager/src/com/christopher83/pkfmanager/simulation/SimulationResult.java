@@ -0,0 +1,168 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+/**
+ * Class for the result of a simulation, comparing the decisions of the filter with the labels of the trace.
+ * The result is mutable, so the same instance can be reused by many simulations
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class SimulationResult {
+
+	long _genuinePassed;   // The presses made by the user and reported
+	long _genuineIgnored;  // The presses made by the user and ignored by the filter
+	long _phantomPassed;   // The phantom presses reported
+	long _phantomIgnored;  // The phantom presses ignored by the filter
+	long _totalLatency;    // The total delay (in us) added to the reported genuine presses
+	long _maxLatency;      // The max delay (in us) added to a reported genuine press
+
+	/**
+	 * Clears the result
+	 */
+	public void reset() {
+		_genuinePassed = 0;
+		_genuineIgnored = 0;
+		_phantomPassed = 0;
+		_phantomIgnored = 0;
+		_totalLatency = 0;
+		_maxLatency = 0;
+	}
+
+	/**
+	 * Creates a copy of the result
+	 * @return The new result, with the same counters
+	 */
+	SimulationResult copy() {
+		SimulationResult result = new SimulationResult();
+		result._genuinePassed = _genuinePassed;
+		result._genuineIgnored = _genuineIgnored;
+		result._phantomPassed = _phantomPassed;
+		result._phantomIgnored = _phantomIgnored;
+		result._totalLatency = _totalLatency;
+		result._maxLatency = _maxLatency;
+		return result;
+	}
+
+	/**
+	 * Counts the reported presses
+	 * @param genuine The number of reported presses made by the user
+	 * @param phantom The number of reported phantom presses
+	 * @param totalLatency The total delay (in us) added to the genuine presses
+	 * @param maxLatency The max delay (in us) added to a genuine press
+	 */
+	void pass(long genuine, long phantom, long totalLatency, long maxLatency) {
+		_genuinePassed += genuine;
+		_phantomPassed += phantom;
+		_totalLatency += totalLatency;
+		if (maxLatency > _maxLatency)
+			_maxLatency = maxLatency;
+	}
+
+	/**
+	 * Counts the ignored presses
+	 * @param genuine The number of ignored presses made by the user
+	 * @param phantom The number of ignored phantom presses
+	 */
+	void ignore(long genuine, long phantom) {
+		_genuineIgnored += genuine;
+		_phantomIgnored += phantom;
+	}
+
+	/**
+	 * Gets the number of presses made by the user and reported
+	 * @return The number of genuine passed presses
+	 */
+	public long getGenuinePassed() {
+		return _genuinePassed;
+	}
+
+	/**
+	 * Gets the number of presses made by the user and wrongly ignored
+	 * @return The number of genuine ignored presses
+	 */
+	public long getGenuineIgnored() {
+		return _genuineIgnored;
+	}
+
+	/**
+	 * Gets the number of phantom presses wrongly reported
+	 * @return The number of phantom passed presses
+	 */
+	public long getPhantomPassed() {
+		return _phantomPassed;
+	}
+
+	/**
+	 * Gets the number of phantom presses ignored
+	 * @return The number of phantom ignored presses
+	 */
+	public long getPhantomIgnored() {
+		return _phantomIgnored;
+	}
+
+	/**
+	 * Gets the total number of ignored presses, as counted by the module
+	 * @return The number of ignored presses
+	 */
+	public long getIgnored() {
+		return _genuineIgnored + _phantomIgnored;
+	}
+
+	/**
+	 * Gets the fraction of phantom presses ignored
+	 * @return The filtered fraction, from 0 to 1 (1 if there are no phantom presses)
+	 */
+	public double getFilterRate() {
+		long phantoms = _phantomPassed + _phantomIgnored;
+		return (phantoms > 0) ? (double)_phantomIgnored / phantoms : 1;
+	}
+
+	/**
+	 * Gets the fraction of genuine presses wrongly ignored
+	 * @return The false reject fraction, from 0 to 1 (0 if there are no genuine presses)
+	 */
+	public double getFalseRejectRate() {
+		long genuines = _genuinePassed + _genuineIgnored;
+		return (genuines > 0) ? (double)_genuineIgnored / genuines : 0;
+	}
+
+	/**
+	 * Gets the average delay added to the reported genuine presses
+	 * @return The average latency (in us)
+	 */
+	public double getAverageLatency() {
+		return (_genuinePassed > 0) ? (double)_totalLatency / _genuinePassed : 0;
+	}
+
+	/**
+	 * Gets the max delay added to a reported genuine press
+	 * @return The max latency (in us)
+	 */
+	public long getMaxLatency() {
+		return _maxLatency;
+	}
+
+	/**
+	 * Gets the string representation of the result
+	 * @return The counters and the latencies
+	 */
+	@Override
+	public String toString() {
+		return String.format("genuine %d passed/%d ignored, phantom %d passed/%d ignored, latency avg %.0f us max %d us",
+			_genuinePassed, _genuineIgnored, _phantomPassed, _phantomIgnored, getAverageLatency(), _maxLatency);
+	}
+
+}
@@ -0,0 +1,83 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+/**
+ * Class for a configuration evaluated by a sweep, with its simulation result and its score
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class SweepCandidate implements Comparable<SweepCandidate> {
+
+	private final PkfConfiguration _configuration; // The evaluated configuration
+	private final SimulationResult _result;        // The result of the simulation over all the traces
+	private final double _score;                   // The score, higher is better
+
+	/**
+	 * Class constructor
+	 * @param configuration The evaluated configuration
+	 * @param result The result of the simulation over all the traces
+	 * @param score The score, higher is better
+	 */
+	public SweepCandidate(PkfConfiguration configuration, SimulationResult result, double score) {
+		_configuration = configuration;
+		_result = result;
+		_score = score;
+	}
+
+	/**
+	 * Gets the evaluated configuration
+	 * @return The configuration
+	 */
+	public PkfConfiguration getConfiguration() {
+		return _configuration;
+	}
+
+	/**
+	 * Gets the result of the simulation over all the traces
+	 * @return The simulation result
+	 */
+	public SimulationResult getResult() {
+		return _result;
+	}
+
+	/**
+	 * Gets the score
+	 * @return The score, higher is better
+	 */
+	public double getScore() {
+		return _score;
+	}
+
+	/**
+	 * Compares the scores, ordering the best candidates first
+	 * @param other The other candidate
+	 * @return A negative number if this candidate is better
+	 */
+	@Override
+	public int compareTo(SweepCandidate other) {
+		return Double.compare(other._score, _score);
+	}
+
+	/**
+	 * Gets the string representation of the candidate
+	 * @return The score, the configuration and the result
+	 */
+	@Override
+	public String toString() {
+		return String.format("%.4f [%s] %s", _score, _configuration, _result);
+	}
+
+}
@@ -0,0 +1,227 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class for the sweep engine, evaluating all the configurations of a grid against some recorded traces
+ * in parallel on all the cores, and ranking them by the phantom presses filtered against the genuine
+ * presses lost and the latency added.
+ * The grid is split in chunks evaluated by a fixed pool of threads, each chunk keeping its own best
+ * candidates, so the threads don't share any state until the final merge
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class SweepEngine {
+
+	// Name prefix of the sweep threads
+	private static final String THREAD_NAME = "PkfSweep-";
+
+	// Number of chunks for each thread, so the threads finishing early can take the remaining work
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	// Default weight of the genuine presses ignored
+	public static final double DEFAULT_FALSE_REJECT_WEIGHT = 4.0;
+
+	// Default weight of the average latency (in ms)
+	public static final double DEFAULT_LATENCY_WEIGHT = 0.01;
+
+	private static final double US_PER_MS = 1000.0;
+
+	private final PkfFilterSimulator _simulator; // The simulator evaluating the configurations
+	private final int _threads;                  // The number of threads used by the sweeps
+	private double _falseRejectWeight;           // The weight of the genuine presses ignored
+	private double _latencyWeight;               // The weight of the average latency (in ms)
+
+	/**
+	 * Class constructor, using all the cores
+	 */
+	public SweepEngine() {
+		this(new PkfFilterSimulator(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Class constructor
+	 * @param simulator The simulator evaluating the configurations
+	 * @param threads The number of threads used by the sweeps
+	 */
+	public SweepEngine(PkfFilterSimulator simulator, int threads) {
+		_simulator = simulator;
+		_threads = Math.max(1, threads);
+		_falseRejectWeight = DEFAULT_FALSE_REJECT_WEIGHT;
+		_latencyWeight = DEFAULT_LATENCY_WEIGHT;
+	}
+
+	/**
+	 * Sets the weights of the penalties subtracted from the filter rate to obtain the score
+	 * @param falseRejectWeight The weight of the rate of genuine presses ignored
+	 * @param latencyWeight The weight of the average latency (in ms) added to the genuine presses
+	 */
+	public void setWeights(double falseRejectWeight, double latencyWeight) {
+		_falseRejectWeight = falseRejectWeight;
+		_latencyWeight = latencyWeight;
+	}
+
+	/**
+	 * Gets the number of threads used by the sweeps
+	 * @return The number of threads
+	 */
+	public int getThreads() {
+		return _threads;
+	}
+
+	/**
+	 * Computes the score of a simulation result
+	 * @param result The result of a configuration over all the traces
+	 * @return The score, higher is better
+	 */
+	public double score(SimulationResult result) {
+		return result.getFilterRate() - _falseRejectWeight * result.getFalseRejectRate()
+			- _latencyWeight * result.getAverageLatency() / US_PER_MS;
+	}
+
+	/**
+	 * Evaluates all the configurations of a grid, returning the best ones
+	 * @param grid The grid of the configurations to evaluate
+	 * @param base The configuration holding the values of the parameters outside the grid
+	 * @param traces The recorded traces, each configuration result is the sum over all of them
+	 * @param count The max number of candidates to return
+	 * @return The best candidates, the best first
+	 * @throws InterruptedException If the sweep has been interrupted
+	 */
+	public List<SweepCandidate> sweep(final ParameterGrid grid, final PkfConfiguration base,
+			final List<EventTrace> traces, final int count) throws InterruptedException {
+		if (count <= 0)
+			return new ArrayList<SweepCandidate>();
+
+		// Evaluate a small grid on the calling thread
+		long size = grid.size();
+		if (_threads == 1 || size < _threads)
+			return rank(evaluate(grid, base, traces, 0, size, count), count);
+
+		// Split the grid in chunks
+		ExecutorService executor = Executors.newFixedThreadPool(_threads, new ThreadFactory() {
+			private final AtomicInteger _count = new AtomicInteger(); // The number of created threads
+
+			/**
+			 * Creates a sweep thread
+			 */
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, THREAD_NAME + _count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			long chunks = Math.min(size, (long)_threads * CHUNKS_PER_THREAD);
+			List<Future<PriorityQueue<SweepCandidate>>> futures = new ArrayList<Future<PriorityQueue<SweepCandidate>>>();
+			for (long chunk = 0; chunk < chunks; chunk++) {
+				final long from = size * chunk / chunks;
+				final long to = size * (chunk + 1) / chunks;
+				futures.add(executor.submit(new Callable<PriorityQueue<SweepCandidate>>() {
+					/**
+					 * Evaluates the chunk
+					 */
+					@Override
+					public PriorityQueue<SweepCandidate> call() {
+						return evaluate(grid, base, traces, from, to, count);
+					}
+				}));
+			}
+
+			// Merge the best candidates of the chunks
+			PriorityQueue<SweepCandidate> best = new PriorityQueue<SweepCandidate>(count + 1, Collections.reverseOrder());
+			for (Future<PriorityQueue<SweepCandidate>> future : futures) {
+				try {
+					for (SweepCandidate candidate : future.get())
+						offer(best, candidate, count);
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("The sweep has failed", e.getCause());
+				}
+			}
+			return rank(best, count);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Evaluates a range of configurations of a grid
+	 * @param grid The grid of the configurations to evaluate
+	 * @param base The configuration holding the values of the parameters outside the grid
+	 * @param traces The recorded traces
+	 * @param from The index of the first configuration to evaluate
+	 * @param to The index after the last configuration to evaluate
+	 * @param count The max number of candidates to keep
+	 * @return The best candidates of the range, the worst at the head
+	 */
+	private PriorityQueue<SweepCandidate> evaluate(ParameterGrid grid, PkfConfiguration base,
+			List<EventTrace> traces, long from, long to, int count) {
+		PriorityQueue<SweepCandidate> best = new PriorityQueue<SweepCandidate>(count + 1, Collections.reverseOrder());
+		SimulationResult result = new SimulationResult();
+		long[] values = base.values();
+		for (long index = from; index < to && !Thread.currentThread().isInterrupted(); index++) {
+			// Simulate the configuration over all the traces, reusing the same result
+			grid.fill(index, values);
+			PkfConfiguration configuration = PkfConfiguration.of(values.clone());
+			result.reset();
+			for (int i = 0; i < traces.size(); i++)
+				_simulator.simulate(traces.get(i), configuration, result);
+
+			// Keep the configuration only if it's among the best ones
+			double score = score(result);
+			if (best.size() < count || score > best.peek().getScore())
+				offer(best, new SweepCandidate(configuration, result.copy(), score), count);
+		}
+		return best;
+	}
+
+	/**
+	 * Adds a candidate to the best ones, removing the worst if there are too many
+	 * @param best The best candidates, the worst at the head
+	 * @param candidate The candidate to add
+	 * @param count The max number of candidates to keep
+	 */
+	private static void offer(PriorityQueue<SweepCandidate> best, SweepCandidate candidate, int count) {
+		best.add(candidate);
+		if (best.size() > count)
+			best.poll();
+	}
+
+	/**
+	 * Sorts the best candidates
+	 * @param best The best candidates, the worst at the head
+	 * @param count The max number of candidates to return
+	 * @return The best candidates, the best first
+	 */
+	private static List<SweepCandidate> rank(PriorityQueue<SweepCandidate> best, int count) {
+		List<SweepCandidate> ranking = new ArrayList<SweepCandidate>(best);
+		Collections.sort(ranking);
+		return (ranking.size() > count) ? ranking.subList(0, count) : ranking;
+	}
+
+}
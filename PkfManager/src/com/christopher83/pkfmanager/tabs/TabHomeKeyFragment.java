@@ -18,8 +18,10 @@ package com.christopher83.pkfmanager.tabs;
 import com.christopher83.framework.controls.TabPreferenceListFragment;
 import com.christopher83.framework.properties.PropertyHashTable;
 import com.christopher83.pkfmanager.PkfCommon;
+import com.christopher83.pkfmanager.PkfSamplerService;
 import com.christopher83.pkfmanager.R;
 
+import android.content.SharedPreferences;
 import android.os.Bundle;
 
 /**
@@ -57,8 +59,21 @@ public class TabHomeKeyFragment extends TabPreferenceListFragment {
 		// Invoke the base class method
 		super.onCreate(b);
 
-		// Set the ignored key presses preference to update its summary with the current value of the related property when clicked
-		initUpdateablePropertyPreference(R.string.id_homekey_ignored_kp);
+		// Set the ignored key presses preference to update its summary with the current value of the related property while the tab is visible
+		initLivePropertyPreference(R.string.id_homekey_ignored_kp);
+	}
+
+	/**
+	 * Manages the shared preference changes, restarting the sampling service when the auto-tune is switched
+	 */
+	@Override
+	public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+		// Invoke the base class method
+		super.onSharedPreferenceChanged(sharedPreferences, key);
+
+		// The sampling service starts or stops the auto-tune following the preference
+		if (getString(R.string.key_homekey_autotune).equals(key))
+			PkfSamplerService.start(this.getActivity(), 0);
 	}
 
 }
\ No newline at end of file
@@ -57,8 +57,8 @@ public class TabTouchKeysFragment extends TabPreferenceListFragment {
 		// Invoke the base class creation method
 		super.onCreate(b);
 
-		// Set the ignored key presses preference to update its summary with the current value of the related property when clicked
-		initUpdateablePropertyPreference(R.string.id_touchkeys_ignored_kp);
+		// Set the ignored key presses preference to update its summary with the current value of the related property while the tab is visible
+		initLivePropertyPreference(R.string.id_touchkeys_ignored_kp);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,349 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.tuning;
+
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.sampling.interfaces.IClock;
+import com.christopher83.pkfmanager.PkfDescriptors;
+import com.christopher83.pkfmanager.tuning.interfaces.ITuningTarget;
+
+/**
+ * Class for the closed-loop auto-tuner of the HOME key filter parameters, keeping the rate of the ignored
+ * key presses inside a target band by changing the allowed interrupts and the report wait one step at a time.
+ * <p>
+ * The two parameters are moved along a single strictness ladder: below the band the filter is tightened
+ * lowering the allowed interrupts and, once at their min, lengthening the report wait; above the band
+ * it's relaxed undoing the same steps in reverse order, back to the report wait found at the start and then
+ * raising the allowed interrupts, so each change moves the rate back toward the band.
+ * The values never leave the ranges declared by the descriptors.
+ * <p>
+ * A rate below the band tightens the filter only with evidence of phantom presses, measured over a longer
+ * evidence window: enough samples of the counter, a few ignored presses and a rate still below the band.
+ * A device without phantom presses ignores nothing, so it's considered inside the band instead of being
+ * tightened up to the strictest values, and a short window with a single ignored press is not enough.
+ * <p>
+ * To avoid thrashing the module: the rate must stay out of the band for some consecutive evaluations,
+ * no evaluation is made until a whole measurement window has elapsed after a change, two changes are
+ * separated by a min interval, doubled at each reversal of the direction till the rate stays inside the band
+ * for a whole day, and the changes inside a day are limited
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class HomeKeyAutoTuner {
+
+	// Default target band of the ignored key presses per minute
+	public static final double DEFAULT_LOW_RATE = 0.05;
+	public static final double DEFAULT_HIGH_RATE = 0.5;
+
+	// Default interval (in ms) between two evaluations
+	public static final long DEFAULT_EVALUATION_INTERVAL = 5 * 60 * 1000L;
+
+	// Default window (in ms) measuring the rate, also the settle time after a change
+	public static final long DEFAULT_WINDOW = 30 * 60 * 1000L;
+
+	// Default number of consecutive evaluations out of the band needed for a change
+	public static final int DEFAULT_CONFIRMATIONS = 3;
+
+	// Default min interval (in ms) between two changes
+	public static final long DEFAULT_MIN_CHANGE_INTERVAL = 60 * 60 * 1000L;
+
+	// Default max number of changes inside a day
+	public static final int DEFAULT_MAX_CHANGES_PER_DAY = 8;
+
+	// Default evidence window (in ms), with the min number of counter samples and of ignored presses inside it,
+	// needed to tighten the filter. The sampler backs off while the counter is unchanged, so a quiet window holds few samples
+	public static final long DEFAULT_EVIDENCE_WINDOW = 3 * 60 * 60 * 1000L;
+	public static final int DEFAULT_MIN_SAMPLES = 3;
+	public static final long DEFAULT_MIN_IGNORED = 3;
+
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	private final IClock _clock;          // The clock scheduling the evaluations
+	private final ITuningTarget _target;  // The filter being tuned
+	private final TuningAudit _audit;     // The audit log of the changes
+	private double _lowRate;              // The lower bound of the target band (presses per minute)
+	private double _highRate;             // The upper bound of the target band (presses per minute)
+	private long _evaluationInterval;     // The interval (in ms) between two evaluations
+	private long _window;                 // The window (in ms) measuring the rate
+	private int _confirmations;           // The consecutive evaluations out of the band needed for a change
+	private long _evidenceWindow;         // The window (in ms) measuring the evidence of phantom presses needed to tighten
+	private int _minSamples;              // The min number of counter samples inside the evidence window
+	private long _minIgnored;             // The min number of ignored presses inside the evidence window
+	private long _minChangeInterval;      // The min interval (in ms) between two changes
+	private long[] _changeTimes;          // The times of the latest changes, to limit the changes inside a day
+	private int _changeHead;              // The index of the oldest change time
+	private int _streak;                  // The consecutive evaluations above (positive) or below (negative) the band
+	private long _lastChange = NO_TIME;   // The time of the latest change
+	private int _lastDirection;           // The direction of the latest change, 1 if relaxed or -1 if tightened
+	private int _reversals;               // The reversals of the direction since the rate settled inside the band
+	private long _inBandSince = NO_TIME;  // The time since the rate is inside the band
+	private long _baseReportWait;         // The report wait found at the start, where the ladder turns
+	private long _evaluations;            // The number of evaluations
+	private boolean _running;             // Flag indicating if the evaluations are scheduled
+
+	// The task evaluating the rate and scheduling the next evaluation
+	private final Runnable _task = new Runnable() {
+		/**
+		 * Evaluates the rate
+		 */
+		@Override
+		public void run() {
+			synchronized (HomeKeyAutoTuner.this) {
+				if (!_running)
+					return;
+				evaluate();
+				_clock.schedule(this, _clock.now() + _evaluationInterval);
+			}
+		}
+	};
+
+	/**
+	 * Class constructor, with the default settings
+	 * @param clock The clock scheduling the evaluations
+	 * @param target The filter being tuned
+	 * @param audit The audit log of the changes
+	 */
+	public HomeKeyAutoTuner(IClock clock, ITuningTarget target, TuningAudit audit) {
+		_clock = clock;
+		_target = target;
+		_audit = audit;
+		setBand(DEFAULT_LOW_RATE, DEFAULT_HIGH_RATE);
+		setTiming(DEFAULT_EVALUATION_INTERVAL, DEFAULT_WINDOW, DEFAULT_CONFIRMATIONS);
+		setChangeLimits(DEFAULT_MIN_CHANGE_INTERVAL, DEFAULT_MAX_CHANGES_PER_DAY);
+		setEvidence(DEFAULT_EVIDENCE_WINDOW, DEFAULT_MIN_SAMPLES, DEFAULT_MIN_IGNORED);
+	}
+
+	/**
+	 * Sets the target band of the ignored key presses
+	 * @param lowRate The lower bound (presses per minute), below it the filter is tightened
+	 * @param highRate The upper bound (presses per minute), above it the filter is relaxed
+	 */
+	public synchronized void setBand(double lowRate, double highRate) {
+		if (lowRate > highRate)
+			throw new IllegalArgumentException(String.format("Invalid band %.2f-%.2f", lowRate, highRate));
+		_lowRate = lowRate;
+		_highRate = highRate;
+	}
+
+	/**
+	 * Sets the timing of the evaluations
+	 * @param evaluationInterval The interval (in ms) between two evaluations
+	 * @param window The window (in ms) measuring the rate, also the settle time after a change
+	 * @param confirmations The consecutive evaluations out of the band needed for a change
+	 */
+	public synchronized void setTiming(long evaluationInterval, long window, int confirmations) {
+		_evaluationInterval = Math.max(1, evaluationInterval);
+		_window = Math.max(1, window);
+		_confirmations = Math.max(1, confirmations);
+	}
+
+	/**
+	 * Sets the limits of the changes
+	 * @param minChangeInterval The min interval (in ms) between two changes
+	 * @param maxChangesPerDay The max number of changes inside a day
+	 */
+	public synchronized void setChangeLimits(long minChangeInterval, int maxChangesPerDay) {
+		_minChangeInterval = Math.max(0, minChangeInterval);
+		_changeTimes = new long[Math.max(1, maxChangesPerDay)];
+		for (int i = 0; i < _changeTimes.length; i++)
+			_changeTimes[i] = NO_TIME;
+		_changeHead = 0;
+	}
+
+	/**
+	 * Sets the evidence of phantom presses needed to tighten the filter, without it the rate is considered inside the band
+	 * @param evidenceWindow The window (in ms) measuring the evidence, not shorter than the window measuring the rate
+	 * @param minSamples The min number of counter samples inside the evidence window
+	 * @param minIgnored The min number of ignored presses inside the evidence window
+	 */
+	public synchronized void setEvidence(long evidenceWindow, int minSamples, long minIgnored) {
+		_evidenceWindow = Math.max(1, evidenceWindow);
+		_minSamples = Math.max(2, minSamples);
+		_minIgnored = Math.max(1, minIgnored);
+	}
+
+	/**
+	 * Starts the periodic evaluations
+	 */
+	public synchronized void start() {
+		if (_running)
+			return;
+		_running = true;
+		_streak = 0;
+		_reversals = 0;
+		_inBandSince = NO_TIME;
+		_baseReportWait = _target.getValue(PkfDescriptors.HOMEKEY_REPORT_WAIT);
+		_clock.schedule(_task, _clock.now() + _evaluationInterval);
+	}
+
+	/**
+	 * Stops the periodic evaluations
+	 */
+	public synchronized void stop() {
+		_running = false;
+		_clock.cancel(_task);
+	}
+
+	/**
+	 * Checks if the periodic evaluations are running
+	 * @return True if running
+	 */
+	public synchronized boolean isRunning() {
+		return _running;
+	}
+
+	/**
+	 * Gets the number of evaluations
+	 * @return The number of evaluations
+	 */
+	public synchronized long getEvaluations() {
+		return _evaluations;
+	}
+
+	/**
+	 * Gets the audit log of the changes
+	 * @return The audit log
+	 */
+	public TuningAudit getAudit() {
+		return _audit;
+	}
+
+	/**
+	 * Evaluates the rate of the ignored key presses, changing a parameter by one step if needed
+	 * @return True if a parameter has been changed
+	 */
+	public synchronized boolean evaluate() {
+		_evaluations++;
+		long now = _clock.now();
+
+		// Let the rate settle after a change, the window must measure only the new values
+		if (_lastChange != NO_TIME && now - _lastChange < _window) {
+			_streak = 0;
+			return false;
+		}
+
+		// Nothing to tune while the filter is disabled
+		if (_target.getValue(PkfDescriptors.HOMEKEY_FILTER_STATUS) == 0) {
+			_streak = 0;
+			return false;
+		}
+
+		// Measure the rate and update the consecutive evaluations out of the band
+		double rate = _target.getIgnoredRate(_window);
+		if (rate < 0) {
+			_streak = 0;
+			return false;
+		}
+		if (rate > _highRate)
+			_streak = Math.max(_streak, 0) + 1;
+		else if (rate < _lowRate && hasEvidence())
+			_streak = Math.min(_streak, 0) - 1;
+		else {
+			// Inside the band, the damping of the reversals ends once the rate has settled for a day
+			_streak = 0;
+			if (_inBandSince == NO_TIME)
+				_inBandSince = now;
+			else if (now - _inBandSince >= DAY)
+				_reversals = 0;
+			return false;
+		}
+		_inBandSince = NO_TIME;
+		if (Math.abs(_streak) < _confirmations)
+			return false;
+
+		// Respect the limits of the changes, a reversal of the direction must wait longer to damp the oscillations
+		int direction = (_streak > 0) ? 1 : -1;
+		int reversals = (direction == -_lastDirection) ? _reversals + 1 : _reversals;
+		long minChangeInterval = Math.min(DAY, _minChangeInterval << Math.min(reversals, 16));
+		if (_lastChange != NO_TIME && now - _lastChange < minChangeInterval)
+			return false;
+		long oldestChange = _changeTimes[_changeHead];
+		if (oldestChange != NO_TIME && now - oldestChange < DAY)
+			return false;
+
+		// Change a parameter by one step
+		boolean changed = (direction > 0) ? relax(now, rate) : tighten(now, rate);
+		if (changed) {
+			_lastChange = now;
+			_lastDirection = direction;
+			_reversals = reversals;
+			_changeTimes[_changeHead] = now;
+			_changeHead = (_changeHead + 1) % _changeTimes.length;
+			_streak = 0;
+		}
+		return changed;
+	}
+
+	/**
+	 * Checks if the evidence window holds enough evidence of phantom presses to tighten the filter
+	 * @return True if the evidence window has enough samples and ignored presses, with a rate below the band
+	 */
+	private boolean hasEvidence() {
+		long window = Math.max(_window, _evidenceWindow);
+		if (_target.getSampleCount(window) < _minSamples || _target.getIgnoredCount(window) < _minIgnored)
+			return false;
+		double rate = _target.getIgnoredRate(window);
+		return rate >= 0 && rate < _lowRate;
+	}
+
+	/**
+	 * Tightens the filter, lowering the allowed interrupts or, once at their min, lengthening the report wait
+	 * @param now The current time (in ms)
+	 * @param rate The measured rate
+	 * @return True if a parameter has been changed
+	 */
+	private boolean tighten(long now, double rate) {
+		PropertyDescriptor allowedIrqs = PkfDescriptors.HOMEKEY_ALLOWED_IRQS;
+		if (_target.getValue(allowedIrqs) > allowedIrqs.getMin())
+			return step(now, rate, allowedIrqs, -1, "below the band");
+		return step(now, rate, PkfDescriptors.HOMEKEY_REPORT_WAIT, 1, "below the band");
+	}
+
+	/**
+	 * Relaxes the filter, shortening the report wait back to the starting one while the allowed interrupts
+	 * are at their min, otherwise raising them
+	 * @param now The current time (in ms)
+	 * @param rate The measured rate
+	 * @return True if a parameter has been changed
+	 */
+	private boolean relax(long now, double rate) {
+		PropertyDescriptor allowedIrqs = PkfDescriptors.HOMEKEY_ALLOWED_IRQS;
+		PropertyDescriptor reportWait = PkfDescriptors.HOMEKEY_REPORT_WAIT;
+		if (_target.getValue(allowedIrqs) <= allowedIrqs.getMin() && _target.getValue(reportWait) > _baseReportWait)
+			return step(now, rate, reportWait, -1, "above the band");
+		return step(now, rate, allowedIrqs, 1, "above the band");
+	}
+
+	/**
+	 * Changes a parameter by one step, inside its declared range
+	 * @param now The current time (in ms)
+	 * @param rate The measured rate
+	 * @param descriptor The descriptor of the parameter
+	 * @param direction The direction of the change, 1 or -1
+	 * @param reason The reason of the change
+	 * @return True if the parameter has been changed
+	 */
+	private boolean step(long now, double rate, PropertyDescriptor descriptor, int direction, String reason) {
+		long step = (descriptor.getStep() != PropertyDescriptor.NO_VALUE) ? descriptor.getStep() : 1;
+		long oldValue = _target.getValue(descriptor);
+		long newValue = Math.max(descriptor.getMin(), Math.min(descriptor.getMax(), oldValue + direction * step));
+		if (newValue == oldValue || !_target.setValue(descriptor, newValue))
+			return false;
+		_audit.record(now, descriptor, oldValue, newValue, rate, reason);
+		return true;
+	}
+
+}
@@ -0,0 +1,107 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.tuning;
+
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.properties.PropertyHashTable;
+import com.christopher83.framework.properties.PropertyType;
+import com.christopher83.framework.sampling.CounterSampler;
+import com.christopher83.pkfmanager.tuning.interfaces.ITuningTarget;
+
+import android.content.SharedPreferences;
+
+/**
+ * Class for the tuning target applying the parameters to the module properties, measuring the rate
+ * with the sampler of the ignored key presses counter. The applied values are also stored inside
+ * the preferences, so they are restored at boot and shown by the tabs
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class PropertyTuningTarget implements ITuningTarget {
+
+	private final PropertyHashTable _properties; // The module properties
+	private final CounterSampler _sampler;       // The sampler of the ignored key presses counter
+	private final SharedPreferences _prefs;      // The preferences storing the applied values
+
+	/**
+	 * Class constructor
+	 * @param properties The module properties
+	 * @param sampler The sampler of the ignored key presses counter, sampled by someone else
+	 * @param prefs The preferences storing the applied values
+	 */
+	public PropertyTuningTarget(PropertyHashTable properties, CounterSampler sampler, SharedPreferences prefs) {
+		_properties = properties;
+		_sampler = sampler;
+		_prefs = prefs;
+	}
+
+	/**
+	 * Gets the rate of the ignored key presses, over the samples inside the window
+	 * @param window The window length (in ms) ending at the latest sample
+	 * @return The ignored key presses per minute, or a negative number if less than two samples are inside the window
+	 */
+	@Override
+	public double getIgnoredRate(long window) {
+		return _sampler.getRatePerMinute(window);
+	}
+
+	/**
+	 * Gets the number of the ignored key presses, over the samples inside the window
+	 * @param window The window length (in ms) ending at the latest sample
+	 * @return The ignored key presses, or a negative number if less than two samples are inside the window
+	 */
+	@Override
+	public long getIgnoredCount(long window) {
+		long increments = _sampler.getIncrements(window);
+		return (increments != CounterSampler.NO_VALUE) ? increments : -1;
+	}
+
+	/**
+	 * Gets the number of the samples of the ignored key presses counter
+	 * @param window The window length (in ms) ending at the latest sample
+	 * @return The number of samples inside the window
+	 */
+	@Override
+	public int getSampleCount(long window) {
+		return _sampler.getCount(window);
+	}
+
+	/**
+	 * Gets the current value of a parameter, read from the module
+	 * @param descriptor The descriptor of the parameter
+	 * @return The current value (booleans as 0 or 1), or the default value if not readable
+	 */
+	@Override
+	public long getValue(PropertyDescriptor descriptor) {
+		if (descriptor.getType() == PropertyType.BOOLEAN)
+			return _properties.getBoolean(descriptor.getID(), descriptor.getDefaultValue() != 0) ? 1 : 0;
+		return _properties.getInt(descriptor.getID(), (int)descriptor.getDefaultValue());
+	}
+
+	/**
+	 * Applies a new value of a parameter to the module, storing it inside the preferences
+	 * @param descriptor The descriptor of the parameter
+	 * @param value The new value
+	 * @return True if the value has been written to the module
+	 */
+	@Override
+	public boolean setValue(PropertyDescriptor descriptor, long value) {
+		if (!_properties.set(descriptor.getID(), Integer.valueOf((int)value)))
+			return false;
+		_prefs.edit().putInt(descriptor.getID(), (int)value).apply();
+		return true;
+	}
+
+}
@@ -0,0 +1,180 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.tuning;
+
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.sampling.VirtualClock;
+import com.christopher83.pkfmanager.simulation.EventTrace;
+import com.christopher83.pkfmanager.simulation.PkfConfiguration;
+import com.christopher83.pkfmanager.simulation.PkfFilterSimulator;
+import com.christopher83.pkfmanager.simulation.SimulationResult;
+import com.christopher83.pkfmanager.tuning.interfaces.ITuningTarget;
+
+/**
+ * Class for the tuning target replaying a recorded trace with the simulator, so an auto-tuner can be
+ * verified deterministically on a virtual clock, without touching the module.
+ * The clock time (in ms) is mapped to the trace time (in us) starting from the first event,
+ * the ignored key presses counter is considered sampled once per sampling interval
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class SimulatedTuningTarget implements ITuningTarget {
+
+	private static final long US_PER_MS = 1000;
+
+	// Default interval (in ms) between two samples of the simulated counter
+	public static final long DEFAULT_SAMPLING_INTERVAL = 60000;
+	private static final double MS_PER_MINUTE = 60000.0;
+
+	private final EventTrace _trace;             // The recorded trace
+	private final PkfFilterSimulator _simulator; // The simulator of the filter
+	private final VirtualClock _clock;           // The virtual clock of the tuner
+	private final long _start;                   // The clock time (in ms) of the first event of the trace
+	private final SimulationResult _result;      // The result of the latest window, reused
+	private long _resultTime = Long.MIN_VALUE;   // The clock time (in ms) of the latest window
+	private long _resultWindow;                  // The length (in ms) of the latest window
+	private PkfConfiguration _resultConfiguration; // The configuration of the latest window
+	private long _samplingInterval = DEFAULT_SAMPLING_INTERVAL; // The interval (in ms) between two samples of the counter
+	private PkfConfiguration _configuration;     // The current configuration
+	private long _writes;                        // The number of applied values
+
+	/**
+	 * Class constructor
+	 * @param trace The recorded trace
+	 * @param simulator The simulator of the filter
+	 * @param clock The virtual clock of the tuner
+	 * @param configuration The initial configuration
+	 */
+	public SimulatedTuningTarget(EventTrace trace, PkfFilterSimulator simulator, VirtualClock clock, PkfConfiguration configuration) {
+		_trace = trace;
+		_simulator = simulator;
+		_clock = clock;
+		_start = clock.now();
+		_result = new SimulationResult();
+		_configuration = configuration;
+	}
+
+	/**
+	 * Replays the whole trace, advancing the virtual clock while the tuner evaluates the rate
+	 * @param tuner The tuner using this target and the same clock, configured but not started
+	 */
+	public void replay(HomeKeyAutoTuner tuner) {
+		tuner.start();
+		_clock.advance(_trace.getDuration() / US_PER_MS - (_clock.now() - _start));
+		tuner.stop();
+	}
+
+	/**
+	 * Sets the interval between two samples of the simulated counter
+	 * @param samplingInterval The interval (in ms)
+	 */
+	public void setSamplingInterval(long samplingInterval) {
+		_samplingInterval = Math.max(1, samplingInterval);
+	}
+
+	/**
+	 * Gets the rate of the ignored key presses, replaying the events of the window with the current configuration
+	 * @param window The window length (in ms) ending now
+	 * @return The ignored key presses per minute, or -1 if the window starts before the trace
+	 */
+	@Override
+	public double getIgnoredRate(long window) {
+		return simulateWindow(window) ? _result.getIgnored() * MS_PER_MINUTE / window : -1;
+	}
+
+	/**
+	 * Gets the number of the ignored key presses, replaying the events of the window with the current configuration
+	 * @param window The window length (in ms) ending now
+	 * @return The ignored key presses, or -1 if the window starts before the trace
+	 */
+	@Override
+	public long getIgnoredCount(long window) {
+		return simulateWindow(window) ? _result.getIgnored() : -1;
+	}
+
+	/**
+	 * Gets the number of the samples of the simulated counter, elapsed since the start of the replay
+	 * @param window The window length (in ms) ending now
+	 * @return The number of samples inside the window
+	 */
+	@Override
+	public int getSampleCount(long window) {
+		return (int)Math.min(Integer.MAX_VALUE, Math.min(window, _clock.now() - _start) / _samplingInterval + 1);
+	}
+
+	/**
+	 * Gets the current value of a parameter
+	 * @param descriptor The descriptor of the parameter
+	 * @return The current value
+	 */
+	@Override
+	public long getValue(PropertyDescriptor descriptor) {
+		return _configuration.get(descriptor);
+	}
+
+	/**
+	 * Applies a new value of a parameter to the simulated configuration
+	 * @param descriptor The descriptor of the parameter
+	 * @param value The new value
+	 * @return True if the value is allowed
+	 */
+	@Override
+	public boolean setValue(PropertyDescriptor descriptor, long value) {
+		if (!PkfConfiguration.isAllowed(descriptor, value))
+			return false;
+		_configuration = _configuration.with(descriptor, value);
+		_writes++;
+		return true;
+	}
+
+	/**
+	 * Replays the events of the window with the current configuration, unless already replayed
+	 * @param window The window length (in ms) ending now
+	 * @return True if the result of the window is available, false if the window starts before the trace
+	 */
+	private boolean simulateWindow(long window) {
+		long now = _clock.now();
+		long end = now - _start;
+		if (end < window || _trace.size() == 0)
+			return false;
+		if (now == _resultTime && window == _resultWindow && _configuration == _resultConfiguration)
+			return true;
+		long first = _trace.getTime(0);
+		EventTrace slice = _trace.slice(first + (end - window) * US_PER_MS, first + end * US_PER_MS);
+		_result.reset();
+		_simulator.simulate(slice, _configuration, _result);
+		_resultTime = now;
+		_resultWindow = window;
+		_resultConfiguration = _configuration;
+		return true;
+	}
+
+	/**
+	 * Gets the current configuration
+	 * @return The current configuration
+	 */
+	public PkfConfiguration getConfiguration() {
+		return _configuration;
+	}
+
+	/**
+	 * Gets the number of applied values
+	 * @return The number of writes the module would have received
+	 */
+	public long getWrites() {
+		return _writes;
+	}
+
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.tuning;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.christopher83.framework.properties.PropertyDescriptor;
+
+import android.util.Log;
+
+/**
+ * Class for the audit log of the changes made by an auto-tuner, keeping the latest entries in memory
+ * and optionally appending all of them to a text file
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class TuningAudit {
+
+	private final File _file;                  // The file where to append the entries, or null
+	private final int _capacity;               // The max number of entries kept in memory
+	private final LinkedList<String> _entries; // The latest entries, the oldest first
+	private long _count;                       // The number of recorded entries
+
+	/**
+	 * Class constructor
+	 * @param file The file where to append the entries, or null to keep them only in memory
+	 * @param capacity The max number of entries kept in memory
+	 */
+	public TuningAudit(File file, int capacity) {
+		_file = file;
+		_capacity = Math.max(1, capacity);
+		_entries = new LinkedList<String>();
+	}
+
+	/**
+	 * Records a change of a parameter
+	 * @param time The time of the change (in ms), measured by the tuner clock
+	 * @param descriptor The descriptor of the changed parameter
+	 * @param oldValue The previous value
+	 * @param newValue The new value
+	 * @param rate The ignored key presses per minute causing the change
+	 * @param reason The reason of the change
+	 */
+	public synchronized void record(long time, PropertyDescriptor descriptor, long oldValue, long newValue, double rate, String reason) {
+		String entry = String.format("%d %s %d -> %d (%.2f/min, %s)", time, descriptor.getID(), oldValue, newValue, rate, reason);
+		Log.i(TuningAudit.class.getName(), String.format("Phantom Key Presses Filter - Auto-tune: %s", entry));
+
+		// Keep the entry in memory
+		_entries.addLast(entry);
+		if (_entries.size() > _capacity)
+			_entries.removeFirst();
+		_count++;
+
+		// Append the entry to the file, with the wall clock time
+		if (_file != null)
+			append(String.format("%d %s\n", System.currentTimeMillis(), entry));
+	}
+
+	/**
+	 * Gets the latest entries
+	 * @return The latest entries, the oldest first
+	 */
+	public synchronized List<String> getEntries() {
+		return new ArrayList<String>(_entries);
+	}
+
+	/**
+	 * Gets the number of recorded entries
+	 * @return The number of recorded entries, also the ones no more kept in memory
+	 */
+	public synchronized long getCount() {
+		return _count;
+	}
+
+	/**
+	 * Appends a line to the file
+	 * @param line The line to append
+	 */
+	private void append(String line) {
+		Writer writer = null;
+		try {
+			File directory = _file.getParentFile();
+			if (directory != null)
+				directory.mkdirs();
+			writer = new OutputStreamWriter(new FileOutputStream(_file, true), "UTF-8");
+			writer.write(line);
+		} catch (IOException e) {
+			Log.e(TuningAudit.class.getName(), String.format("Unable to append to the audit file %s: %s", _file, e.getMessage()));
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					Log.e(TuningAudit.class.getName(), String.format("Error during file %s closing", _file));
+				}
+			}
+		}
+	}
+
+}
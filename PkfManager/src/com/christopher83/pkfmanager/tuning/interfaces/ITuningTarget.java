@@ -0,0 +1,62 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.tuning.interfaces;
+
+import com.christopher83.framework.properties.PropertyDescriptor;
+
+/**
+ * Interface for the filter tuned by an auto-tuner, measuring the ignored key presses and applying the parameters
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public interface ITuningTarget {
+
+	/**
+	 * Gets the rate of the ignored key presses
+	 * @param window The window length (in ms) ending now
+	 * @return The ignored key presses per minute, or a negative number if not measurable yet
+	 */
+	public abstract double getIgnoredRate(long window);
+
+	/**
+	 * Gets the number of the ignored key presses
+	 * @param window The window length (in ms) ending now
+	 * @return The ignored key presses, or a negative number if not measurable yet
+	 */
+	public abstract long getIgnoredCount(long window);
+
+	/**
+	 * Gets the number of the samples of the ignored key presses counter, measuring the rate
+	 * @param window The window length (in ms) ending now
+	 * @return The number of samples inside the window
+	 */
+	public abstract int getSampleCount(long window);
+
+	/**
+	 * Gets the current value of a parameter
+	 * @param descriptor The descriptor of the parameter
+	 * @return The current value
+	 */
+	public abstract long getValue(PropertyDescriptor descriptor);
+
+	/**
+	 * Applies a new value of a parameter
+	 * @param descriptor The descriptor of the parameter
+	 * @param value The new value
+	 * @return True if the value has been applied
+	 */
+	public abstract boolean setValue(PropertyDescriptor descriptor, long value);
+
+}
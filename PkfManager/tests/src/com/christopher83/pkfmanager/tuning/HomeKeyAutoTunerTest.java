@@ -0,0 +1,231 @@
+/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package com.christopher83.pkfmanager.tuning;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.sampling.VirtualClock;
+import com.christopher83.pkfmanager.PkfDescriptors;
+import com.christopher83.pkfmanager.simulation.EventTrace;
+import com.christopher83.pkfmanager.simulation.PkfConfiguration;
+import com.christopher83.pkfmanager.simulation.PkfFilterSimulator;
+import com.christopher83.pkfmanager.simulation.SimulationResult;
+
+import junit.framework.TestCase;
+
+/**
+ * Class for the tests of the HOME key auto-tuner, replaying generated traces with the simulator on a virtual clock
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public class HomeKeyAutoTunerTest extends TestCase {
+
+	// Length (in days) of the replayed traces
+	private static final int TRACE_DAYS = 3;
+
+	// Max number of writes accepted for a replay of random presses
+	private static final int MAX_WRITES = 4;
+
+	private static final long US_PER_MS = 1000;
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	/**
+	 * Class for a simulated target recording the direction of each change of strictness
+	 */
+	private static class RecordingTarget extends SimulatedTuningTarget {
+		final ArrayList<Integer> directions = new ArrayList<Integer>(); // The directions of the changes, -1 if relaxed or 1 if tightened
+
+		/**
+		 * Class constructor
+		 * @param trace The replayed trace
+		 * @param clock The virtual clock of the tuner
+		 * @param configuration The initial configuration
+		 */
+		RecordingTarget(EventTrace trace, VirtualClock clock, PkfConfiguration configuration) {
+			super(trace, new PkfFilterSimulator(), clock, configuration);
+		}
+
+		/**
+		 * Records the direction of the change, lower allowed interrupts or longer report waits are stricter
+		 */
+		@Override
+		public boolean setValue(PropertyDescriptor descriptor, long value) {
+			long oldValue = getValue(descriptor);
+			if (!super.setValue(descriptor, value))
+				return false;
+			int direction = (value > oldValue) ? 1 : -1;
+			directions.add((descriptor == PkfDescriptors.HOMEKEY_ALLOWED_IRQS) ? -direction : direction);
+			return true;
+		}
+
+		/**
+		 * Gets the number of reversals of the direction of the changes
+		 * @return The number of reversals
+		 */
+		int getReversals() {
+			int reversals = 0;
+			for (int i = 1; i < directions.size(); i++) {
+				if (!directions.get(i).equals(directions.get(i - 1)))
+					reversals++;
+			}
+			return reversals;
+		}
+	}
+
+	/**
+	 * Checks that a filter too loose for the phantom presses is tightened into the band, one step at a time
+	 */
+	public void testTightenIntoBand() {
+		EventTrace trace = createRegularTrace(4);
+		RecordingTarget target = replay(trace, 0.08, 0.5, 8);
+
+		assertEquals(2, target.getWrites());
+		assertEquals("Oscillating changes", 0, target.getReversals());
+		assertEquals(Integer.valueOf(1), target.directions.get(0));
+		assertEquals(6, target.getConfiguration().get(PkfDescriptors.HOMEKEY_ALLOWED_IRQS));
+		assertInBand(trace, target.getConfiguration(), 0.08, 0.5);
+	}
+
+	/**
+	 * Checks that a filter ignoring too many presses is relaxed into the band, one step at a time
+	 */
+	public void testRelaxIntoBand() {
+		EventTrace trace = createRegularTrace(4);
+		RecordingTarget target = replay(trace, 0.05, 0.15, 1);
+
+		assertEquals(4, target.getWrites());
+		assertEquals("Oscillating changes", 0, target.getReversals());
+		assertEquals(Integer.valueOf(-1), target.directions.get(0));
+		assertEquals(5, target.getConfiguration().get(PkfDescriptors.HOMEKEY_ALLOWED_IRQS));
+		assertInBand(trace, target.getConfiguration(), 0.05, 0.15);
+	}
+
+	/**
+	 * Checks that the noise of the measured rate, with random presses, doesn't make the changes oscillate
+	 */
+	public void testRandomPressesNoOscillation() {
+		for (long seed = 1; seed <= 5; seed++) {
+			EventTrace trace = createRandomTrace(seed, 4);
+			for (long allowedIrqs = 4; allowedIrqs <= 6; allowedIrqs++) {
+				RecordingTarget target = replay(trace, 0.05, 0.5, allowedIrqs);
+
+				String description = String.format("seed %d, allowed interrupts %d", seed, allowedIrqs);
+				assertTrue(String.format("Too many writes with %s: %d", description, target.getWrites()), target.getWrites() <= MAX_WRITES);
+				assertTrue(String.format("Oscillating changes with %s", description), target.getReversals() <= 1);
+				assertInBand(trace, target.getConfiguration(), 0.05, 0.5);
+			}
+		}
+	}
+
+	/**
+	 * Checks that a device without phantom presses, ignoring nothing, is never tightened
+	 */
+	public void testNoPhantomPressesNoChange() {
+		RecordingTarget target = replay(createRegularTrace(0), 0.05, 0.5, 4);
+		assertEquals(0, target.getWrites());
+		assertEquals(4, target.getConfiguration().get(PkfDescriptors.HOMEKEY_ALLOWED_IRQS));
+		assertEquals(PkfDescriptors.HOMEKEY_REPORT_WAIT.getDefaultValue(), target.getConfiguration().get(PkfDescriptors.HOMEKEY_REPORT_WAIT));
+
+		target = replay(createRandomTrace(1, 0), 0.05, 0.5, 4);
+		assertEquals(0, target.getWrites());
+	}
+
+	/**
+	 * Replays a trace with the auto-tuner on a virtual clock
+	 * @param trace The trace to replay
+	 * @param lowRate The lower bound of the band (presses per minute)
+	 * @param highRate The upper bound of the band (presses per minute)
+	 * @param allowedIrqs The initial allowed interrupts
+	 * @return The target, with the final configuration and the recorded changes
+	 */
+	private static RecordingTarget replay(EventTrace trace, double lowRate, double highRate, long allowedIrqs) {
+		VirtualClock clock = new VirtualClock(0);
+		PkfConfiguration configuration = PkfConfiguration.defaults()
+				.with(PkfDescriptors.HOMEKEY_FILTER_STATUS, 1)
+				.with(PkfDescriptors.HOMEKEY_ALLOWED_IRQS, allowedIrqs);
+		RecordingTarget target = new RecordingTarget(trace, clock, configuration);
+		HomeKeyAutoTuner tuner = new HomeKeyAutoTuner(clock, target, new TuningAudit(null, 100));
+		tuner.setBand(lowRate, highRate);
+		target.replay(tuner);
+		assertFalse(tuner.isRunning());
+		assertTrue(tuner.getEvaluations() > 0);
+		assertEquals(target.getWrites(), tuner.getAudit().getCount());
+		return target;
+	}
+
+	/**
+	 * Asserts that the rate of the ignored presses of the last day of a trace is inside the band
+	 * @param trace The replayed trace
+	 * @param configuration The final configuration
+	 * @param lowRate The lower bound of the band (presses per minute)
+	 * @param highRate The upper bound of the band (presses per minute)
+	 */
+	private static void assertInBand(EventTrace trace, PkfConfiguration configuration, double lowRate, double highRate) {
+		long end = trace.getTime(0) + trace.getDuration();
+		SimulationResult result = new PkfFilterSimulator().simulate(trace.slice(end - DAY * US_PER_MS, end), configuration);
+		double rate = result.getIgnored() * 60000.0 / DAY;
+		assertTrue(String.format("Rate %.3f outside the band %.2f-%.2f with %s", rate, lowRate, highRate, configuration),
+				rate >= lowRate && rate <= highRate);
+	}
+
+	/**
+	 * Creates a trace of HOME key presses, one per minute, each one followed by its interrupts:
+	 * 0 to 2 for the genuine presses, 2 to 9 in turn for the phantom presses
+	 * @param phantomEvery The interval (in presses) between two phantom presses, 0 for none
+	 * @return The generated trace
+	 */
+	private static EventTrace createRegularTrace(int phantomEvery) {
+		EventTrace trace = new EventTrace();
+		long end = TRACE_DAYS * DAY * US_PER_MS;
+		int phantoms = 0;
+		for (int i = 0; (i + 1) * 60000 * US_PER_MS < end; i++) {
+			long time = (i + 1) * 60000 * US_PER_MS;
+			boolean phantom = phantomEvery > 0 && i % phantomEvery == 0;
+			trace.add(time, phantom ? (byte)(EventTrace.HOME_PRESS | EventTrace.PHANTOM) : EventTrace.HOME_PRESS);
+			int irqs = phantom ? 2 + phantoms++ % 8 : i % 3;
+			for (int j = 0; j < irqs; j++)
+				trace.add(time + (j + 1) * 1000, EventTrace.HOME_IRQ);
+		}
+		return trace;
+	}
+
+	/**
+	 * Creates a trace of HOME key presses at random intervals, each one followed by its interrupts:
+	 * a few ones for the genuine presses, several ones for the phantom presses
+	 * @param seed The seed of the generator
+	 * @param phantomOneIn The ratio of the phantom presses (one in the specified number), 0 for none
+	 * @return The generated trace
+	 */
+	private static EventTrace createRandomTrace(long seed, int phantomOneIn) {
+		Random random = new Random(seed);
+		EventTrace trace = new EventTrace();
+		long end = TRACE_DAYS * DAY * US_PER_MS;
+		long time = 0;
+		while (time < end) {
+			time += (5 + random.nextInt(120)) * 1000 * US_PER_MS;
+			boolean phantom = phantomOneIn > 0 && random.nextInt(phantomOneIn) == 0;
+			trace.add(time, phantom ? (byte)(EventTrace.HOME_PRESS | EventTrace.PHANTOM) : EventTrace.HOME_PRESS);
+			int irqs = phantom ? 2 + random.nextInt(8) : random.nextInt(3);
+			for (int i = 0; i < irqs; i++) {
+				time += 500 + random.nextInt(2500);
+				trace.add(time, EventTrace.HOME_IRQ);
+			}
+		}
+		return trace;
+	}
+
+}
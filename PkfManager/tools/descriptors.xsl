@@ -0,0 +1,163 @@
+<?xml version="1.0" encoding="utf-8"?>
+<!--
+    Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+
+    This program is free software; you can redistribute it and/or
+    modify it under the terms of the GNU General Public License
+    as published by the Free Software Foundation; either version 2
+    of the License, or (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    Generates the PkfDescriptors class from res/values/parameters.xml.
+    For each "id_<name>" item:
+      - the file path is taken from "path_<name>"
+      - the group is the first part of <name>, up to the first underscore
+      - a "default_<name>" item of type bool makes a boolean property, otherwise an integer one
+      - a missing "default_<name>" item makes the property readonly
+      - "min_<name>", "max_<name>" and "step_<name>" are optional constraints
+      - "cache_<name>" optionally overrides the cache policy, that is UNTIL_WRITE
+        for the writable properties and ALWAYS_READ for the readonly ones
+-->
+<xsl:stylesheet version="1.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+	<xsl:output method="text" encoding="utf-8"/>
+
+	<xsl:param name="package" select="'com.christopher83.pkfmanager'"/>
+
+	<xsl:variable name="lower" select="'abcdefghijklmnopqrstuvwxyz'"/>
+	<xsl:variable name="upper" select="'ABCDEFGHIJKLMNOPQRSTUVWXYZ'"/>
+
+	<xsl:template match="/">
+		<xsl:text>/**
+ *
+ * Copyright (C) 2013, Cristoforo Cataldo (Christopher83)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ */
+package </xsl:text><xsl:value-of select="$package"/><xsl:text>;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.christopher83.framework.properties.CachePolicy;
+import com.christopher83.framework.properties.PropertyDescriptor;
+import com.christopher83.framework.properties.PropertyType;
+
+/**
+ * Class for the descriptors of the module properties.
+ * GENERATED from res/values/parameters.xml by tools/descriptors.xsl, do not edit
+ * @author Cristoforo Cataldo (Christopher83)
+ */
+public final class PkfDescriptors {
+</xsl:text>
+		<xsl:for-each select="/resources/item[starts-with(@name, 'id_')]">
+			<xsl:call-template name="descriptor"/>
+		</xsl:for-each>
+		<xsl:text>
+	// All the descriptors, in declaration order
+	public static final List&lt;PropertyDescriptor&gt; ALL = Collections.unmodifiableList(Arrays.asList(
+</xsl:text>
+		<xsl:for-each select="/resources/item[starts-with(@name, 'id_')]">
+			<xsl:text>			</xsl:text>
+			<xsl:value-of select="translate(substring-after(@name, 'id_'), $lower, $upper)"/>
+			<xsl:if test="position() != last()">
+				<xsl:text>,</xsl:text>
+			</xsl:if>
+			<xsl:text>
+</xsl:text>
+		</xsl:for-each>
+		<xsl:text>	));
+
+	/**
+	 * Class constructor, not used
+	 */
+	private PkfDescriptors() {
+	}
+
+}
+</xsl:text>
+	</xsl:template>
+
+	<xsl:template name="descriptor">
+		<xsl:variable name="name" select="substring-after(@name, 'id_')"/>
+		<xsl:variable name="default" select="/resources/item[@name = concat('default_', $name)]"/>
+		<xsl:variable name="cache" select="/resources/item[@name = concat('cache_', $name)]"/>
+		<xsl:variable name="group">
+			<xsl:choose>
+				<xsl:when test="contains($name, '_')"><xsl:value-of select="substring-before($name, '_')"/></xsl:when>
+				<xsl:otherwise><xsl:value-of select="$name"/></xsl:otherwise>
+			</xsl:choose>
+		</xsl:variable>
+		<xsl:text>
+	// </xsl:text><xsl:value-of select="$name"/><xsl:text>
+	public static final PropertyDescriptor </xsl:text>
+		<xsl:value-of select="translate($name, $lower, $upper)"/>
+		<xsl:text> = new PropertyDescriptor(R.string.</xsl:text><xsl:value-of select="@name"/>
+		<xsl:text>, "</xsl:text><xsl:value-of select="."/>
+		<xsl:text>", "</xsl:text><xsl:value-of select="/resources/item[@name = concat('path_', $name)]"/>
+		<xsl:text>", "</xsl:text><xsl:value-of select="$group"/>
+		<xsl:text>",
+			</xsl:text>
+		<xsl:choose>
+			<xsl:when test="$default/@type = 'bool'">PropertyType.BOOLEAN</xsl:when>
+			<xsl:otherwise>PropertyType.INTEGER</xsl:otherwise>
+		</xsl:choose>
+		<xsl:text>, </xsl:text>
+		<xsl:choose>
+			<xsl:when test="$default">false</xsl:when>
+			<xsl:otherwise>true</xsl:otherwise>
+		</xsl:choose>
+		<xsl:text>, </xsl:text>
+		<xsl:choose>
+			<xsl:when test="$default/@type = 'bool' and normalize-space($default) = 'true'">1L</xsl:when>
+			<xsl:when test="$default/@type = 'bool'">0L</xsl:when>
+			<xsl:otherwise>
+				<xsl:call-template name="number">
+					<xsl:with-param name="item" select="$default"/>
+				</xsl:call-template>
+			</xsl:otherwise>
+		</xsl:choose>
+		<xsl:text>, </xsl:text>
+		<xsl:call-template name="number">
+			<xsl:with-param name="item" select="/resources/item[@name = concat('min_', $name)]"/>
+		</xsl:call-template>
+		<xsl:text>, </xsl:text>
+		<xsl:call-template name="number">
+			<xsl:with-param name="item" select="/resources/item[@name = concat('max_', $name)]"/>
+		</xsl:call-template>
+		<xsl:text>, </xsl:text>
+		<xsl:call-template name="number">
+			<xsl:with-param name="item" select="/resources/item[@name = concat('step_', $name)]"/>
+		</xsl:call-template>
+		<xsl:text>, CachePolicy.</xsl:text>
+		<xsl:choose>
+			<xsl:when test="$cache"><xsl:value-of select="normalize-space($cache)"/></xsl:when>
+			<xsl:when test="$default">UNTIL_WRITE</xsl:when>
+			<xsl:otherwise>ALWAYS_READ</xsl:otherwise>
+		</xsl:choose>
+		<xsl:text>);
+</xsl:text>
+	</xsl:template>
+
+	<xsl:template name="number">
+		<xsl:param name="item"/>
+		<xsl:choose>
+			<xsl:when test="$item"><xsl:value-of select="normalize-space($item)"/>L</xsl:when>
+			<xsl:otherwise>PropertyDescriptor.NO_VALUE</xsl:otherwise>
+		</xsl:choose>
+	</xsl:template>
+
+</xsl:stylesheet>